@@ -1,7 +1,10 @@
 package com.travelplanner;
 
+import com.travelplanner.config.GeminiClientConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
@@ -11,7 +14,11 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 public class TravelPlannerApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(TravelPlannerApplication.class, args);
+		SpringApplication application = new SpringApplication(TravelPlannerApplication.class);
+		// JDK HttpClient pool settings are read once, so they are set before any bean exists
+		application.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event ->
+				GeminiClientConfig.applyPoolProperties(event.getEnvironment()));
+		application.run(args);
 	}
 
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.travelplanner.config;
 
+import com.travelplanner.service.BulkheadExecutor;
+import com.travelplanner.service.BulkheadExecutor.Overflow;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
@@ -14,19 +18,19 @@ import java.util.concurrent.Executor;
 /**
  * Async Configuration
  * 
- * Configures thread pool for asynchronous operations like AI itinerary generation.
- * 
- * Thread Pool Design:
- * - Core pool size: 5 threads (handles normal load)
- * - Max pool size: 20 threads (handles traffic spikes)
- * - Queue capacity: 100 (buffers requests when all threads busy)
- * - Thread name prefix: async-task- (for easy debugging)
- * 
- * Why these values:
- * - AI operations are I/O bound (waiting for Gemini API)
- * - Can handle more concurrent operations than CPU-bound tasks
- * - Queue prevents thread explosion during spikes
- * - Graceful rejection when queue full
+ * Configures thread pools for asynchronous operations like AI itinerary generation.
+ *
+ * Workloads are isolated in bulkheads (generation, adaptation, journal, email,
+ * fan-out), each with its own size, queue bound and rejection behavior, so one
+ * workload saturating cannot starve the others. Streaming generation shares
+ * the generation bulkhead with queued generation jobs. Every @Async method
+ * names its executor; there is no default pool.
+ *
+ * Execution mode: the I/O-bound bulkheads spend nearly all their time waiting
+ * on Gemini. With execution.virtual-threads.enabled they run
+ * on virtual threads, limited by a semaphore (bulkhead.*.virtual-concurrency)
+ * instead of a thread count, so hundreds of calls can be in flight per node.
+ * Raise gemini.limiter.max-limit and the DB pool to match.
  */
 @Configuration
 @EnableAsync
@@ -34,44 +38,116 @@ public class AsyncConfig implements AsyncConfigurer {
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
 
-    @Override
-    @Bean(name = "taskExecutor")
-    public Executor getAsyncExecutor() {
+    @Value("${execution.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Bulkhead for itinerary generation and regeneration jobs.
+     *
+     * The job worker only claims as many jobs as the bulkhead's concurrency, so
+     * there is no queue: a job that cannot start is rejected and released back
+     * to the jobs table, where it waits for a free slot on any node.
+     */
+    @Bean(name = "generationExecutor")
+    public BulkheadExecutor generationExecutor(@Value("${bulkhead.generation.pool-size:4}") int poolSize,
+                                               @Value("${bulkhead.generation.virtual-concurrency:200}") int virtualConcurrency,
+                                               MeterRegistry meterRegistry) {
+        return bulkhead("generation", poolSize, virtualConcurrency, 0, Overflow.REJECT, meterRegistry);
+    }
+
+    /**
+     * Bulkhead for itinerary adaptation jobs.
+     *
+     * Adaptations are short and user-facing; giving them their own slots keeps
+     * a burst of long generations from delaying them. Queue-less like generation.
+     */
+    @Bean(name = "adaptationExecutor")
+    public BulkheadExecutor adaptationExecutor(@Value("${bulkhead.adaptation.pool-size:2}") int poolSize,
+                                               @Value("${bulkhead.adaptation.virtual-concurrency:100}") int virtualConcurrency,
+                                               MeterRegistry meterRegistry) {
+        return bulkhead("adaptation", poolSize, virtualConcurrency, 0, Overflow.REJECT, meterRegistry);
+    }
+
+    /**
+     * Bulkhead for journal generation from photos.
+     *
+     * Each task holds a Gemini image upload open, so concurrency is kept low and
+     * the queue short; when both are full the request is rejected (503) rather
+     * than piling up behind uploads.
+     */
+    @Bean(name = "journalExecutor")
+    public BulkheadExecutor journalExecutor(@Value("${bulkhead.journal.pool-size:4}") int poolSize,
+                                            @Value("${bulkhead.journal.virtual-concurrency:32}") int virtualConcurrency,
+                                            @Value("${bulkhead.journal.queue-capacity:8}") int queueCapacity,
+                                            MeterRegistry meterRegistry) {
+        return bulkhead("journal", poolSize, virtualConcurrency, queueCapacity, Overflow.REJECT, meterRegistry);
+    }
+
+    /**
+     * Bulkhead for verification and password reset emails.
+     *
+     * A queue absorbs a slow SMTP server without holding up web requests. If it
+     * ever fills, the email is sent on the caller's thread instead: a delayed
+     * response is better than a verification or reset email that never arrives.
+     * Low volume, so it always runs on platform threads.
+     */
+    @Bean(name = "emailExecutor")
+    public BulkheadExecutor emailExecutor(@Value("${bulkhead.email.pool-size:2}") int poolSize,
+                                          @Value("${bulkhead.email.queue-capacity:200}") int queueCapacity,
+                                          MeterRegistry meterRegistry) {
+        return BulkheadExecutor.platform("email", poolSize, queueCapacity, Overflow.CALLER_RUNS, meterRegistry);
+    }
+
+    /**
+     * Executor for the day-range calls of a fan-out itinerary generation.
+     *
+     * Kept separate from the generation bulkhead: the parent job holds a
+     * generation slot while it waits for its ranges, so sharing that pool could
+     * starve it. Caller-runs on saturation degrades to sequential generation
+     * instead of failing.
+     */
+    @Bean(name = "fanOutExecutor")
+    public BulkheadExecutor fanOutExecutor(@Value("${itinerary.fanout.pool-size:16}") int poolSize,
+                                           @Value("${itinerary.fanout.virtual-concurrency:400}") int virtualConcurrency,
+                                           MeterRegistry meterRegistry) {
+        return bulkhead("fanout", poolSize, virtualConcurrency, poolSize * 4, Overflow.CALLER_RUNS, meterRegistry);
+    }
+
+    /**
+     * Executor for CPU-bound photo decoding and re-encoding.
+     *
+     * Sized to the number of cores by default; more threads would only contend
+     * for CPU and multiply the decoded-image heap footprint.
+     */
+    @Bean(name = "imageExecutor")
+    public Executor imageExecutor(@Value("${journal.images.parallelism:0}") int parallelism) {
+        int poolSize = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        
-        // Core pool size: threads always alive
-        executor.setCorePoolSize(5);
-        
-        // Max pool size: maximum threads that can be created
-        executor.setMaxPoolSize(20);
-        
-        // Queue capacity: tasks waiting for thread
-        executor.setQueueCapacity(100);
-        
-        // Thread name prefix for debugging
-        executor.setThreadNamePrefix("async-task-");
-        
-        // Keep alive time for idle threads
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("image-");
         executor.setKeepAliveSeconds(60);
-        
-        // Reuse threads
         executor.setAllowCoreThreadTimeOut(true);
-        
-        // Wait for tasks to complete on shutdown
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(60);
-        
-        // Rejection policy: call run() in caller thread
-        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
-        
         executor.initialize();
-        
-        logger.info("Async task executor initialized with corePoolSize={}, maxPoolSize={}, queueCapacity={}",
-            executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
-        
+
+        logger.info("Image executor initialized with poolSize={}", poolSize);
+
         return executor;
     }
 
+    /**
+     * I/O-bound workload: virtual threads limited to virtualConcurrency when
+     * execution.virtual-threads.enabled is set, otherwise poolSize platform threads
+     */
+    private BulkheadExecutor bulkhead(String name, int poolSize, int virtualConcurrency, int queueCapacity,
+                                      Overflow overflow, MeterRegistry meterRegistry) {
+        if (virtualThreads) {
+            return BulkheadExecutor.virtual(name, virtualConcurrency, queueCapacity, overflow, meterRegistry);
+        }
+        return BulkheadExecutor.platform(name, poolSize, queueCapacity, overflow, meterRegistry);
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (throwable, method, params) -> {
@@ -0,0 +1,98 @@
+package com.travelplanner.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Gemini HTTP Client Configuration
+ *
+ * Provides a single shared java.net.http.HttpClient for all Gemini API calls.
+ *
+ * Why a shared client:
+ * - Connections are kept alive and reused across calls (no TLS handshake per itinerary)
+ * - HTTP/2 is negotiated via ALPN, so concurrent calls multiplex over few sockets
+ * - The connection pool is bounded, so bursts cannot exhaust file descriptors
+ *
+ * Pool sizing and keep-alive are JDK-wide system properties, read once when
+ * the HttpClient implementation is first loaded (by whichever client comes
+ * first), so they cannot be set reliably from a bean. applyPoolProperties sets
+ * them from gemini.http.max-connections and gemini.http.keep-alive-seconds as
+ * soon as the environment is ready, before any bean is created (see
+ * TravelPlannerApplication.main), on every launch path. Explicit
+ * -Djdk.httpclient.* JVM options take precedence. A mismatch with the
+ * effective values is logged at startup, and gemini.http.pool.max reports the
+ * effective pool size (0 = unbounded).
+ */
+@Configuration
+public class GeminiClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiClientConfig.class);
+
+    private static final String POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    @Value("${gemini.http.connect-timeout-ms:10000}")
+    private long connectTimeoutMs;
+
+    @Value("${gemini.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${gemini.http.keep-alive-seconds:300}")
+    private int keepAliveSeconds;
+
+    @Bean(name = "geminiHttpClient")
+    public HttpClient geminiHttpClient(MeterRegistry registry) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        Gauge.builder("gemini.http.pool.max", GeminiClientConfig::effectivePoolSize)
+                .description("Maximum pooled keep-alive connections to the Gemini API (0 = unbounded)")
+                .register(registry);
+
+        int poolSize = effectivePoolSize();
+        int keepAlive = effectiveKeepAliveSeconds();
+        if (poolSize != maxConnections || keepAlive != keepAliveSeconds) {
+            logger.warn("Gemini HTTP connection pool is {}={}, {}={}s, not the configured {} and {}s "
+                            + "(overridden by JVM options, or not started through TravelPlannerApplication.main)",
+                    POOL_SIZE_PROPERTY, poolSize, KEEP_ALIVE_PROPERTY, keepAlive, maxConnections, keepAliveSeconds);
+        }
+        logger.info("Gemini HTTP client initialized with connectionPoolSize={}, keepAliveSeconds={}, connectTimeoutMs={}",
+                poolSize, keepAlive, connectTimeoutMs);
+
+        return client;
+    }
+
+    /**
+     * Set the JDK HttpClient pool properties from the gemini.http.* settings,
+     * unless they were given as JVM options; must run before any HttpClient exists
+     */
+    public static void applyPoolProperties(Environment environment) {
+        if (System.getProperty(POOL_SIZE_PROPERTY) == null) {
+            System.setProperty(POOL_SIZE_PROPERTY, environment.getProperty("gemini.http.max-connections", "50"));
+        }
+        if (System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+            System.setProperty(KEEP_ALIVE_PROPERTY, environment.getProperty("gemini.http.keep-alive-seconds", "300"));
+        }
+    }
+
+    // JDK defaults when the properties are unset: unbounded pool, 1200s keep-alive
+    static int effectivePoolSize() {
+        return Integer.getInteger(POOL_SIZE_PROPERTY, 0);
+    }
+
+    static int effectiveKeepAliveSeconds() {
+        return Integer.getInteger(KEEP_ALIVE_PROPERTY, 1200);
+    }
+}
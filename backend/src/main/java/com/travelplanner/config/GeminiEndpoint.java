@@ -0,0 +1,30 @@
+package com.travelplanner.config;
+
+import com.travelplanner.service.GeminiCallGuard;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint exposing Gemini resilience state
+ *
+ * GET /actuator/gemini
+ * Response: { "breakerState": "CLOSED", "concurrencyLimit": 12, "inFlight": 3, ... }
+ */
+@Component
+@Endpoint(id = "gemini")
+public class GeminiEndpoint {
+
+    private final GeminiCallGuard geminiCallGuard;
+
+    public GeminiEndpoint(GeminiCallGuard geminiCallGuard) {
+        this.geminiCallGuard = geminiCallGuard;
+    }
+
+    @ReadOperation
+    public Map<String, Object> gemini() {
+        return geminiCallGuard.snapshot();
+    }
+}
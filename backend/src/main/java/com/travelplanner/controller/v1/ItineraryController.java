@@ -1,28 +1,46 @@
 package com.travelplanner.controller.v1;
 
+import com.travelplanner.exception.JobRejectedException;
 import com.travelplanner.model.Itinerary;
 import com.travelplanner.model.Job;
 import com.travelplanner.repository.JobRepository;
 import com.travelplanner.security.services.UserDetailsImpl;
 import com.travelplanner.service.AsyncItineraryService;
+import com.travelplanner.service.FairScheduler;
+import com.travelplanner.service.IdempotencyKeys;
 import com.travelplanner.service.ItineraryService;
+import com.travelplanner.service.JobAdmission;
+import com.travelplanner.service.JobCancellation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/itineraries")
 public class ItineraryController {
 
     private static final Logger logger = LoggerFactory.getLogger(ItineraryController.class);
+    private static final long STREAM_TIMEOUT_MS = 180_000L;
+    private static final List<String> GENERATION_JOB_TYPES = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+    private static final List<Job.JobStatus> ACTIVE_STATUSES = List.of(Job.JobStatus.PENDING, Job.JobStatus.PROCESSING);
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
 
     @Autowired
     private ItineraryService itineraryService;
@@ -33,6 +51,18 @@ public class ItineraryController {
     @Autowired
     private JobRepository jobRepository;
 
+    @Autowired
+    private JobAdmission jobAdmission;
+
+    @Autowired
+    private FairScheduler fairScheduler;
+
+    @Autowired
+    private JobCancellation jobCancellation;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
     /**
      * Generate itinerary asynchronously
      * 
@@ -40,21 +70,36 @@ public class ItineraryController {
      * for status and results.
      * 
      * POST /api/v1/itineraries/generate/{tripId}
+     * Header (optional): Idempotency-Key, see idempotent()
      * Response: { "jobId": "uuid-123", "status": "PENDING" }
      */
     @PostMapping("/generate/{tripId}")
-    public ResponseEntity<?> generateItinerary(@PathVariable Long tripId, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+    public ResponseEntity<?> generateItinerary(@PathVariable Long tripId,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                               @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return idempotent(idempotencyKey, userDetails.getId(), "generate", tripId,
+                () -> startGeneration(tripId, userDetails));
+    }
+
+    private ResponseEntity<?> startGeneration(Long tripId, UserDetailsImpl userDetails) {
         try {
             logger.info("Initiating async itinerary generation for tripId: {}, user: {}", tripId, userDetails.getId());
 
-            // Create job record
+            // Attach to a generation already running for this trip instead of starting another
+            Optional<Job> activeJob = findActiveGenerationJob(tripId, userDetails.getId());
+            if (activeJob.isPresent()) {
+                return ResponseEntity.accepted().body(attachedJobResponse(activeJob.get()));
+            }
+
+            // Turn overload away before queueing (503 + Retry-After)
+            jobAdmission.admit(userDetails.getId(), "ITINERARY_GENERATION");
+
+            // Create job record; saving it as PENDING queues it for a JobWorker
             String jobId = UUID.randomUUID().toString();
             Job job = new Job(jobId, "ITINERARY_GENERATION", tripId, userDetails.getId());
+            fairScheduler.schedule(job, true);
             jobRepository.save(job);
 
-            // Trigger async processing
-            asyncItineraryService.generateItineraryAsync(jobId, tripId, userDetails.getId());
-
             // Return jobId immediately
             Map<String, Object> response = new HashMap<>();
             response.put("jobId", jobId);
@@ -63,6 +108,8 @@ public class ItineraryController {
 
             return ResponseEntity.accepted().body(response);
 
+        } catch (JobRejectedException e) {
+            throw e;
         } catch (RuntimeException e) {
             logger.error("Error initiating itinerary generation for tripId {}: {}", tripId, e.getMessage());
             if (e.getMessage().contains("user not authorized")) {
@@ -72,23 +119,85 @@ public class ItineraryController {
         }
     }
 
+    /**
+     * Stream itinerary generation over Server-Sent Events
+     * 
+     * Relays model output as it is produced instead of returning a jobId to poll.
+     * The assembled itinerary is persisted when the stream completes.
+     * 
+     * POST /api/v1/itineraries/generate/{tripId}/stream
+     * Events: chunk (text fragment), complete (itinerary JSON), error (message)
+     * A stream is not queued: it takes a generation bulkhead slot at once and
+     * counts toward the user's in-flight jobs (see JobAdmission.admitStream).
+     * 503 + Retry-After when admission turns it away or the bulkhead is full
+     */
+    @PostMapping(value = "/generate/{tripId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamItinerary(@PathVariable Long tripId, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        logger.info("Initiating streaming itinerary generation for tripId: {}, user: {}", tripId, userDetails.getId());
+
+        Runnable release;
+        try {
+            release = jobAdmission.admitStream(userDetails.getId());
+        } catch (JobRejectedException e) {
+            // No JSON error body: the client only accepts an event stream
+            return streamUnavailable(e.getRetryAfter().toSeconds());
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        try {
+            asyncItineraryService.streamItineraryAsync(emitter, tripId, userDetails.getId(), release);
+        } catch (TaskRejectedException e) {
+            release.run();
+            logger.warn("Rejecting streaming generation for tripId {}: generation bulkhead full", tripId);
+            // A stream occupies its slot for about one generation
+            return streamUnavailable(jobAdmission.estimatedWait("ITINERARY_GENERATION", 1).toSeconds());
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static ResponseEntity<SseEmitter> streamUnavailable(long retryAfterSeconds) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfterSeconds)))
+                .build();
+    }
+
     /**
      * Regenerate itinerary asynchronously
      * 
+     * Unlike generate, a regeneration does not attach to a generation already
+     * running for the trip: it cancels it (aborting its Gemini call) and queues
+     * a fresh one.
+     * 
      * POST /api/v1/itineraries/regenerate/{tripId}
+     * Header (optional): Idempotency-Key, see idempotent(); a resend must not
+     * cancel the regeneration it duplicates
      * Response: { "jobId": "uuid-456", "status": "PENDING" }
      */
     @PutMapping("/regenerate/{tripId}")
-    public ResponseEntity<?> regenerateItinerary(@PathVariable Long tripId, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+    public ResponseEntity<?> regenerateItinerary(@PathVariable Long tripId,
+                                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                 @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return idempotent(idempotencyKey, userDetails.getId(), "regenerate", tripId,
+                () -> startRegeneration(tripId, userDetails));
+    }
+
+    private ResponseEntity<?> startRegeneration(Long tripId, UserDetailsImpl userDetails) {
         try {
             logger.info("Initiating async itinerary regeneration for tripId: {}, user: {}", tripId, userDetails.getId());
 
+            jobAdmission.admit(userDetails.getId(), "ITINERARY_REGENERATION");
+
+            // The user asked for a fresh result, so a generation still running for this trip is obsolete
+            int superseded = jobCancellation.cancelSuperseded(tripId, userDetails.getId(), GENERATION_JOB_TYPES);
+            if (superseded > 0) {
+                logger.info("Regeneration for tripId {} superseded {} earlier job(s)", tripId, superseded);
+            }
+
             String jobId = UUID.randomUUID().toString();
             Job job = new Job(jobId, "ITINERARY_REGENERATION", tripId, userDetails.getId());
+            fairScheduler.schedule(job, true);
             jobRepository.save(job);
 
-            asyncItineraryService.generateItineraryAsync(jobId, tripId, userDetails.getId());
-
             Map<String, Object> response = new HashMap<>();
             response.put("jobId", jobId);
             response.put("status", "PENDING");
@@ -96,6 +205,8 @@ public class ItineraryController {
 
             return ResponseEntity.accepted().body(response);
 
+        } catch (JobRejectedException e) {
+            throw e;
         } catch (RuntimeException e) {
             logger.error("Error initiating itinerary regeneration for tripId {}: {}", tripId, e.getMessage());
             if (e.getMessage().contains("user not authorized")) {
@@ -109,21 +220,32 @@ public class ItineraryController {
      * Adapt itinerary asynchronously
      * 
      * POST /api/v1/itineraries/adapt/{tripId}
+     * Header (optional): Idempotency-Key, see idempotent()
      * Body: { "context": "Add more outdoor activities" }
      * Response: { "jobId": "uuid-789", "status": "PENDING" }
      */
     @PostMapping("/adapt/{tripId}")
-    public ResponseEntity<?> adaptItinerary(@PathVariable Long tripId, @RequestBody Map<String, String> adaptationRequest, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+    public ResponseEntity<?> adaptItinerary(@PathVariable Long tripId,
+                                            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                            @RequestBody Map<String, String> adaptationRequest,
+                                            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return idempotent(idempotencyKey, userDetails.getId(), "adapt", tripId,
+                () -> startAdaptation(tripId, adaptationRequest, userDetails));
+    }
+
+    private ResponseEntity<?> startAdaptation(Long tripId, Map<String, String> adaptationRequest, UserDetailsImpl userDetails) {
         try {
             String context = adaptationRequest.get("context");
             logger.info("Initiating async itinerary adaptation for tripId: {}, user: {}, context: {}", tripId, userDetails.getId(), context);
 
+            jobAdmission.admit(userDetails.getId(), "ITINERARY_ADAPTATION");
+
             String jobId = UUID.randomUUID().toString();
             Job job = new Job(jobId, "ITINERARY_ADAPTATION", tripId, userDetails.getId());
+            job.setPayload(context);
+            fairScheduler.schedule(job, true);
             jobRepository.save(job);
 
-            asyncItineraryService.adaptItineraryAsync(jobId, tripId, userDetails.getId(), context);
-
             Map<String, Object> response = new HashMap<>();
             response.put("jobId", jobId);
             response.put("status", "PENDING");
@@ -131,6 +253,8 @@ public class ItineraryController {
 
             return ResponseEntity.accepted().body(response);
 
+        } catch (JobRejectedException e) {
+            throw e;
         } catch (RuntimeException e) {
             logger.error("Error initiating itinerary adaptation for tripId {}: {}", tripId, e.getMessage());
             if (e.getMessage().contains("user not authorized")) {
@@ -139,4 +263,85 @@ public class ItineraryController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("message", "An error occurred while initiating itinerary adaptation."));
         }
     }
+
+    /**
+     * Run a job submission at most once per Idempotency-Key
+     *
+     * A request repeating a key that already created a job gets that job's id
+     * and current status back (202, Idempotent-Replayed: true) and queues
+     * nothing. A repeat that arrives while the first request is still being
+     * handled gets 409 + Retry-After. If the submission does not create a job
+     * (rejected, forbidden, failed), the key is released so the client can
+     * retry with it. Requests without the header are submitted as before.
+     */
+    private ResponseEntity<?> idempotent(String idempotencyKey, Long userId, String operation, Long tripId,
+                                         Supplier<ResponseEntity<?>> submission) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return submission.get();
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("message",
+                    IDEMPOTENCY_KEY_HEADER + " must be at most " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters."));
+        }
+
+        Optional<IdempotencyKeys.Recorded> recorded = idempotencyKeys.reserve(userId, operation, tripId, idempotencyKey);
+        if (recorded.isPresent()) {
+            return replayedJobResponse(recorded.get());
+        }
+
+        String jobId = null;
+        try {
+            ResponseEntity<?> response = submission.get();
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() instanceof Map<?, ?> body) {
+                jobId = (String) body.get("jobId");
+            }
+            return response;
+        } finally {
+            if (jobId != null) {
+                idempotencyKeys.complete(userId, operation, tripId, idempotencyKey, jobId);
+            } else {
+                idempotencyKeys.release(userId, operation, tripId, idempotencyKey);
+            }
+        }
+    }
+
+    private ResponseEntity<?> replayedJobResponse(IdempotencyKeys.Recorded recorded) {
+        if (recorded.inProgress()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", "A request with this " + IDEMPOTENCY_KEY_HEADER + " is still being processed."));
+        }
+
+        // The job row is written just before the key is completed, so it only goes missing once purged
+        String jobId = recorded.jobId();
+        String status = jobRepository.findByJobId(jobId)
+                .map(job -> job.getStatus().toString())
+                .orElse(Job.JobStatus.PENDING.toString());
+        logger.info("Replaying job {} for repeated {}", jobId, IDEMPOTENCY_KEY_HEADER);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", jobId);
+        response.put("status", status);
+        response.put("duplicate", true);
+        response.put("message", "This request was already received. Poll /api/v1/jobs/" + jobId + " for status.");
+        return ResponseEntity.accepted()
+                .header("Idempotent-Replayed", "true")
+                .body(response);
+    }
+
+    private Optional<Job> findActiveGenerationJob(Long tripId, Long userId) {
+        return jobRepository.findFirstByTripIdAndUserIdAndJobTypeInAndStatusInOrderByCreatedAtDesc(
+                tripId, userId, GENERATION_JOB_TYPES, ACTIVE_STATUSES);
+    }
+
+    private Map<String, Object> attachedJobResponse(Job job) {
+        logger.info("Attaching request for tripId {} to in-flight job {}", job.getTripId(), job.getJobId());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getJobId());
+        response.put("status", job.getStatus().toString());
+        response.put("attached", true);
+        response.put("message", "A generation for this trip is already running. Poll /api/v1/jobs/" + job.getJobId() + " for status.");
+        return response;
+    }
 }
@@ -1,20 +1,34 @@
 package com.travelplanner.controller.v1;
 
 import com.travelplanner.dto.response.JobResponse;
+import com.travelplanner.model.Itinerary;
 import com.travelplanner.model.Job;
+import com.travelplanner.repository.ItineraryRepository;
 import com.travelplanner.repository.JobRepository;
+import com.travelplanner.service.FairScheduler;
+import com.travelplanner.service.JobAdmission;
+import com.travelplanner.service.JobCancellation;
+import com.travelplanner.service.JobStatusNotifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import com.travelplanner.security.services.UserDetailsImpl;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Job Controller
@@ -22,14 +36,20 @@ import java.util.UUID;
  * Provides endpoints for:
  * - Creating new async jobs
  * - Polling job status
- * - Getting job results
+ * - Getting job results (the itinerary a completed job produced, on request)
+ * 
+ * Saved jobs are queued: a JobWorker on any node picks them up. New jobs
+ * pass JobAdmission first and are answered 503 + Retry-After on overload.
+ * Jobs created here are scheduled as bulk work (see FairScheduler), behind
+ * requests made from the app.
  * 
  * This enables the frontend to:
  * 1. Submit a job and get a jobId immediately
  * 2. Poll for job status periodically
- * 3. Retrieve results when job completes
+ * 3. Retrieve results when job completes (GET /api/v1/jobs/{jobId}/result)
  * 
- * Future enhancement: Replace polling with WebSocket for real-time updates.
+ * 4. Or subscribe to /api/v1/jobs/{jobId}/events instead of polling
+ * 5. Cancel a job nobody is waiting for with DELETE /api/v1/jobs/{jobId}/run
  */
 @RestController
 @RequestMapping("/api/v1/jobs")
@@ -40,6 +60,24 @@ public class JobController {
     @Autowired
     private JobRepository jobRepository;
 
+    @Autowired
+    private ItineraryRepository itineraryRepository;
+
+    @Autowired
+    private JobStatusNotifier jobStatusNotifier;
+
+    @Autowired
+    private JobAdmission jobAdmission;
+
+    @Autowired
+    private FairScheduler fairScheduler;
+
+    @Autowired
+    private JobCancellation jobCancellation;
+
+    @Value("${jobs.status.max-wait-seconds:30}")
+    private int maxWaitSeconds;
+
     /**
      * Create a new async job for itinerary generation
      * 
@@ -57,11 +95,15 @@ public class JobController {
         
         logger.info("Creating itinerary generation job for trip: {}, user: {}", tripId, userId);
         
+        // Turn overload away before queueing (503 + Retry-After)
+        jobAdmission.admit(userId, "ITINERARY_GENERATION");
+        
         // Generate unique job ID
         String jobId = UUID.randomUUID().toString();
         
         // Create job record
         Job job = new Job(jobId, "ITINERARY_GENERATION", tripId, userId);
+        fairScheduler.schedule(job, false);
         jobRepository.save(job);
         
         // Return job info
@@ -91,9 +133,13 @@ public class JobController {
         
         logger.info("Creating itinerary adaptation job for trip: {}, user: {}, context: {}", tripId, userId, context);
         
+        jobAdmission.admit(userId, "ITINERARY_ADAPTATION");
+        
         String jobId = UUID.randomUUID().toString();
         
         Job job = new Job(jobId, "ITINERARY_ADAPTATION", tripId, userId);
+        job.setPayload(context);
+        fairScheduler.schedule(job, false);
         jobRepository.save(job);
         
         Map<String, Object> response = new HashMap<>();
@@ -107,35 +153,206 @@ public class JobController {
     /**
      * Get job status by jobId
      * 
+     * The response carries an ETag for the job's status and progress. A
+     * request whose If-None-Match still matches gets a body-less 304, answered
+     * from the status and progress columns without reading the row.
+     * While the job is PROCESSING the response includes its phase and the
+     * days finished so far (partialResult).
+     * 
      * GET /api/v1/jobs/{jobId}
-     * Response: { "jobId": "uuid-123", "status": "COMPLETED", "result": {...} }
+     * Response: { "jobId": "uuid-123", "status": "COMPLETED", "itineraryId": 7, "itineraryVersion": 2 }
      */
     @GetMapping("/{jobId}")
-    public ResponseEntity<JobResponse> getJobStatus(@PathVariable String jobId) {
-        logger.info("Fetching status for job: {}", jobId);
-        
+    public ResponseEntity<JobResponse> getJobStatus(
+            @PathVariable String jobId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.debug("Fetching status for job: {}", jobId);
+
+        if (ifNoneMatch != null) {
+            Optional<JobRepository.JobStatusView> view = jobRepository.findStatusViewByJobId(jobId);
+            if (view.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = etag(view.get());
+            if (etagMatches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
+        }
+
+        return currentStatus(jobId);
+    }
+
+    /**
+     * Long-poll job status
+     * 
+     * Waits up to waitSeconds (capped at jobs.status.max-wait-seconds) for the
+     * job to move on from the status the client last saw: the one named by
+     * If-None-Match, or the current one if the header is absent. Answers as
+     * soon as it changes, or with 304 (200 without If-None-Match) on timeout.
+     * The wait holds no servlet thread.
+     * 
+     * GET /api/v1/jobs/{jobId}?waitSeconds=25
+     */
+    @GetMapping(value = "/{jobId}", params = "waitSeconds")
+    public DeferredResult<ResponseEntity<JobResponse>> waitForJobStatus(
+            @PathVariable String jobId,
+            @RequestParam int waitSeconds,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long timeoutMs = TimeUnit.SECONDS.toMillis(Math.max(0, Math.min(waitSeconds, maxWaitSeconds)));
+        DeferredResult<ResponseEntity<JobResponse>> result = new DeferredResult<>(timeoutMs);
+
+        Optional<JobRepository.JobStatusView> view = jobRepository.findStatusViewByJobId(jobId);
+        if (view.isEmpty()) {
+            result.setResult(ResponseEntity.notFound().build());
+            return result;
+        }
+        Job.JobStatus status = view.get().getStatus();
+        String etag = etag(view.get());
+        boolean clientUpToDate = ifNoneMatch != null && etagMatches(ifNoneMatch, etag);
+        boolean clientBehind = ifNoneMatch != null && !clientUpToDate;
+        if (timeoutMs == 0 || clientBehind || JobStatusNotifier.isTerminal(status)) {
+            result.setResult(clientUpToDate ? notModified(etag) : currentStatus(jobId));
+            return result;
+        }
+
+        String state = JobStatusNotifier.state(status, view.get().getPhase(), view.get().getDaysCompleted());
+        Runnable unsubscribe = jobStatusNotifier.subscribe(jobId, state, event ->
+                result.setResult(ResponseEntity.ok().eTag(etag(JobStatusNotifier.state(event))).body(event)));
+        result.onCompletion(unsubscribe);
+        result.onTimeout(() -> result.setResult(clientUpToDate ? notModified(etag) : currentStatus(jobId)));
+        return result;
+    }
+
+    private ResponseEntity<JobResponse> currentStatus(String jobId) {
         Optional<Job> jobOpt = jobRepository.findByJobId(jobId);
-        
+
         if (jobOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
-        
+
         Job job = jobOpt.get();
-        JobResponse response = new JobResponse(
-            job.getJobId(),
-            job.getStatus().toString(),
-            job.getResult(),
-            job.getErrorMessage(),
-            job.getCreatedAt(),
-            job.getStartedAt(),
-            job.getCompletedAt()
-        );
-        
-        return ResponseEntity.ok(response);
+        String state = JobStatusNotifier.state(job.getStatus(), job.getPhase(), job.getDaysCompleted());
+        return ResponseEntity.ok().eTag(etag(state)).body(JobResponse.from(job));
+    }
+
+    private static ResponseEntity<JobResponse> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private static String etag(JobRepository.JobStatusView view) {
+        return etag(JobStatusNotifier.state(view.getStatus(), view.getPhase(), view.getDaysCompleted()));
+    }
+
+    /**
+     * Weak ETag: everything a poller acts on changes with the status, or with
+     * the progress of a PROCESSING job
+     */
+    private static String etag(String state) {
+        return "W/\"" + state + "\"";
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals(opaque)
+                    || (trimmed.startsWith("W/") && trimmed.substring(2).equals(opaque))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the itinerary a completed job produced
+     * 
+     * The job only refers to the itinerary; its content is read here, when a
+     * client asks for it. If the itinerary has been changed since (regenerated
+     * or adapted again), the job's version of it is gone: 409, and the current
+     * one is read from the trip.
+     * 
+     * GET /api/v1/jobs/{jobId}/result
+     * Response: the itinerary JSON, ETag "itineraryId-version"
+     */
+    @GetMapping(value = "/{jobId}/result", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getJobResult(@PathVariable String jobId) {
+        Optional<Job> jobOpt = jobRepository.findByJobId(jobId);
+
+        if (jobOpt.isEmpty() || jobOpt.get().getItineraryId() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Job job = jobOpt.get();
+        Optional<Itinerary> itinerary = itineraryRepository.findById(job.getItineraryId())
+                .filter(current -> !Boolean.TRUE.equals(current.getDeleted()));
+        if (itinerary.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!Objects.equals(itinerary.get().getVersion(), job.getItineraryVersion())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok()
+                .eTag("\"" + job.getItineraryId() + "-" + job.getItineraryVersion() + "\"")
+                .body(itinerary.get().getContent());
+    }
+
+    /**
+     * Subscribe to job status over Server-Sent Events
+     * 
+     * Pushes a "status" event (same shape as GET /api/v1/jobs/{jobId}) with the
+     * current state, then one per transition. The stream ends after COMPLETED,
+     * FAILED or CANCELLED. Polling GET /api/v1/jobs/{jobId} remains as a fallback.
+     * 
+     * GET /api/v1/jobs/{jobId}/events
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobStatus(@PathVariable String jobId) {
+        logger.info("Opening status stream for job: {}", jobId);
+
+        Optional<Job> jobOpt = jobRepository.findByJobId(jobId);
+
+        if (jobOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(jobStatusNotifier.stream(jobOpt.get()));
+    }
+
+    /**
+     * Cancel a job that has not finished
+     * 
+     * A queued job (or one waiting for a retry) is never run; a running one is
+     * interrupted, aborting its Gemini call. Cancelling a cancelled job is a no-op.
+     * 
+     * DELETE /api/v1/jobs/{jobId}/run
+     * Response: the job, CANCELLED; 409 with the job if it already finished
+     */
+    @DeleteMapping("/{jobId}/run")
+    public ResponseEntity<JobResponse> cancelJob(
+            @PathVariable String jobId,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        Optional<Job> jobOpt = jobRepository.findByJobId(jobId);
+
+        // Other users' jobs are reported as missing
+        if (jobOpt.isEmpty() || !userDetails.getId().equals(jobOpt.get().getUserId())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Job job = jobOpt.get();
+        logger.info("Cancelling job: {}, user: {}", jobId, userDetails.getId());
+        if (job.getStatus() == Job.JobStatus.CANCELLED || jobCancellation.cancel(job)) {
+            return ResponseEntity.ok(JobResponse.from(job));
+        }
+
+        // Finished before the cancellation landed
+        return jobRepository.findByJobId(jobId)
+                .map(current -> ResponseEntity.status(HttpStatus.CONFLICT).body(JobResponse.from(current)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
-     * Delete a job record (cleanup after retrieving results)
+     * Delete a job record (cleanup after retrieving results). Finished jobs
+     * are also purged once past the retention period (see JobRetention).
      * 
      * DELETE /api/v1/jobs/{jobId}
      */
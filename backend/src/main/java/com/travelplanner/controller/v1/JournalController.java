@@ -4,18 +4,34 @@ import com.travelplanner.model.JournalEntry;
 import com.travelplanner.security.services.UserDetailsImpl;
 import com.travelplanner.service.JournalService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.Executor;
 
 @RestController
 @RequestMapping("/api/v1/journal")
 public class JournalController {
 
+    private static final int RETRY_AFTER_SECONDS = 10;
+
     @Autowired
     private JournalService journalService;
 
+    @Autowired
+    @Qualifier("journalExecutor")
+    private Executor journalExecutor;
+
+    @Value("${journal.generate.timeout-ms:180000}")
+    private long generateTimeoutMs;
+
     // POST/PUT: Creates a new journal or updates an existing one for a trip
     @PostMapping("/{tripId}")
     public ResponseEntity<JournalEntry> saveJournal(@PathVariable Long tripId, @RequestBody JournalEntry journalData, @AuthenticationPrincipal UserDetailsImpl userDetails) {
@@ -47,13 +63,29 @@ public class JournalController {
     }
 
     // POST: Generate journal from photos using AI
+    // Runs on the journal bulkhead so the request thread is freed while Gemini
+    // reads the photos; when the bulkhead is full the request is turned away with 503.
     @PostMapping("/generate/{tripId}")
-    public ResponseEntity<JournalEntry> generateJournal(@PathVariable Long tripId, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+    public DeferredResult<ResponseEntity<JournalEntry>> generateJournal(@PathVariable Long tripId, @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        DeferredResult<ResponseEntity<JournalEntry>> result = new DeferredResult<>(generateTimeoutMs);
+        result.onTimeout(() -> result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build()));
+        Long userId = userDetails.getId();
+        try {
+            journalExecutor.execute(() -> result.setResult(generate(tripId, userId)));
+        } catch (TaskRejectedException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                    .build());
+        }
+        return result;
+    }
+
+    private ResponseEntity<JournalEntry> generate(Long tripId, Long userId) {
         try {
-            JournalEntry generatedJournal = journalService.generateJournalFromPhotos(tripId, userDetails.getId());
+            JournalEntry generatedJournal = journalService.generateJournalFromPhotos(tripId, userId);
             return ResponseEntity.ok(generatedJournal);
         } catch (RuntimeException e) {
-            if (e.getMessage().contains("user not authorized")) {
+            if (e.getMessage() != null && e.getMessage().contains("user not authorized")) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -1,5 +1,7 @@
 package com.travelplanner.dto.response;
 
+import com.travelplanner.model.Job;
+
 import java.time.LocalDateTime;
 
 /**
@@ -7,31 +9,61 @@ import java.time.LocalDateTime;
  * 
  * Represents the response for job status queries.
  * Used by frontend to poll for async job completion.
+ * 
+ * While the job is PROCESSING it also carries the attempt's progress:
+ * phase, daysCompleted of totalDays, and partialResult (a JSON array of
+ * the days finished so far). A COMPLETED job names the itinerary it produced
+ * (itineraryId, itineraryVersion); the document itself is fetched from
+ * GET /api/v1/jobs/{jobId}/result, so status polls stay small.
  */
 public class JobResponse {
     
     private String jobId;
     private String status;
-    private String result;
+    private Long itineraryId;
+    private Long itineraryVersion;
     private String errorMessage;
     private LocalDateTime createdAt;
     private LocalDateTime startedAt;
     private LocalDateTime completedAt;
+    private String phase;
+    private Integer daysCompleted;
+    private Integer totalDays;
+    private String partialResult;
 
     public JobResponse() {
     }
 
-    public JobResponse(String jobId, String status, String result, String errorMessage, 
+    public JobResponse(String jobId, String status, String errorMessage,
                       LocalDateTime createdAt, LocalDateTime startedAt, LocalDateTime completedAt) {
         this.jobId = jobId;
         this.status = status;
-        this.result = result;
         this.errorMessage = errorMessage;
         this.createdAt = createdAt;
         this.startedAt = startedAt;
         this.completedAt = completedAt;
     }
 
+    public static JobResponse from(Job job) {
+        JobResponse response = new JobResponse(
+            job.getJobId(),
+            job.getStatus().toString(),
+            job.getErrorMessage(),
+            job.getCreatedAt(),
+            job.getStartedAt(),
+            job.getCompletedAt()
+        );
+        response.setItineraryId(job.getItineraryId());
+        response.setItineraryVersion(job.getItineraryVersion());
+        if (job.getStatus() == Job.JobStatus.PROCESSING) {
+            response.setPhase(job.getPhase() != null ? job.getPhase().toString() : null);
+            response.setDaysCompleted(job.getDaysCompleted());
+            response.setTotalDays(job.getTotalDays());
+            response.setPartialResult(job.getPartialResult());
+        }
+        return response;
+    }
+
     // Getters and Setters
     public String getJobId() {
         return jobId;
@@ -49,12 +81,20 @@ public class JobResponse {
         this.status = status;
     }
 
-    public String getResult() {
-        return result;
+    public Long getItineraryId() {
+        return itineraryId;
+    }
+
+    public void setItineraryId(Long itineraryId) {
+        this.itineraryId = itineraryId;
     }
 
-    public void setResult(String result) {
-        this.result = result;
+    public Long getItineraryVersion() {
+        return itineraryVersion;
+    }
+
+    public void setItineraryVersion(Long itineraryVersion) {
+        this.itineraryVersion = itineraryVersion;
     }
 
     public String getErrorMessage() {
@@ -88,4 +128,36 @@ public class JobResponse {
     public void setCompletedAt(LocalDateTime completedAt) {
         this.completedAt = completedAt;
     }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public Integer getDaysCompleted() {
+        return daysCompleted;
+    }
+
+    public void setDaysCompleted(Integer daysCompleted) {
+        this.daysCompleted = daysCompleted;
+    }
+
+    public Integer getTotalDays() {
+        return totalDays;
+    }
+
+    public void setTotalDays(Integer totalDays) {
+        this.totalDays = totalDays;
+    }
+
+    public String getPartialResult() {
+        return partialResult;
+    }
+
+    public void setPartialResult(String partialResult) {
+        this.partialResult = partialResult;
+    }
 }
@@ -0,0 +1,35 @@
+package com.travelplanner.exception;
+
+import java.time.Duration;
+
+/**
+ * Raised when the Gemini API answers with an HTTP error status.
+ * Carries the status code and any Retry-After hint so callers can
+ * tell transient overload (429/5xx) apart from permanent request errors.
+ */
+public class GeminiApiException extends RuntimeException {
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public GeminiApiException(int statusCode, String message, Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Server-requested delay before retrying, or null if none was sent
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
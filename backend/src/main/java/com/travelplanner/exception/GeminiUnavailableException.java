@@ -0,0 +1,21 @@
+package com.travelplanner.exception;
+
+import java.time.Duration;
+
+/**
+ * Raised without contacting Gemini when the circuit breaker is open or the
+ * adaptive concurrency limit cannot admit another call in time.
+ */
+public class GeminiUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public GeminiUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
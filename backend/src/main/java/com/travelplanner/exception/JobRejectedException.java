@@ -0,0 +1,22 @@
+package com.travelplanner.exception;
+
+import java.time.Duration;
+
+/**
+ * Raised when a job is not accepted because the queue is backed up or the
+ * user already has too many jobs in flight. Answered with 503 and a
+ * Retry-After of the estimated wait.
+ */
+public class JobRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public JobRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
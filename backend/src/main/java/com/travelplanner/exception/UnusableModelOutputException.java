@@ -0,0 +1,13 @@
+package com.travelplanner.exception;
+
+/**
+ * Raised when a model response cannot be repaired into the expected structure.
+ * Recoverable damage (truncation, a partial last item) is repaired instead, so
+ * this marks output that is genuinely unusable.
+ */
+public class UnusableModelOutputException extends RuntimeException {
+
+    public UnusableModelOutputException(String message) {
+        super(message);
+    }
+}
@@ -9,12 +9,36 @@ import java.time.LocalDateTime;
  * Tracks asynchronous operations like AI itinerary generation.
  * Allows frontend to poll for job status instead of blocking.
  * 
+ * The jobs table doubles as the work queue: a PENDING row is a queued job,
+ * claimed by a JobWorker on any node. The claiming worker holds a lease
+ * (leaseOwner until leaseExpiresAt) that it renews while working; a job
+ * whose lease expires goes back to PENDING. Claimable jobs are taken in
+ * fairTag order (per-user weighted fair queuing, see FairScheduler).
+ * 
  * Status Flow:
  * PENDING → PROCESSING → COMPLETED
  * PENDING → PROCESSING → FAILED
+ * PENDING → PROCESSING → PENDING (lease expired or released, or retry scheduled)
+ * PENDING/PROCESSING → CANCELLED (cancelled by the user or superseded)
+ * 
+ * While PROCESSING, the running attempt records its progress: the phase it
+ * is in, and for generations the days parsed so far (partialResult, a JSON
+ * array of finished days in day order). Progress is reset when a job is
+ * claimed, so it always describes the current attempt. partialResult is
+ * stored gzip-compressed.
+ * 
+ * A completed job refers to the itinerary it produced (itineraryId and
+ * itineraryVersion) rather than holding a copy of it: the document lives
+ * once, in Itinerary.content, and is only read when a client asks for it.
+ * 
+ * Finished jobs are deleted once they are older than the retention period
+ * (see JobRetention).
  */
 @Entity
-@Table(name = "jobs")
+@Table(name = "jobs", indexes = {
+        @Index(name = "idx_jobs_queue", columnList = "status, availableAt"),
+        @Index(name = "idx_jobs_retention", columnList = "completedAt")
+})
 public class Job {
 
     @Id
@@ -37,8 +61,12 @@ public class Job {
     @Column
     private Long userId;
 
-    @Column(columnDefinition = "TEXT")
-    private String result;
+    // The itinerary a completed job produced, and its version at completion
+    @Column
+    private Long itineraryId;
+
+    @Column
+    private Long itineraryVersion;
 
     @Column(columnDefinition = "TEXT")
     private String errorMessage;
@@ -55,16 +83,78 @@ public class Job {
     @Column
     private Integer retryCount = 0;
 
+    // Job input beyond trip and user, e.g. the adaptation context
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    // Earliest time a worker may claim the job
+    @Column
+    private LocalDateTime availableAt;
+
+    @Column
+    private String leaseOwner;
+
+    @Column
+    private LocalDateTime leaseExpiresAt;
+
+    // Times the job has been claimed; bounds redelivery of jobs that keep losing their worker
+    @Column
+    private Integer deliveryCount = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column
+    private Priority priority;
+
+    // Virtual finish time (epoch ms) assigned by FairScheduler; claimed in ascending order
+    @Column
+    private Long fairTag;
+
+    @Enumerated(EnumType.STRING)
+    @Column
+    private Phase phase;
+
+    @Column
+    private Integer daysCompleted;
+
+    @Column
+    private Integer totalDays;
+
+    // Days of the itinerary finished so far, while the job is PROCESSING
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "partial_result_gz", length = 1048576)
+    private String partialResult;
+
     public enum JobStatus {
         PENDING,
         PROCESSING,
         COMPLETED,
-        FAILED
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * Scheduling class; higher classes carry a larger fair-queuing weight
+     */
+    public enum Priority {
+        FIRST_ITINERARY,
+        INTERACTIVE,
+        BULK
+    }
+
+    /**
+     * Step a running itinerary job has reached
+     */
+    public enum Phase {
+        PROMPT_BUILT,
+        MODEL_STREAMING,
+        PARSING,
+        PERSISTING
     }
 
     // Constructors
     public Job() {
         this.createdAt = LocalDateTime.now();
+        this.availableAt = this.createdAt;
         this.status = JobStatus.PENDING;
     }
 
@@ -125,12 +215,20 @@ public class Job {
         this.userId = userId;
     }
 
-    public String getResult() {
-        return result;
+    public Long getItineraryId() {
+        return itineraryId;
+    }
+
+    public void setItineraryId(Long itineraryId) {
+        this.itineraryId = itineraryId;
     }
 
-    public void setResult(String result) {
-        this.result = result;
+    public Long getItineraryVersion() {
+        return itineraryVersion;
+    }
+
+    public void setItineraryVersion(Long itineraryVersion) {
+        this.itineraryVersion = itineraryVersion;
     }
 
     public String getErrorMessage() {
@@ -176,4 +274,92 @@ public class Job {
     public void incrementRetryCount() {
         this.retryCount++;
     }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getAvailableAt() {
+        return availableAt;
+    }
+
+    public void setAvailableAt(LocalDateTime availableAt) {
+        this.availableAt = availableAt;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public Integer getDeliveryCount() {
+        return deliveryCount;
+    }
+
+    public void setDeliveryCount(Integer deliveryCount) {
+        this.deliveryCount = deliveryCount;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    public Long getFairTag() {
+        return fairTag;
+    }
+
+    public void setFairTag(Long fairTag) {
+        this.fairTag = fairTag;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    public Integer getDaysCompleted() {
+        return daysCompleted;
+    }
+
+    public void setDaysCompleted(Integer daysCompleted) {
+        this.daysCompleted = daysCompleted;
+    }
+
+    public Integer getTotalDays() {
+        return totalDays;
+    }
+
+    public void setTotalDays(Integer totalDays) {
+        this.totalDays = totalDays;
+    }
+
+    public String getPartialResult() {
+        return partialResult;
+    }
+
+    public void setPartialResult(String partialResult) {
+        this.partialResult = partialResult;
+    }
 }
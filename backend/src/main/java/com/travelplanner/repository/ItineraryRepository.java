@@ -2,8 +2,13 @@ package com.travelplanner.repository;
 
 import com.travelplanner.model.Itinerary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ItineraryRepository extends JpaRepository<Itinerary, Long> {
+
+    @Query("SELECT COUNT(i) > 0 FROM Itinerary i WHERE i.trip.user.id = :userId")
+    boolean existsByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -1,20 +1,212 @@
 package com.travelplanner.repository;
 
 import com.travelplanner.model.Job;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Job Repository
  * 
- * Manages persistence of async job tracking records.
+ * Manages persistence of async job tracking records, and the queue
+ * operations JobQueue builds on.
  */
 @Repository
 public interface JobRepository extends JpaRepository<Job, Long> {
+
+    /**
+     * Status and progress view of a job, read without its result TEXT
+     */
+    interface JobStatusView {
+        String getJobId();
+
+        Job.JobStatus getStatus();
+
+        Job.Phase getPhase();
+
+        Integer getDaysCompleted();
+    }
+
+    /**
+     * Number of jobs a user has waiting
+     */
+    interface UserQueueDepth {
+        Long getUserId();
+
+        long getDepth();
+    }
     
     Optional<Job> findByJobId(String jobId);
+
+    Optional<JobStatusView> findStatusViewByJobId(String jobId);
+
+    @Query("SELECT j.jobId AS jobId, j.status AS status, j.phase AS phase, j.daysCompleted AS daysCompleted " +
+            "FROM Job j WHERE j.jobId IN :jobIds")
+    List<JobStatusView> findStatusesByJobIdIn(@Param("jobIds") Collection<String> jobIds);
+
+    /**
+     * Most recent job for a trip matching the given types and statuses,
+     * used to attach duplicate submissions to a generation already running.
+     */
+    Optional<Job> findFirstByTripIdAndUserIdAndJobTypeInAndStatusInOrderByCreatedAtDesc(
+            Long tripId, Long userId, Collection<String> jobTypes, Collection<Job.JobStatus> statuses);
+
+    List<Job> findByTripIdAndUserIdAndJobTypeInAndStatusIn(
+            Long tripId, Long userId, Collection<String> jobTypes, Collection<Job.JobStatus> statuses);
+
+    long countByUserIdAndStatusIn(Long userId, Collection<Job.JobStatus> statuses);
+
+    long countByJobTypeInAndStatus(Collection<String> jobTypes, Job.JobStatus status);
+
+    /**
+     * Latest fair-queuing tag among a user's jobs in the given status, i.e. the
+     * virtual time at which that user's backlog of these job types finishes
+     */
+    @Query("SELECT MAX(j.fairTag) FROM Job j WHERE j.userId = :userId AND j.jobType IN :jobTypes AND j.status = :status")
+    Optional<Long> findMaxFairTag(@Param("userId") Long userId, @Param("jobTypes") Collection<String> jobTypes,
+                                  @Param("status") Job.JobStatus status);
+
+    @Query("SELECT j.userId AS userId, COUNT(j) AS depth FROM Job j WHERE j.status = :status GROUP BY j.userId")
+    List<UserQueueDepth> countByStatusGroupByUser(@Param("status") Job.JobStatus status);
+
+    /**
+     * Lock up to a page of claimable jobs of the given types, lowest fair-queuing
+     * tag first (untagged jobs, queued before tags existed, go first; ties by age).
+     *
+     * Lock timeout -2 is Hibernate's SKIP_LOCKED: on PostgreSQL this runs as
+     * SELECT ... FOR UPDATE SKIP LOCKED, so concurrent workers on any node
+     * each get a disjoint set of rows without waiting on one another.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT j FROM Job j WHERE j.status = :status AND j.jobType IN :jobTypes " +
+            "AND (j.availableAt IS NULL OR j.availableAt <= :now) ORDER BY COALESCE(j.fairTag, 0), j.createdAt")
+    List<Job> findClaimable(@Param("status") Job.JobStatus status, @Param("jobTypes") Collection<String> jobTypes,
+                            @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Job j SET j.leaseExpiresAt = :expiresAt " +
+            "WHERE j.jobId = :jobId AND j.leaseOwner = :owner AND j.status = :status")
+    int renewLease(@Param("jobId") String jobId, @Param("owner") String owner,
+                   @Param("status") Job.JobStatus status, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Record the progress of a running attempt, only if owner still holds its lease
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.phase = :phase, j.daysCompleted = :daysCompleted, j.totalDays = :totalDays, " +
+            "j.partialResult = :partialResult WHERE j.jobId = :jobId AND j.leaseOwner = :owner AND j.status = :status")
+    int updateProgress(@Param("jobId") String jobId, @Param("owner") String owner, @Param("status") Job.JobStatus status,
+                       @Param("phase") Job.Phase phase, @Param("daysCompleted") Integer daysCompleted,
+                       @Param("totalDays") Integer totalDays, @Param("partialResult") String partialResult);
+
+    /**
+     * Record the outcome of a job, only if owner still holds its lease.
+     * Partial days are dropped; a completed job refers to the whole itinerary.
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :status, j.itineraryId = :itineraryId, j.itineraryVersion = :itineraryVersion, " +
+            "j.errorMessage = :errorMessage, j.retryCount = :retryCount, j.completedAt = :completedAt, " +
+            "j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.partialResult = NULL " +
+            "WHERE j.jobId = :jobId AND j.leaseOwner = :owner")
+    int finish(@Param("jobId") String jobId, @Param("owner") String owner, @Param("status") Job.JobStatus status,
+               @Param("itineraryId") Long itineraryId, @Param("itineraryVersion") Long itineraryVersion,
+               @Param("errorMessage") String errorMessage,
+               @Param("retryCount") Integer retryCount, @Param("completedAt") LocalDateTime completedAt);
+
+    /**
+     * Put a job held by owner back in the queue without counting the delivery
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :pending, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, " +
+            "j.availableAt = :now, j.deliveryCount = j.deliveryCount - 1 " +
+            "WHERE j.jobId = :jobId AND j.leaseOwner = :owner AND j.status = :processing")
+    int release(@Param("jobId") String jobId, @Param("owner") String owner, @Param("now") LocalDateTime now,
+                @Param("processing") Job.JobStatus processing, @Param("pending") Job.JobStatus pending);
+
+    /**
+     * Put a job held by owner back in the queue for another attempt at availableAt.
+     * The finished attempt was a delivery that ran its course, so it is not counted
+     * against max-deliveries (which guards against abandoned leases).
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :pending, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, " +
+            "j.availableAt = :availableAt, j.retryCount = :retryCount, j.deliveryCount = j.deliveryCount - 1 " +
+            "WHERE j.jobId = :jobId AND j.leaseOwner = :owner AND j.status = :processing")
+    int scheduleRetry(@Param("jobId") String jobId, @Param("owner") String owner,
+                      @Param("availableAt") LocalDateTime availableAt, @Param("retryCount") Integer retryCount,
+                      @Param("processing") Job.JobStatus processing, @Param("pending") Job.JobStatus pending);
+
+    /**
+     * Put every job held by owner back in the queue (worker shutdown)
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :pending, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, " +
+            "j.availableAt = :now, j.deliveryCount = j.deliveryCount - 1 " +
+            "WHERE j.leaseOwner = :owner AND j.status = :processing")
+    int releaseAll(@Param("owner") String owner, @Param("now") LocalDateTime now,
+                   @Param("processing") Job.JobStatus processing, @Param("pending") Job.JobStatus pending);
+
+    /**
+     * Re-queue jobs whose lease expired (or that were never leased, e.g. left
+     * PROCESSING by a node that crashed) and still have deliveries left
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :pending, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.availableAt = :now " +
+            "WHERE j.status = :processing AND (j.leaseExpiresAt IS NULL OR j.leaseExpiresAt < :now) " +
+            "AND (j.deliveryCount IS NULL OR j.deliveryCount < :maxDeliveries)")
+    int requeueExpired(@Param("now") LocalDateTime now, @Param("maxDeliveries") int maxDeliveries,
+                       @Param("processing") Job.JobStatus processing, @Param("pending") Job.JobStatus pending);
+
+    /**
+     * Fail jobs whose lease expired on their last allowed delivery
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :failed, j.errorMessage = :errorMessage, j.completedAt = :now, " +
+            "j.leaseOwner = NULL, j.leaseExpiresAt = NULL " +
+            "WHERE j.status = :processing AND (j.leaseExpiresAt IS NULL OR j.leaseExpiresAt < :now) " +
+            "AND j.deliveryCount >= :maxDeliveries")
+    int failExpired(@Param("now") LocalDateTime now, @Param("maxDeliveries") int maxDeliveries,
+                    @Param("errorMessage") String errorMessage,
+                    @Param("processing") Job.JobStatus processing, @Param("failed") Job.JobStatus failed);
     
+    /**
+     * Cancel a job that has not finished; clearing the lease makes the running
+     * worker's complete()/fail()/retry() miss, so its outcome is discarded
+     */
+    @Modifying
+    @Query("UPDATE Job j SET j.status = :cancelled, j.errorMessage = :reason, j.completedAt = :now, " +
+            "j.leaseOwner = NULL, j.leaseExpiresAt = NULL " +
+            "WHERE j.jobId = :jobId AND j.status IN :active")
+    int cancel(@Param("jobId") String jobId, @Param("reason") String reason, @Param("now") LocalDateTime now,
+               @Param("active") Collection<Job.JobStatus> active, @Param("cancelled") Job.JobStatus cancelled);
+
     void deleteByJobId(String jobId);
+
+    /**
+     * Lock up to a page of jobs in the given (finished) statuses that completed
+     * before cutoff, oldest first. Skips rows locked elsewhere, so purges
+     * running on several nodes each take a disjoint batch.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT j FROM Job j WHERE j.status IN :statuses AND j.completedAt < :cutoff ORDER BY j.completedAt")
+    List<Job> findPurgeable(@Param("statuses") Collection<Job.JobStatus> statuses,
+                            @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM Job j WHERE j.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,101 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adaptation Scope
+ *
+ * Works out which days of an itinerary an adaptation request refers to, so only
+ * those days need to be sent to Gemini.
+ *
+ * Recognised references:
+ * - "day 3", "days 2 and 5", "days 2, 4 & 6"
+ * - ranges: "days 2-4", "day 2 to day 4", "days 3 through 5"
+ * - ordinals: "the third day", "first day", "last day", "final day"
+ * - ISO dates matching a day's "date" field: "2025-05-03"
+ *
+ * An empty result means the request is trip-wide (or unrecognised) and the
+ * whole itinerary should be adapted.
+ */
+public final class AdaptationScope {
+
+    private static final Pattern DAY_LIST_PATTERN = Pattern.compile(
+            "\\bdays?\\s+(\\d+(?:\\s*(?:-|–|to|through|thru|,|and|&)\\s*(?:day\\s+)?\\d+)*)");
+    private static final Pattern RANGE_PATTERN = Pattern.compile("(\\d+)\\s*(?:-|–|to|through|thru)\\s*(?:day\\s+)?(\\d+)");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+    private static final Pattern ORDINAL_PATTERN = Pattern.compile(
+            "\\b(first|second|third|fourth|fifth|sixth|seventh|eighth|ninth|tenth|last|final)\\s+day\\b");
+    private static final Pattern ISO_DATE_PATTERN = Pattern.compile("\\b\\d{4}-\\d{2}-\\d{2}\\b");
+
+    private static final Map<String, Integer> ORDINALS = Map.of(
+            "first", 1, "second", 2, "third", 3, "fourth", 4, "fifth", 5,
+            "sixth", 6, "seventh", 7, "eighth", 8, "ninth", 9, "tenth", 10);
+
+    private AdaptationScope() {
+    }
+
+    /**
+     * Day numbers referenced by the adaptation context that exist in the itinerary
+     *
+     * @param context user's adaptation request
+     * @param days    the itinerary[] array of the stored document
+     * @return sorted day numbers; empty if the change is not scoped to specific days
+     */
+    public static SortedSet<Integer> affectedDays(String context, JsonNode days) {
+        SortedSet<Integer> referenced = new TreeSet<>();
+        if (context == null || days == null || !days.isArray() || days.isEmpty()) {
+            return referenced;
+        }
+        String text = context.toLowerCase(Locale.ROOT);
+        int lastDay = days.get(days.size() - 1).path("day").asInt(days.size());
+
+        Matcher listMatcher = DAY_LIST_PATTERN.matcher(text);
+        while (listMatcher.find()) {
+            String list = listMatcher.group(1);
+            Matcher rangeMatcher = RANGE_PATTERN.matcher(list);
+            while (rangeMatcher.find()) {
+                int from = Integer.parseInt(rangeMatcher.group(1));
+                int to = Integer.parseInt(rangeMatcher.group(2));
+                for (int day = Math.min(from, to); day <= Math.max(from, to) && day <= lastDay; day++) {
+                    referenced.add(day);
+                }
+            }
+            Matcher numberMatcher = NUMBER_PATTERN.matcher(list);
+            while (numberMatcher.find()) {
+                referenced.add(Integer.parseInt(numberMatcher.group()));
+            }
+        }
+
+        Matcher ordinalMatcher = ORDINAL_PATTERN.matcher(text);
+        while (ordinalMatcher.find()) {
+            String ordinal = ordinalMatcher.group(1);
+            referenced.add("last".equals(ordinal) || "final".equals(ordinal) ? lastDay : ORDINALS.get(ordinal));
+        }
+
+        Matcher dateMatcher = ISO_DATE_PATTERN.matcher(text);
+        while (dateMatcher.find()) {
+            for (JsonNode day : days) {
+                if (dateMatcher.group().equals(day.path("date").asText())) {
+                    referenced.add(day.path("day").asInt());
+                }
+            }
+        }
+
+        // Only keep days that are actually in the itinerary
+        SortedSet<Integer> affected = new TreeSet<>();
+        for (JsonNode day : days) {
+            int dayNumber = day.path("day").asInt(-1);
+            if (referenced.contains(dayNumber)) {
+                affected.add(dayNumber);
+            }
+        }
+        return affected;
+    }
+}
@@ -0,0 +1,135 @@
+package com.travelplanner.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD adaptive concurrency limiter
+ *
+ * Bounds the number of concurrent calls to a downstream service and adapts
+ * that bound to observed behaviour:
+ * - Additive increase: +1 after a fast successful call made while the limit was in use
+ * - Multiplicative decrease: limit * backoffRatio after an overload error or a slow call
+ *
+ * Callers that cannot get a permit wait up to a caller-supplied timeout.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double backoffRatio, Duration latencyThreshold) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Acquire a permit, waiting up to maxWait for one to become available
+     *
+     * @return true if a permit was acquired; the caller must then report exactly one outcome
+     */
+    public boolean acquire(Duration maxWait) throws InterruptedException {
+        long remainingNanos = maxWait.toNanos();
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = permitReleased.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Report a successful call; slow calls are treated as a congestion signal
+     */
+    public void onSuccess(long latencyNanos) {
+        if (latencyNanos > latencyThresholdNanos) {
+            onDropped();
+            return;
+        }
+        lock.lock();
+        try {
+            // Only grow when the current limit is actually being exercised
+            if (inFlight * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Report an overload signal (429, 5xx, timeout) and back off
+     */
+    public void onDropped() {
+        lock.lock();
+        try {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Report an outcome that says nothing about downstream capacity (e.g. a 400)
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            releaseLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLatencyThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latencyThresholdNanos);
+    }
+
+    private void releaseLocked() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        permitReleased.signalAll();
+    }
+}
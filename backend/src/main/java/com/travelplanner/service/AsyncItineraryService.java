@@ -2,45 +2,58 @@ package com.travelplanner.service;
 
 import com.travelplanner.model.Itinerary;
 import com.travelplanner.model.Job;
-import com.travelplanner.model.Trip;
-import com.travelplanner.repository.JobRepository;
 import com.travelplanner.repository.ItineraryRepository;
 import com.travelplanner.repository.TripRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Async Itinerary Service
  * 
- * Handles asynchronous AI itinerary generation using Spring's @Async.
- * This allows the main request thread to return immediately while
- * the AI generation happens in the background.
+ * Runs itinerary jobs in the background so the request thread can return
+ * immediately while the AI generation happens.
  * 
  * Workflow:
- * 1. Controller creates a Job record with PENDING status
+ * 1. Controller saves a Job record with PENDING status (this queues it)
  * 2. Controller returns jobId to client
- * 3. This service processes the job in background thread
- * 4. Updates job status to PROCESSING → COMPLETED/FAILED
- * 5. Client polls job status via JobController
+ * 3. A JobWorker on some node claims the job (PENDING → PROCESSING) and
+ *    hands it to process()
+ * 4. process() records progress on the job as it goes (phase, finished days;
+ *    see JobProgress), then the outcome: COMPLETED/FAILED, or re-queues the job
+ *    (PENDING with a later availableAt) if the attempt can be retried
+ * 5. Client subscribes to or polls job status via JobController;
+ *    transitions are pushed through JobStatusNotifier
+ * 
+ * Streaming generation is tied to the client's connection, so it is not
+ * queued: it runs at once on the generation bulkhead, sharing its slots with
+ * queued generations, or is rejected (see JobAdmission.admitStream).
  */
 @Service
 public class AsyncItineraryService {
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncItineraryService.class);
-    private static final int MAX_RETRIES = 3;
 
     @Autowired
     private ItineraryService itineraryService;
 
     @Autowired
-    private JobRepository jobRepository;
+    private JobQueue jobQueue;
+
+    @Autowired
+    private JobStatusNotifier jobStatusNotifier;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
 
     @Autowired
     private ItineraryRepository itineraryRepository;
@@ -48,136 +61,118 @@ public class AsyncItineraryService {
     @Autowired
     private TripRepository tripRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("generationExecutor")
+    private BulkheadExecutor generationExecutor;
+
     /**
-     * Generate itinerary asynchronously
+     * Run one attempt of a job claimed from the queue
+     * 
+     * A failed attempt is not retried here: if RetryPolicy allows another
+     * attempt the job is re-queued with a backoff delay and this worker moves on.
      * 
-     * @param jobId The job ID to track this operation
-     * @param tripId The trip ID to generate itinerary for
-     * @param userId The user ID for authorization
+     * @param job The claimed job; PROCESSING and leased by the calling worker
      */
-    @Async("taskExecutor")
-    // @Transactional removed to prevent DB connection exhaustion during long AI calls
-    public void generateItineraryAsync(String jobId, Long tripId, Long userId) {
-        logger.info("Starting async itinerary generation for job: {}, trip: {}, user: {}", jobId, tripId, userId);
-
-        Job job = jobRepository.findByJobId(jobId)
-                .orElseThrow(() -> new RuntimeException("Job not found: " + jobId));
-
+    // Not @Transactional: a DB connection must not be held during long AI calls
+    public void process(Job job) {
+        String jobId = job.getJobId();
+        int attempt = (job.getRetryCount() == null ? 0 : job.getRetryCount()) + 1;
+        logger.info("Processing job: {} ({}) attempt {}, trip: {}, user: {}",
+                jobId, job.getJobType(), attempt, job.getTripId(), job.getUserId());
+        retryPolicy.recordAttempt(job);
+
+        GenerationProgress progress = new JobProgress(job, jobQueue, jobStatusNotifier, meterRegistry);
         try {
-            // Update job status to PROCESSING
-            job.setStatus(Job.JobStatus.PROCESSING);
-            job.setStartedAt(LocalDateTime.now());
-            jobRepository.save(job);
-
-            logger.info("Job {} marked as PROCESSING", jobId);
-
-            // Generate itinerary with retry logic
-            Itinerary itinerary = generateWithRetry(tripId, userId, job);
-
-            // Update job with success
-            job.setStatus(Job.JobStatus.COMPLETED);
-            job.setCompletedAt(LocalDateTime.now());
-            job.setResult(itinerary.getContent());
-            jobRepository.save(job);
-
-            logger.info("Job {} completed successfully", jobId);
+            Itinerary itinerary = switch (job.getJobType()) {
+                case "ITINERARY_GENERATION" -> itineraryService.generateItinerary(job.getTripId(), job.getUserId(), progress);
+                case "ITINERARY_REGENERATION" -> itineraryService.regenerateItinerary(job.getTripId(), job.getUserId(), progress);
+                case "ITINERARY_ADAPTATION" -> itineraryService.adaptItinerary(job.getTripId(), job.getUserId(), job.getPayload(), progress);
+                default -> throw new IllegalArgumentException("Unknown job type: " + job.getJobType());
+            };
+
+            if (jobQueue.complete(job, itinerary)) {
+                jobStatusNotifier.publish(job);
+                logger.info("Job {} completed successfully on attempt {}", jobId, attempt);
+            } else {
+                logger.warn("Job {} finished after its lease was lost; result discarded", jobId);
+            }
 
         } catch (Exception e) {
-            logger.error("Job {} failed: {}", jobId, e.getMessage(), e);
-
-            // Update job with failure
-            job.setStatus(Job.JobStatus.FAILED);
-            job.setCompletedAt(LocalDateTime.now());
-            job.setErrorMessage(e.getMessage());
-            jobRepository.save(job);
+            if (Thread.currentThread().isInterrupted()) {
+                // Worker shutting down or lease lost: the job is re-queued, not failed
+                logger.warn("Job {} interrupted: {}", jobId, e.getMessage());
+                return;
+            }
+            Optional<Duration> retryDelay = retryPolicy.retryDelay(job, e);
+            if (retryDelay.isPresent()) {
+                logger.warn("Attempt {} of job {} failed, retrying in {}ms: {}",
+                        attempt, jobId, retryDelay.get().toMillis(), e.getMessage());
+                if (jobQueue.retry(job, retryDelay.get())) {
+                    jobStatusNotifier.publish(job);
+                }
+                return;
+            }
+            logger.error("Job {} failed on attempt {}: {}", jobId, attempt, e.getMessage(), e);
+            String errorMessage = attempt > 1
+                    ? "Failed after " + attempt + " attempts: " + e.getMessage()
+                    : e.getMessage();
+            if (jobQueue.fail(job, errorMessage)) {
+                jobStatusNotifier.publish(job);
+            }
         }
     }
 
     /**
-     * Generate itinerary with retry logic
+     * Stream itinerary generation to the client over Server-Sent Events
+     * 
+     * Each text fragment from Gemini is relayed as a "chunk" event. Once the
+     * stream ends and the itinerary is persisted, a "complete" event carries
+     * the assembled JSON; failures are reported as an "error" event.
+     * 
+     * Runs on the generation bulkhead; whenDone is run once the generation
+     * has finished, however it ended.
      * 
-     * Retries up to MAX_RETRIES times if Gemini API fails.
-     * This handles transient failures like network issues or API rate limits.
+     * @throws TaskRejectedException if the bulkhead has no free slot (whenDone is not run)
      */
-    private Itinerary generateWithRetry(Long tripId, Long userId, Job job) {
-        int attempt = 0;
-        Exception lastException = null;
-
-        while (attempt < MAX_RETRIES) {
-            attempt++;
+    public void streamItineraryAsync(SseEmitter emitter, Long tripId, Long userId, Runnable whenDone) {
+        generationExecutor.execute(() -> {
             try {
-                logger.info("Attempt {}/{} for job {}", attempt, MAX_RETRIES, job.getJobId());
-                
-                Itinerary itinerary = itineraryService.generateItinerary(tripId, userId);
-                
-                logger.info("Itinerary generation succeeded on attempt {} for job {}", attempt, job.getJobId());
-                return itinerary;
-
-            } catch (Exception e) {
-                lastException = e;
-                logger.warn("Attempt {} failed for job {}: {}", attempt, job.getJobId(), e.getMessage());
-                
-                if (attempt < MAX_RETRIES) {
-                    // Exponential backoff: 2^attempt seconds
-                    try {
-                        long backoffTime = (long) Math.pow(2, attempt) * 1000;
-                        logger.info("Waiting {}ms before retry for job {}", backoffTime, job.getJobId());
-                        Thread.sleep(backoffTime);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("Thread interrupted during backoff", ie);
-                    }
-                }
+                streamItinerary(emitter, tripId, userId);
+            } finally {
+                whenDone.run();
             }
-        }
-
-        job.setRetryCount(attempt);
-        // Capture stack trace from lastException for diagnosis
-        String errorDetail = "Unknown";
-        if (lastException != null) {
-            java.io.StringWriter sw = new java.io.StringWriter();
-            java.io.PrintWriter pw = new java.io.PrintWriter(sw);
-            lastException.printStackTrace(pw);
-            pw.flush();
-            String fullTrace = sw.toString();
-            // First 2000 chars of stack trace
-            errorDetail = lastException.getClass().getName() + ": " + lastException.getMessage() + " | STACK: " + fullTrace.substring(0, Math.min(fullTrace.length(), 2000));
-        }
-        throw new RuntimeException("Failed to generate itinerary after " + MAX_RETRIES + " attempts. Full error: " + errorDetail, lastException);
+        });
     }
 
-    /**
-     * Adapt itinerary asynchronously
-     */
-    @Async("taskExecutor")
-    // @Transactional removed to prevent DB connection exhaustion during long AI calls
-    public void adaptItineraryAsync(String jobId, Long tripId, Long userId, String context) {
-        logger.info("Starting async itinerary adaptation for job: {}, trip: {}, user: {}", jobId, tripId, userId);
-
-        Job job = jobRepository.findByJobId(jobId)
-                .orElseThrow(() -> new RuntimeException("Job not found: " + jobId));
+    private void streamItinerary(SseEmitter emitter, Long tripId, Long userId) {
+        logger.info("Starting streaming itinerary generation for trip: {}, user: {}", tripId, userId);
 
         try {
-            job.setStatus(Job.JobStatus.PROCESSING);
-            job.setStartedAt(LocalDateTime.now());
-            jobRepository.save(job);
-
-            Itinerary itinerary = itineraryService.adaptItinerary(tripId, userId, context);
+            Itinerary itinerary = itineraryService.generateItineraryStreaming(tripId, userId, chunk -> {
+                try {
+                    emitter.send(SseEmitter.event().name("chunk").data(chunk));
+                } catch (IOException e) {
+                    // Client went away; keep consuming so the result is still persisted
+                    logger.debug("Dropping stream chunk for trip {}: {}", tripId, e.getMessage());
+                }
+            });
 
-            job.setStatus(Job.JobStatus.COMPLETED);
-            job.setCompletedAt(LocalDateTime.now());
-            job.setResult(itinerary.getContent());
-            jobRepository.save(job);
+            emitter.send(SseEmitter.event().name("complete").data(itinerary.getContent()));
+            emitter.complete();
 
-            logger.info("Job {} adaptation completed successfully", jobId);
+            logger.info("Streaming itinerary generation completed for trip: {}", tripId);
 
         } catch (Exception e) {
-            logger.error("Job {} adaptation failed: {}", jobId, e.getMessage(), e);
-
-            job.setStatus(Job.JobStatus.FAILED);
-            job.setCompletedAt(LocalDateTime.now());
-            job.setErrorMessage(e.getMessage());
-            jobRepository.save(job);
+            logger.error("Streaming itinerary generation failed for trip {}: {}", tripId, e.getMessage(), e);
+            try {
+                emitter.send(SseEmitter.event().name("error").data(e.getMessage() != null ? e.getMessage() : "Generation failed"));
+                emitter.complete();
+            } catch (Exception sendFailure) {
+                emitter.completeWithError(e);
+            }
         }
     }
 }
@@ -0,0 +1,251 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulkhead Executor
+ *
+ * Runs one workload with its own concurrency limit, queue bound and overflow
+ * behavior, so that workload saturating cannot starve the others. Two modes:
+ * - platform: a fixed pool of concurrency threads in front of a queue of
+ *   queueCapacity tasks
+ * - virtual: every task gets its own virtual thread and a semaphore of
+ *   concurrency permits limits how many run at once; tasks waiting for a
+ *   permit count as queued. Threads cost next to nothing here, so the limit
+ *   is set by what the downstream (Gemini, the DB pool) can take rather than
+ *   by thread count.
+ *
+ * Overflow (both modes): REJECT throws TaskRejectedException, DROP logs and
+ * discards the task, CALLER_RUNS runs it on the submitting thread.
+ *
+ * Metrics, tagged bulkhead=name:
+ * - executor.bulkhead.queued: tasks waiting to run
+ * - executor.bulkhead.active: tasks running
+ * - executor.bulkhead.wait: time from submission to start
+ * - executor.bulkhead.rejected: tasks that overflowed
+ */
+public class BulkheadExecutor implements TaskExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadExecutor.class);
+
+    public enum Overflow {
+        REJECT,
+        DROP,
+        CALLER_RUNS
+    }
+
+    private final String name;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final Overflow overflow;
+    private final boolean virtual;
+
+    // Platform mode
+    private final ThreadPoolExecutor pool;
+
+    // Virtual mode
+    private final ThreadFactory virtualThreadFactory;
+    private final Semaphore permits;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean shutdown;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    private BulkheadExecutor(String name, int concurrency, int queueCapacity, Overflow overflow,
+                             boolean virtual, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.overflow = overflow;
+        this.virtual = virtual;
+
+        if (virtual) {
+            this.pool = null;
+            this.virtualThreadFactory = VirtualThreads.factory(name + "-vt-");
+            this.permits = new Semaphore(concurrency);
+        } else {
+            AtomicInteger threadCounter = new AtomicInteger();
+            BlockingQueue<Runnable> queue = queueCapacity > 0 ? new LinkedBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+            this.pool = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, queue,
+                    runnable -> new Thread(runnable, name + "-" + threadCounter.incrementAndGet()),
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.pool.allowCoreThreadTimeOut(true);
+            this.virtualThreadFactory = null;
+            this.permits = null;
+        }
+
+        this.waitTimer = Timer.builder("executor.bulkhead.wait")
+                .description("Time tasks wait to start")
+                .tag("bulkhead", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("executor.bulkhead.rejected")
+                .description("Tasks that overflowed the bulkhead")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("executor.bulkhead.queued", this, BulkheadExecutor::getQueuedCount)
+                .description("Tasks waiting to run")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+        Gauge.builder("executor.bulkhead.active", this, BulkheadExecutor::getActiveCount)
+                .description("Tasks running")
+                .tag("bulkhead", name)
+                .register(meterRegistry);
+
+        logger.info("Bulkhead {} initialized on {} threads with concurrency={}, queueCapacity={}, overflow={}",
+                name, virtual ? "virtual" : "platform", concurrency, queueCapacity, overflow);
+    }
+
+    /**
+     * Fixed pool of poolSize platform threads
+     */
+    public static BulkheadExecutor platform(String name, int poolSize, int queueCapacity, Overflow overflow,
+                                            MeterRegistry meterRegistry) {
+        return new BulkheadExecutor(name, poolSize, queueCapacity, overflow, false, meterRegistry);
+    }
+
+    /**
+     * A virtual thread per task, at most concurrency running at once
+     *
+     * @throws IllegalStateException if the runtime has no virtual threads
+     */
+    public static BulkheadExecutor virtual(String name, int concurrency, int queueCapacity, Overflow overflow,
+                                           MeterRegistry meterRegistry) {
+        return new BulkheadExecutor(name, concurrency, queueCapacity, overflow, true, meterRegistry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new TaskRejectedException("Bulkhead " + name + " is shut down");
+        }
+        long submittedAt = System.nanoTime();
+        if (virtual) {
+            if (admitted.incrementAndGet() > concurrency + queueCapacity) {
+                admitted.decrementAndGet();
+                overflow(task);
+                return;
+            }
+            Thread thread = virtualThreadFactory.newThread(() -> runVirtual(task, submittedAt));
+            threads.add(thread);
+            thread.start();
+        } else {
+            try {
+                pool.execute(() -> {
+                    waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                if (pool.isShutdown()) {
+                    throw new TaskRejectedException("Bulkhead " + name + " is shut down", e);
+                }
+                overflow(task);
+            }
+        }
+    }
+
+    private void runVirtual(Runnable task, long submittedAt) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            admitted.decrementAndGet();
+            threads.remove(Thread.currentThread());
+            return;
+        }
+        waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+        running.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            running.decrementAndGet();
+            permits.release();
+            admitted.decrementAndGet();
+            threads.remove(Thread.currentThread());
+        }
+    }
+
+    private void overflow(Runnable task) {
+        rejected.increment();
+        switch (overflow) {
+            case CALLER_RUNS -> task.run();
+            case DROP -> logger.warn("Bulkhead {} full ({} queued); dropping task", name, getQueuedCount());
+            default -> throw new TaskRejectedException("Bulkhead " + name + " is full");
+        }
+    }
+
+    /**
+     * Stop accepting tasks; running and queued tasks still complete.
+     * Also called by Spring when the context closes.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Wait for tasks to finish after shutdown()
+     *
+     * @return false if some were still running when the timeout elapsed
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (pool != null) {
+            return pool.awaitTermination(timeout, unit);
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            thread.join(remainingMillis);
+        }
+        return threads.isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tasks that may run at once: the pool size, or the semaphore permits
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public int getActiveCount() {
+        return virtual ? running.get() : pool.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return virtual ? Math.max(0, admitted.get() - running.get()) : pool.getQueue().size();
+    }
+}
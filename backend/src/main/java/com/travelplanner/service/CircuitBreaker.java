@@ -0,0 +1,200 @@
+package com.travelplanner.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based circuit breaker
+ *
+ * State Flow:
+ * CLOSED → OPEN when the failure rate over the last windowSize calls reaches the threshold
+ * OPEN → HALF_OPEN once the open period (or a longer Retry-After on the failure
+ *        that opened it) has elapsed
+ * HALF_OPEN → CLOSED when a probe call succeeds, → OPEN when it fails
+ *
+ * While OPEN every call is rejected immediately so callers fail fast instead
+ * of piling more load onto a struggling dependency.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenProbes;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Ring buffer of recent outcomes (true = failure)
+    private final boolean[] outcomes;
+    private int outcomeIndex;
+    private int recordedCalls;
+    private int recordedFailures;
+
+    private State state = State.CLOSED;
+    private Instant openUntil = Instant.MIN;
+    private int probesInFlight;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration openDuration, int halfOpenProbes, Clock clock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = halfOpenProbes;
+        this.clock = clock;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Ask for permission to make a call
+     *
+     * @return false if the breaker is open (or half-open with all probe slots taken)
+     */
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (clock.instant().isBefore(openUntil)) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probesInFlight = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesInFlight >= halfOpenProbes) {
+                    return false;
+                }
+                probesInFlight++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                close();
+            } else {
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a failure. A server-supplied Retry-After counts like any other
+     * failure (one throttled request must not shed everyone's traffic); it only
+     * lengthens the open period if this failure is the one that opens the breaker.
+     */
+    public void onFailure(Duration retryAfter) {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                open(retryAfter);
+                return;
+            }
+            record(true);
+            if (recordedCalls >= minimumCalls
+                    && (double) recordedFailures / recordedCalls >= failureRateThreshold) {
+                open(retryAfter);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a permit without recording an outcome (call was never made)
+     */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesInFlight > 0) {
+                probesInFlight--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && !clock.instant().isBefore(openUntil)) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time until the breaker will admit probe calls again (zero unless open)
+     */
+    public Duration getRemainingOpenDuration() {
+        lock.lock();
+        try {
+            if (state != State.OPEN) {
+                return Duration.ZERO;
+            }
+            Duration remaining = Duration.between(clock.instant(), openUntil);
+            return remaining.isNegative() ? Duration.ZERO : remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return recordedCalls == 0 ? 0.0 : (double) recordedFailures / recordedCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recordedCalls == windowSize) {
+            if (outcomes[outcomeIndex]) {
+                recordedFailures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        outcomes[outcomeIndex] = failure;
+        if (failure) {
+            recordedFailures++;
+        }
+        outcomeIndex = (outcomeIndex + 1) % windowSize;
+    }
+
+    private void open(Duration retryAfter) {
+        Duration duration = retryAfter != null && retryAfter.compareTo(openDuration) > 0 ? retryAfter : openDuration;
+        state = State.OPEN;
+        openUntil = clock.instant().plus(duration);
+        probesInFlight = 0;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probesInFlight = 0;
+        recordedCalls = 0;
+        recordedFailures = 0;
+        outcomeIndex = 0;
+    }
+}
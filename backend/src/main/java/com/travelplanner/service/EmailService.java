@@ -22,7 +22,7 @@ public class EmailService {
     @Value("${spring.mail.enabled:false}")
     private boolean mailEnabled;
 
-    @Async
+    @Async("emailExecutor")
     public void sendVerificationEmail(String to, String token) {
         if (!mailEnabled) {
             logger.info("Email sending is disabled. Verification token for {}: {}", to, token);
@@ -45,7 +45,7 @@ public class EmailService {
         }
     }
 
-    @Async
+    @Async("emailExecutor")
     public void sendPasswordResetEmail(String to, String token) {
         if (!mailEnabled) {
             logger.info("Email sending is disabled. Password reset token for {}: {}", to, token);
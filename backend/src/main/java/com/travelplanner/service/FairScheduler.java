@@ -0,0 +1,148 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.ItineraryRepository;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fair Scheduler
+ *
+ * Orders the job queue by weighted fair queuing across users, so one user's
+ * backlog (say 80 adaptations from a script) delays everyone else by about
+ * one job instead of by the whole backlog.
+ *
+ * Each new job gets a tag, its virtual finish time, and workers claim the
+ * lowest tags first. Wall-clock time serves as virtual time:
+ *
+ *   tag = max(now, latest tag of the user's queued jobs in the same bulkhead)
+ *         + estimated run time / weight
+ *
+ * A user with nothing queued starts at now; a user with a backlog queues
+ * behind their own jobs only. Tags never move, so every job is eventually
+ * claimed. Weight comes from the job's priority:
+ * - FIRST_ITINERARY: the user's first generation, while they have no itinerary yet
+ * - INTERACTIVE: submitted from the app (ItineraryController)
+ * - BULK: submitted through the job API (JobController)
+ *
+ * Metrics: jobs.queue.user.depth (distribution of queued jobs per user,
+ * sampled every metrics-interval-ms), jobs.queue.users, jobs.queue.user.depth.max.
+ * Queue wait percentiles are recorded by JobWorker (jobs.queue.wait, tagged priority).
+ * Users are not a metric tag, since that would create a series per user.
+ */
+@Service
+public class FairScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FairScheduler.class);
+    private static final List<String> GENERATION_JOB_TYPES = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private ItineraryRepository itineraryRepository;
+
+    @Autowired
+    private JobWorker jobWorker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobs.fair.weight.first-itinerary:4}")
+    private double firstItineraryWeight;
+
+    @Value("${jobs.fair.weight.interactive:2}")
+    private double interactiveWeight;
+
+    @Value("${jobs.fair.weight.bulk:1}")
+    private double bulkWeight;
+
+    @Value("${jobs.admission.default-run-seconds:30}")
+    private long defaultRunSeconds;
+
+    private final AtomicLong waitingUsers = new AtomicLong();
+    private final AtomicLong maxUserDepth = new AtomicLong();
+    private DistributionSummary userDepth;
+
+    @PostConstruct
+    void registerMetrics() {
+        userDepth = DistributionSummary.builder("jobs.queue.user.depth")
+                .description("Queued jobs per user with at least one job queued")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("jobs.queue.users", waitingUsers, AtomicLong::get)
+                .description("Users with at least one job queued")
+                .register(meterRegistry);
+        Gauge.builder("jobs.queue.user.depth.max", maxUserDepth, AtomicLong::get)
+                .description("Queued jobs of the user with the deepest backlog")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Set the priority and fair-queuing tag of a job about to be queued
+     *
+     * @param interactive true if a user is waiting on the job in the app
+     */
+    public void schedule(Job job, boolean interactive) {
+        Job.Priority priority = priority(job, interactive);
+        List<String> bulkheadJobTypes = jobWorker.bulkheadJobTypes(job.getJobType());
+        long now = System.currentTimeMillis();
+        long start = jobRepository.findMaxFairTag(job.getUserId(), bulkheadJobTypes, Job.JobStatus.PENDING)
+                .map(latest -> Math.max(now, latest))
+                .orElse(now);
+        long cost = jobWorker.averageRunTime(job.getJobType())
+                .orElse(Duration.ofSeconds(defaultRunSeconds))
+                .toMillis();
+
+        job.setPriority(priority);
+        job.setFairTag(start + Math.max(1, Math.round(cost / weight(priority))));
+        logger.debug("Job {} for user {} scheduled as {} with tag +{} ms",
+                job.getJobId(), job.getUserId(), priority, job.getFairTag() - now);
+    }
+
+    double weight(Job.Priority priority) {
+        return switch (priority) {
+            case FIRST_ITINERARY -> firstItineraryWeight;
+            case INTERACTIVE -> interactiveWeight;
+            case BULK -> bulkWeight;
+        };
+    }
+
+    private Job.Priority priority(Job job, boolean interactive) {
+        if (GENERATION_JOB_TYPES.contains(job.getJobType()) && !itineraryRepository.existsByUserId(job.getUserId())) {
+            return Job.Priority.FIRST_ITINERARY;
+        }
+        return interactive ? Job.Priority.INTERACTIVE : Job.Priority.BULK;
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.fair.metrics-interval-ms:15000}")
+    public void sampleQueueDepths() {
+        List<JobRepository.UserQueueDepth> depths;
+        try {
+            depths = jobRepository.countByStatusGroupByUser(Job.JobStatus.PENDING);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to sample per-user queue depths: {}", e.getMessage());
+            return;
+        }
+        long max = 0;
+        for (JobRepository.UserQueueDepth depth : depths) {
+            userDepth.record(depth.getDepth());
+            max = Math.max(max, depth.getDepth());
+        }
+        waitingUsers.set(depths.size());
+        maxUserDepth.set(max);
+    }
+}
@@ -0,0 +1,293 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.travelplanner.dto.prompt.ItineraryPrompt;
+import com.travelplanner.exception.GeminiUnavailableException;
+import com.travelplanner.exception.UnusableModelOutputException;
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-Out Itinerary Generator
+ *
+ * Generates long trips as several smaller Gemini calls instead of one
+ * monolithic call, which is slow and prone to truncated output.
+ *
+ * Workflow:
+ * 1. One short outline call produces trip_summary, the budget breakdown,
+ *    essential_travel_tips and a one-line theme per day
+ * 2. The trip is split into day ranges of chunk-days each; every range is
+ *    generated concurrently with the outline embedded for coherence
+ * 3. A failed or incomplete range is retried on its own, leaving the
+ *    others untouched. Range retries go through RetryPolicy: jittered
+ *    backoff, and each one spends from the same retry budget as job retries,
+ *    so a brownout does not multiply retries by the number of ranges. The
+ *    backoff is a scheduled resubmission, not a sleep: no fan-out thread is
+ *    held while a range waits to retry
+ * 4. Ranges are assembled into the usual trip_summary / itinerary[] /
+ *    essential_travel_tips document
+ *
+ * Each range's days are reported to the caller's GenerationProgress as soon
+ * as that range (and every range before it) is done.
+ *
+ * If a range fails for good, or the calling job is interrupted (cancelled),
+ * the ranges still running are interrupted too.
+ */
+@Service
+public class FanOutItineraryGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutItineraryGenerator.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private GeminiService geminiService;
+
+    @Autowired
+    private PromptBuilderService promptBuilderService;
+
+    @Autowired
+    private RetryPolicy retryPolicy;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private Executor fanOutExecutor;
+
+    @Value("${itinerary.fanout.enabled:true}")
+    private boolean enabled;
+
+    // Trips at least this long are fanned out
+    @Value("${itinerary.fanout.min-days:8}")
+    private int minDays;
+
+    @Value("${itinerary.fanout.chunk-days:4}")
+    private int chunkDays;
+
+    // Retries per range, on top of the first attempt
+    @Value("${itinerary.fanout.range-retries:2}")
+    private int rangeRetries;
+
+    private Counter rangeRetryCounter;
+
+    @PostConstruct
+    void registerMetrics() {
+        rangeRetryCounter = Counter.builder("itinerary.fanout.range.retries")
+                .description("Day-range generations retried after a failed or incomplete response")
+                .register(meterRegistry);
+    }
+
+    public boolean shouldFanOut(ItineraryPrompt prompt) {
+        return enabled && tripDays(prompt) >= minDays;
+    }
+
+    /**
+     * Generate the full itinerary document for a long trip
+     *
+     * @return the assembled itinerary JSON
+     */
+    public String generate(ItineraryPrompt prompt) {
+        return generate(prompt, GenerationProgress.NONE);
+    }
+
+    public String generate(ItineraryPrompt prompt, GenerationProgress progress) {
+        int days = tripDays(prompt);
+        long start = System.nanoTime();
+        progress.phase(Job.Phase.PROMPT_BUILT);
+
+        JsonNode outline = ItinerarySchemas.OUTLINE.parse(
+                geminiService.generateJson(promptBuilderService.buildTripOutlinePrompt(prompt), ItinerarySchemas.OUTLINE));
+        String outlineJson = objectMapper.createObjectNode()
+                .put("trip_summary", outline.path("trip_summary").asText())
+                .set("day_themes", outline.path("day_themes"))
+                .toString();
+
+        List<RangeCall> ranges = new ArrayList<>();
+        Map<Integer, JsonNode> daysByNumber = new TreeMap<>();
+        try {
+            // Submitted inside the try, so ranges already running are cancelled if a later submit fails
+            for (int fromDay = 1; fromDay <= days; fromDay += chunkDays) {
+                int from = fromDay;
+                int to = Math.min(days, fromDay + chunkDays - 1);
+                RangeCall range = new RangeCall(promptBuilderService.buildDayRangePrompt(prompt, outlineJson, from, to),
+                        from, to);
+                ranges.add(range);
+                range.submit(0);
+            }
+            progress.phase(Job.Phase.MODEL_STREAMING);
+
+            for (RangeCall range : ranges) {
+                for (JsonNode day : range.result.get()) {
+                    int dayNumber = day.path("day").asInt();
+                    ((ObjectNode) day).put("date", prompt.getStartDate().plusDays(dayNumber - 1L).toString());
+                    daysByNumber.put(dayNumber, day);
+                    progress.dayCompleted(day);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            // The job was cancelled or lost its lease
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Fan-out generation interrupted", e);
+        } finally {
+            // Interrupting ranges still running aborts their Gemini calls
+            ranges.forEach(RangeCall::cancel);
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("trip_summary", outline.path("trip_summary").asText());
+        root.set("overall_budget_breakdown", outline.path("overall_budget_breakdown"));
+        ArrayNode itinerary = root.putArray("itinerary");
+        daysByNumber.values().forEach(itinerary::add);
+        root.set("essential_travel_tips", outline.path("essential_travel_tips"));
+
+        logger.info("Fan-out generated {} days in {} ranges in {} ms",
+                days, ranges.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return root.toString();
+    }
+
+    /**
+     * One day range: its eventual result, and the attempt running or waiting to run
+     */
+    private final class RangeCall {
+
+        private final String rangePrompt;
+        private final int fromDay;
+        private final int toDay;
+        private final CompletableFuture<List<JsonNode>> result = new CompletableFuture<>();
+        private volatile FutureTask<Void> attempt;
+
+        private RangeCall(String rangePrompt, int fromDay, int toDay) {
+            this.rangePrompt = rangePrompt;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        /**
+         * Run the first attempt on the fan-out executor; a rejection propagates to the caller
+         */
+        void submit(int retries) {
+            FutureTask<Void> task = prepare(retries);
+            if (task != null) {
+                fanOutExecutor.execute(task);
+            }
+        }
+
+        /**
+         * Resubmit after the delay; nothing holds a thread in the meantime
+         */
+        private void retryAfter(int retries, Duration delay) {
+            FutureTask<Void> task = prepare(retries);
+            if (task == null) {
+                return;
+            }
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                try {
+                    fanOutExecutor.execute(task);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        private FutureTask<Void> prepare(int retries) {
+            FutureTask<Void> task = new FutureTask<>(() -> run(retries), null);
+            attempt = task;
+            // Cancelled while the previous attempt was finishing
+            if (result.isDone()) {
+                task.cancel(false);
+                return null;
+            }
+            return task;
+        }
+
+        void cancel() {
+            result.cancel(false);
+            FutureTask<Void> current = attempt;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+
+        /**
+         * One attempt; on a retryable failure, schedules the next one
+         */
+        private void run(int retries) {
+            RuntimeException failure;
+            try {
+                Map<Integer, JsonNode> returned = new TreeMap<>();
+                String aiResponse = geminiService.generateJson(rangePrompt, ItinerarySchemas.DAYS);
+                for (JsonNode day : ItinerarySchemas.DAYS.parse(aiResponse).path("itinerary")) {
+                    int dayNumber = day.path("day").asInt(-1);
+                    if (dayNumber >= fromDay && dayNumber <= toDay && day.isObject()) {
+                        returned.put(dayNumber, day);
+                    }
+                }
+                if (returned.size() == toDay - fromDay + 1) {
+                    result.complete(new ArrayList<>(returned.values()));
+                    return;
+                }
+                failure = new RuntimeException("Incomplete response for days " + fromDay + "-" + toDay
+                        + ": got days " + returned.keySet());
+            } catch (GeminiUnavailableException | UnusableModelOutputException e) {
+                // Retrying in place cannot help: the circuit is open, or the model's output is unusable
+                result.completeExceptionally(e);
+                return;
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                failure = e;
+            } catch (Error e) {
+                result.completeExceptionally(e);
+                throw e;
+            }
+
+            Optional<Duration> delay = retryPolicy.retryDelay(retries, rangeRetries, failure);
+            if (delay.isEmpty()) {
+                result.completeExceptionally(retryPolicy.isRetryable(failure) ? new RuntimeException(
+                        "Failed to generate days " + fromDay + "-" + toDay + " after " + (retries + 1)
+                                + " attempts: " + failure.getMessage(), failure) : failure);
+                return;
+            }
+            rangeRetryCounter.increment();
+            logger.warn("Days {}-{} attempt {} failed: {}. Retrying this range in {} ms",
+                    fromDay, toDay, retries + 1, failure.getMessage(), delay.get().toMillis());
+            retryAfter(retries + 1, delay.get());
+        }
+    }
+
+    private int tripDays(ItineraryPrompt prompt) {
+        if (prompt.getStartDate() == null || prompt.getEndDate() == null) {
+            return 0;
+        }
+        return (int) ChronoUnit.DAYS.between(prompt.getStartDate(), prompt.getEndDate()) + 1;
+    }
+}
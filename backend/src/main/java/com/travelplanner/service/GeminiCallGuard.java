@@ -0,0 +1,171 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.GeminiApiException;
+import com.travelplanner.exception.GeminiUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Gemini Call Guard
+ *
+ * Wraps every Gemini API call in a circuit breaker and an AIMD adaptive
+ * concurrency limit so a Gemini brownout turns into fast, cheap failures
+ * instead of a retry storm that ties up every worker thread.
+ *
+ * Outcome classification:
+ * - 2xx: success (grows the limit, closes a half-open breaker)
+ * - 429 / 5xx / I/O error / timeout: overload (shrinks the limit, counts toward opening)
+ * - other 4xx: neutral for the limiter, healthy for the breaker
+ * - a success slower than latency-threshold-ms: overload for the limiter; the
+ *   threshold sits well below the request timeout so slow-but-successful calls
+ *   shrink the limit before they start timing out
+ *
+ * Streamed calls are timed to their first fragment, since the length of a
+ * stream follows the length of the answer rather than Gemini's load.
+ *
+ * State and the current limit are exposed via the "gemini" actuator endpoint
+ * and as gemini.limiter.* / gemini.breaker.* gauges.
+ */
+@Component
+public class GeminiCallGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiCallGuard.class);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker breaker;
+    private final Duration maxWait;
+    private final Counter rejectedCounter;
+
+    public GeminiCallGuard(@Value("${gemini.limiter.initial-limit:10}") int initialLimit,
+                           @Value("${gemini.limiter.min-limit:1}") int minLimit,
+                           @Value("${gemini.limiter.max-limit:50}") int maxLimit,
+                           @Value("${gemini.limiter.backoff-ratio:0.9}") double backoffRatio,
+                           @Value("${gemini.limiter.latency-threshold-ms:20000}") long latencyThresholdMs,
+                           @Value("${gemini.limiter.max-wait-ms:30000}") long maxWaitMs,
+                           @Value("${gemini.breaker.window-size:20}") int windowSize,
+                           @Value("${gemini.breaker.minimum-calls:10}") int minimumCalls,
+                           @Value("${gemini.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                           @Value("${gemini.breaker.open-duration-seconds:30}") long openDurationSeconds,
+                           @Value("${gemini.breaker.half-open-probes:2}") int halfOpenProbes,
+                           MeterRegistry meterRegistry) {
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+                Duration.ofMillis(latencyThresholdMs));
+        this.breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                Duration.ofSeconds(openDurationSeconds), halfOpenProbes, Clock.systemUTC());
+        this.maxWait = Duration.ofMillis(maxWaitMs);
+
+        Gauge.builder("gemini.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for Gemini calls")
+                .register(meterRegistry);
+        Gauge.builder("gemini.limiter.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Gemini calls holding a limiter permit")
+                .register(meterRegistry);
+        Gauge.builder("gemini.breaker.state", breaker, b -> b.getState().ordinal())
+                .description("Gemini circuit breaker state (0=closed, 1=open, 2=half-open)")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("gemini.calls.rejected")
+                .description("Gemini calls rejected by the circuit breaker or concurrency limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a Gemini call under the circuit breaker and concurrency limit
+     *
+     * @throws GeminiUnavailableException if the call was not admitted
+     */
+    public <T> T call(String operation, Supplier<T> call) {
+        return guard(operation, firstFragment -> call.get());
+    }
+
+    /**
+     * Run a streamed Gemini call under the circuit breaker and concurrency limit.
+     * The call runs the given callback when its first fragment arrives; latency
+     * is measured up to then (or to the end, if no fragment ever arrives).
+     *
+     * @throws GeminiUnavailableException if the call was not admitted
+     */
+    public <T> T callStreaming(String operation, Function<Runnable, T> call) {
+        return guard(operation, call);
+    }
+
+    private <T> T guard(String operation, Function<Runnable, T> call) {
+        if (!breaker.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new GeminiUnavailableException("AI service is temporarily unavailable (circuit open).",
+                    breaker.getRemainingOpenDuration());
+        }
+
+        boolean admitted;
+        try {
+            admitted = limiter.acquire(maxWait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.onIgnored();
+            throw new RuntimeException("Interrupted while waiting for Gemini capacity", e);
+        }
+        if (!admitted) {
+            breaker.onIgnored();
+            rejectedCounter.increment();
+            logger.warn("Gemini {} call rejected: concurrency limit {} reached", operation, limiter.getLimit());
+            throw new GeminiUnavailableException("AI service is at capacity. Please retry shortly.", maxWait);
+        }
+
+        long start = System.nanoTime();
+        AtomicLong firstFragment = new AtomicLong();
+        try {
+            T result = call.apply(() -> firstFragment.compareAndSet(0, System.nanoTime()));
+            long end = firstFragment.get() != 0 ? firstFragment.get() : System.nanoTime();
+            limiter.onSuccess(end - start);
+            breaker.onSuccess();
+            return result;
+        } catch (GeminiApiException e) {
+            if (e.isRetryable()) {
+                limiter.onDropped();
+                breaker.onFailure(e.getRetryAfter());
+                logger.warn("Gemini {} overload signal ({}); limit now {}, breaker {}",
+                        operation, e.getStatusCode(), limiter.getLimit(), breaker.getState());
+            } else {
+                limiter.onIgnored();
+                breaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled by us (e.g. a losing hedge), not a signal about Gemini's health
+                limiter.onIgnored();
+                breaker.onIgnored();
+            } else {
+                limiter.onDropped();
+                breaker.onFailure(null);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Snapshot of limiter and breaker state for the actuator endpoint
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("breakerState", breaker.getState().name());
+        snapshot.put("breakerFailureRate", breaker.getFailureRate());
+        snapshot.put("breakerRetryAfterSeconds", breaker.getRemainingOpenDuration().toSeconds());
+        snapshot.put("concurrencyLimit", limiter.getLimit());
+        snapshot.put("inFlight", limiter.getInFlight());
+        snapshot.put("latencyThresholdMs", limiter.getLatencyThresholdMillis());
+        return snapshot;
+    }
+}
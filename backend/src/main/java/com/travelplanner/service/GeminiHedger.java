@@ -0,0 +1,324 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Gemini Hedger
+ *
+ * Cuts tail latency by hedging slow calls: if a call has not returned after
+ * the configured percentile of recent latencies, an identical second call is
+ * started. Whichever finishes first wins and the other is cancelled
+ * (interrupting its thread aborts the in-flight HTTP exchange).
+ *
+ * Hedge budget: every call earns budget-ratio tokens (capped at max-burst) and
+ * each hedge spends one, so hedges stay below that fraction of traffic even when
+ * Gemini is uniformly slow. No hedging happens until min-samples latencies are known.
+ *
+ * Streams are hedged only while no fragment has arrived: the first attempt
+ * to relay a fragment owns the stream and the other stops, so callers never
+ * see text from two attempts.
+ *
+ * Attempts run on their own threads (virtual threads in the virtual execution
+ * mode), since the caller only waits for whichever finishes first.
+ *
+ * Metrics: gemini.hedge.calls, gemini.hedge.issued, gemini.hedge.wins,
+ * gemini.hedge.budget_exhausted, gemini.hedge.delay (ms).
+ */
+@Component
+public class GeminiHedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiHedger.class);
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMs;
+    private final int minSamples;
+    private final double budgetRatio;
+    private final double maxBurst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Ring buffer of recent successful attempt latencies (ms)
+    private final long[] latencies;
+    private int latencyIndex;
+    private int latencyCount;
+    private double budgetTokens;
+
+    private final Executor executor;
+    // Platform mode only; virtual threads need no pool
+    private final ExecutorService pool;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final Counter callsCounter;
+    private final Counter hedgesCounter;
+    private final Counter winsCounter;
+    private final Counter budgetExhaustedCounter;
+
+    public GeminiHedger(@Value("${gemini.hedge.enabled:false}") boolean enabled,
+                        @Value("${gemini.hedge.percentile:0.95}") double percentile,
+                        @Value("${gemini.hedge.min-delay-ms:5000}") long minDelayMs,
+                        @Value("${gemini.hedge.window-size:200}") int windowSize,
+                        @Value("${gemini.hedge.min-samples:20}") int minSamples,
+                        @Value("${gemini.hedge.budget-ratio:0.05}") double budgetRatio,
+                        @Value("${gemini.hedge.max-burst:5}") double maxBurst,
+                        @Value("${execution.virtual-threads.enabled:false}") boolean virtualThreads,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMs = minDelayMs;
+        this.minSamples = minSamples;
+        this.budgetRatio = budgetRatio;
+        this.maxBurst = maxBurst;
+        this.latencies = new long[windowSize];
+        if (virtualThreads) {
+            this.pool = null;
+            this.executor = VirtualThreads.perTaskExecutor("gemini-hedge-vt-");
+        } else {
+            this.pool = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "gemini-hedge-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor = pool;
+        }
+
+        this.callsCounter = Counter.builder("gemini.hedge.calls")
+                .description("Gemini calls eligible for hedging")
+                .register(meterRegistry);
+        this.hedgesCounter = Counter.builder("gemini.hedge.issued")
+                .description("Hedge requests sent because the first attempt was slow")
+                .register(meterRegistry);
+        this.winsCounter = Counter.builder("gemini.hedge.wins")
+                .description("Hedge requests that finished before the original attempt")
+                .register(meterRegistry);
+        this.budgetExhaustedCounter = Counter.builder("gemini.hedge.budget_exhausted")
+                .description("Slow calls not hedged because the hedge budget was spent")
+                .register(meterRegistry);
+        Gauge.builder("gemini.hedge.delay", this, hedger -> hedger.hedgeDelay().map(Duration::toMillis).orElse(-1L))
+                .description("Current hedge delay in ms (-1 while not enough samples)")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Run attempt, hedging it with a second identical attempt if it is slow
+     *
+     * @param attempt one complete call; must be safe to run twice concurrently
+     */
+    public <T> T call(Supplier<T> attempt) {
+        if (!enabled) {
+            return attempt.get();
+        }
+        return hedged(attempt, () -> true);
+    }
+
+    /**
+     * Run a streaming attempt, hedging it if it is slow and has not started to stream
+     *
+     * The attempt is handed a claim it must pass before relaying each fragment.
+     * The first attempt to claim owns the stream; a claim by the other returns
+     * false and that attempt must stop (by throwing). A losing attempt does not
+     * finish until the owner has, so the owner's result or failure is the one
+     * returned. Once a fragment has been relayed no hedge is sent.
+     *
+     * @param attempt one complete stream; must be safe to run twice concurrently
+     */
+    public <T> T callStreaming(Function<BooleanSupplier, T> attempt) {
+        if (!enabled) {
+            return attempt.apply(() -> true);
+        }
+        AtomicReference<Object> owner = new AtomicReference<>();
+        CountDownLatch ownerDone = new CountDownLatch(1);
+        return hedged(() -> {
+            Object self = new Object();
+            RuntimeException lost = null;
+            try {
+                if (owner.get() == null) {
+                    T result = attempt.apply(() -> owner.compareAndSet(null, self) || owner.get() == self);
+                    // Claim on finishing too, so a late fragment from the other attempt is refused
+                    if (owner.compareAndSet(null, self) || owner.get() == self) {
+                        return result;
+                    }
+                }
+            } catch (RuntimeException e) {
+                if (owner.get() == null || owner.get() == self) {
+                    throw e;
+                }
+                lost = e;
+            } finally {
+                if (owner.get() == self) {
+                    ownerDone.countDown();
+                }
+            }
+            // Lost the race: let the owner's outcome be the one the caller sees
+            try {
+                ownerDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw lost != null ? lost : new CancellationException("Another Gemini stream attempt owns the stream");
+        }, () -> owner.get() == null);
+    }
+
+    private <T> T hedged(Supplier<T> attempt, BooleanSupplier worthHedging) {
+        callsCounter.increment();
+        earnBudget();
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        List<Future<T>> attempts = new ArrayList<>(2);
+        Future<T> primary = completion.submit(() -> timed(attempt));
+        attempts.add(primary);
+        try {
+            Future<T> done = null;
+            Optional<Duration> delay = hedgeDelay();
+            if (delay.isPresent()) {
+                done = completion.poll(delay.get().toMillis(), TimeUnit.MILLISECONDS);
+                if (done == null && worthHedging.getAsBoolean()) {
+                    if (trySpendBudget()) {
+                        hedgesCounter.increment();
+                        logger.info("Gemini call exceeded {} ms, sending hedge request", delay.get().toMillis());
+                        attempts.add(completion.submit(() -> timed(attempt)));
+                    } else {
+                        budgetExhaustedCounter.increment();
+                    }
+                }
+            }
+            if (done == null) {
+                done = completion.take();
+            }
+
+            try {
+                T result = done.get();
+                if (done != primary) {
+                    winsCounter.increment();
+                }
+                return result;
+            } catch (ExecutionException firstFailure) {
+                if (attempts.size() < 2) {
+                    throw unwrap(firstFailure);
+                }
+                // The other attempt may still succeed
+                Future<T> other = completion.take();
+                try {
+                    T result = other.get();
+                    if (other != primary) {
+                        winsCounter.increment();
+                    }
+                    return result;
+                } catch (ExecutionException secondFailure) {
+                    throw unwrap(firstFailure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Gemini", e);
+        } finally {
+            attempts.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Delay before hedging: the configured percentile of recent latencies, floored at min-delay
+     *
+     * @return empty until enough samples have been recorded
+     */
+    Optional<Duration> hedgeDelay() {
+        lock.lock();
+        try {
+            if (latencyCount < Math.max(1, minSamples)) {
+                return Optional.empty();
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = Math.min(latencyCount - 1, (int) Math.ceil(percentile * latencyCount) - 1);
+            return Optional.of(Duration.ofMillis(Math.max(minDelayMs, sorted[Math.max(0, index)])));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T timed(Supplier<T> attempt) {
+        long start = System.nanoTime();
+        T result = attempt.get();
+        recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+
+    private void recordLatency(long millis) {
+        lock.lock();
+        try {
+            latencies[latencyIndex] = millis;
+            latencyIndex = (latencyIndex + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void earnBudget() {
+        lock.lock();
+        try {
+            budgetTokens = Math.min(maxBurst, budgetTokens + budgetRatio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean trySpendBudget() {
+        lock.lock();
+        try {
+            if (budgetTokens < 1.0) {
+                return false;
+            }
+            budgetTokens -= 1.0;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new RuntimeException(cause);
+    }
+}
@@ -0,0 +1,88 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gemini Image Request
+ *
+ * A generateContent request with a text prompt and image parts whose body is
+ * written straight to an output stream. Image files are Base64-encoded on the
+ * fly through Jackson's streaming generator, so the request never exists in
+ * memory as a whole: peak heap is a few buffers per request regardless of
+ * photo count or size.
+ *
+ * Written shape:
+ * {"contents":[{"parts":[{"text":"..."},{"inlineData":{"mimeType":"...","data":"<base64>"}}, ...]}]}
+ */
+public class GeminiImageRequest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    public record ImagePart(Path path, String mimeType) {
+    }
+
+    private final String prompt;
+    private final List<ImagePart> images;
+
+    public GeminiImageRequest(String prompt, List<ImagePart> images) {
+        this.prompt = prompt;
+        this.images = Collections.unmodifiableList(new ArrayList<>(images));
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public List<ImagePart> getImages() {
+        return images;
+    }
+
+    /**
+     * Serialize the request body to out. May be called more than once (e.g. on retry);
+     * each call re-reads the image files. Does not close out, and leaves the body
+     * incomplete if an image cannot be read.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("contents");
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("parts");
+
+        generator.writeStartObject();
+        generator.writeStringField("text", prompt != null ? prompt : "");
+        generator.writeEndObject();
+
+        for (ImagePart image : images) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("inlineData");
+            generator.writeStringField("mimeType", image.mimeType());
+            generator.writeFieldName("data");
+            try (InputStream imageStream = Files.newInputStream(image.path())) {
+                generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, imageStream, -1);
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -1,177 +1,214 @@
 package com.travelplanner.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.exception.UnusableModelOutputException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 @Service
 public class GeminiService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiService.class);
 
-    @Value("${gemini.api.key}")
-    private String geminiApiKey;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    private static final String GEMINI_GENERATE_URL =
-            "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash:generateContent?key=";
+    @Autowired
+    private GeminiTransport transport;
 
-    private static final String GEMINI_LIST_MODELS_URL =
-            "https://generativelanguage.googleapis.com/v1/models?key=";
+    @Autowired
+    private MeterRegistry meterRegistry;
 
+    @Autowired
+    private GeminiCallGuard callGuard;
 
-    public String callGemini(String prompt) {
-        if (geminiApiKey == null || geminiApiKey.isEmpty() || "YOUR_API_KEY".equals(geminiApiKey)) {
-            logger.error("Gemini API key is not configured.");
-            throw new RuntimeException("AI service is not configured.");
-        }
+    @Autowired
+    private GeminiHedger hedger;
 
-        String apiUrl = GEMINI_GENERATE_URL + geminiApiKey;
+    // Identical prompts in flight at the same time share one upstream request
+    private final SingleFlight<String, String> generateCalls = new SingleFlight<>();
+    private final SingleFlightStream<String> streamCalls = new SingleFlightStream<>();
 
-        // Build request body as JSON string directly
-        String jsonBody = "{\"contents\":[{\"parts\":[{\"text\":" + jsonEscape(prompt) + "}]}]}";
+    private Counter coalescedCounter;
 
-        try {
-            URI uri = new URI(apiUrl);
-            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(60000);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
+    @PostConstruct
+    void registerMetrics() {
+        coalescedCounter = Counter.builder("gemini.requests.coalesced")
+                .description("Gemini calls served by joining an identical in-flight request")
+                .register(meterRegistry);
+    }
 
-            int status = conn.getResponseCode();
-            logger.info("Gemini API responded with status: {}", status);
-
-            // Read response body
-            StringBuilder response = new StringBuilder();
-            String line;
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(
-                            status >= 400 ? conn.getErrorStream() : conn.getInputStream(),
-                            StandardCharsets.UTF_8))) {
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
+    /**
+     * Generate content for a text prompt.
+     *
+     * Concurrent calls with an identical prompt (double-clicks, frontend retries)
+     * are coalesced so only one upstream request is made and its result shared.
+     * When hedging is enabled a slow call is raced against a second identical one.
+     */
+    public String callGemini(String prompt) {
+        return generate(textRequestBody(prompt, null));
+    }
 
-            if (status >= 400) {
-                String errorBody = response.toString();
-                logger.error("Gemini API error {}: {}", status, errorBody);
-                throw new RuntimeException("Gemini API error (" + status + "): " + errorBody);
-            }
+    /**
+     * Generate JSON in Gemini's structured-output mode.
+     *
+     * The schema is sent as generationConfig.responseSchema with an
+     * application/json response type, and the model's text (the JSON itself,
+     * unwrapped from the response envelope) is returned. Callers validate and
+     * repair it with the same schema.
+     */
+    public String generateJson(String prompt, ResponseSchema schema) {
+        return candidateText(generate(textRequestBody(prompt, schema)));
+    }
 
-            return response.toString();
+    private String generate(Map<String, Object> requestBody) {
+        transport.ensureReady();
 
-        } catch (RuntimeException e) {
-            throw e;
-        } catch (Exception e) {
-            logger.error("Error calling Gemini API", e);
-            throw new RuntimeException("Gemini API call failed: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+        String jsonBody = toJson(requestBody);
+        SingleFlight.Result<String> result = generateCalls.execute(GeminiTransport.requestKey(jsonBody),
+                () -> hedger.call(() -> callGuard.call("generate", () -> transport.generate("generate", jsonBody))));
+        if (result.shared()) {
+            coalescedCounter.increment();
+            logger.info("Coalesced Gemini call onto an in-flight request with the same prompt");
+        }
+        return result.value();
+    }
+
+    /**
+     * Call Gemini's streaming endpoint and relay each text fragment as it arrives.
+     *
+     * Gemini emits Server-Sent Events where every "data:" line is a partial
+     * GenerateContentResponse. The text of each part is handed to onChunk and
+     * the concatenation of all fragments is returned once the stream ends.
+     *
+     * Like callGemini, identical prompts streaming at the same time share one
+     * upstream stream (a caller that joins late is first handed the text so far),
+     * and a stream with no fragment yet is hedged when it is slow.
+     */
+    public String streamGemini(String prompt, Consumer<String> onChunk) {
+        return stream(textRequestBody(prompt, null), onChunk);
+    }
+
+    /**
+     * Stream JSON in structured-output mode; see generateJson
+     */
+    public String streamJson(String prompt, ResponseSchema schema, Consumer<String> onChunk) {
+        return stream(textRequestBody(prompt, schema), onChunk);
+    }
+
+    private String stream(Map<String, Object> requestBody, Consumer<String> onChunk) {
+        transport.ensureReady();
+
+        String jsonBody = toJson(requestBody);
+        SingleFlight.Result<String> result = streamCalls.execute(GeminiTransport.requestKey(jsonBody), onChunk,
+                relay -> callGuard.callStreaming("stream", firstFragment -> hedger.callStreaming(claim -> {
+                    StringBuilder fullText = new StringBuilder();
+                    transport.stream(jsonBody, eventData -> {
+                        String text = extractChunkText(eventData);
+                        if (text.isEmpty()) {
+                            return;
+                        }
+                        if (!claim.getAsBoolean()) {
+                            throw new CancellationException("A hedged Gemini stream is already relaying");
+                        }
+                        firstFragment.run();
+                        fullText.append(text);
+                        relay.accept(text);
+                    });
+                    return fullText.toString();
+                })));
+        if (result.shared()) {
+            coalescedCounter.increment();
+            logger.info("Coalesced Gemini stream onto an in-flight stream with the same prompt");
         }
+        return result.value();
     }
 
-    public String callGeminiWithImages(Map<String, Object> requestBody) {
-        String requestBodyJson;
+    /**
+     * Generate content from a prompt plus images. The request body is streamed
+     * from the image files by the transport, never materialized in memory.
+     */
+    public String callGeminiWithImages(GeminiImageRequest imageRequest) {
+        transport.ensureReady();
+
+        return callGuard.call("journal", () -> transport.generate("journal", imageRequest));
+    }
+
+    public String listModels() {
+        return transport.listModels();
+    }
+
+    private String toJson(Map<String, Object> requestBody) {
         try {
-            requestBodyJson = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(requestBody);
+            return objectMapper.writeValueAsString(requestBody);
         } catch (Exception e) {
             logger.error("Failed to serialize request body", e);
             throw new RuntimeException("Failed to serialize request body: " + e.getMessage(), e);
         }
-        if (geminiApiKey == null || geminiApiKey.isEmpty() || "YOUR_API_KEY".equals(geminiApiKey)) {
-            logger.error("Gemini API key is not configured.");
-            throw new RuntimeException("AI service is not configured.");
-        }
-
-        String apiUrl = "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash:generateContent?key=" + geminiApiKey;
+    }
 
+    private String extractChunkText(String eventData) {
         try {
-            URI uri = new URI(apiUrl);
-            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(60000);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = requestBodyJson.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+            JsonNode parts = objectMapper.readTree(eventData).path("candidates").path(0).path("content").path("parts");
+            StringBuilder text = new StringBuilder();
+            for (JsonNode part : parts) {
+                text.append(part.path("text").asText(""));
             }
-
-            int status = conn.getResponseCode();
-
-            StringBuilder response = new StringBuilder();
-            String line;
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(
-                            status >= 400 ? conn.getErrorStream() : conn.getInputStream(),
-                            StandardCharsets.UTF_8))) {
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-
-            if (status >= 400) {
-                String errorBody = response.toString();
-                logger.error("Gemini API error {}: {}", status, errorBody);
-                throw new RuntimeException("Gemini API error (" + status + "): " + errorBody);
-            }
-
-            return response.toString();
-
-        } catch (RuntimeException e) {
-            throw e;
+            return text.toString();
         } catch (Exception e) {
-            logger.error("Error calling Gemini API for journal", e);
-            throw new RuntimeException("Gemini API journal call failed: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+            logger.warn("Skipping unparseable Gemini stream event: {}", e.getMessage());
+            return "";
         }
     }
 
-    public String listModels() {
-        String apiUrl = GEMINI_LIST_MODELS_URL + geminiApiKey;
+    /**
+     * Text of the first candidate in a generateContent response
+     *
+     * @throws UnusableModelOutputException if the response has no candidate (e.g. a blocked prompt)
+     */
+    private String candidateText(String response) {
+        JsonNode root;
         try {
-            URI uri = new URI(apiUrl);
-            HttpURLConnection conn = (HttpURLConnection) uri.toURL().openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-
-            StringBuilder response = new StringBuilder();
-            String line;
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                while ((line = br.readLine()) != null) {
-                    response.append(line);
-                }
-            }
-            return response.toString();
+            root = objectMapper.readTree(response);
         } catch (Exception e) {
-            logger.error("Error listing Gemini models", e);
-            return "{\"error\": \"Failed to retrieve models.\"}";
+            throw new UnusableModelOutputException("Invalid response from AI service: " + e.getMessage());
         }
+        JsonNode candidate = root.path("candidates").path(0);
+        if (candidate.isMissingNode()) {
+            String blockReason = root.path("promptFeedback").path("blockReason").asText("no candidates");
+            throw new UnusableModelOutputException("AI service returned no result (" + blockReason + ")");
+        }
+        String finishReason = candidate.path("finishReason").asText("");
+        if ("MAX_TOKENS".equals(finishReason)) {
+            logger.warn("Gemini output hit the token limit; it will be repaired");
+        }
+        StringBuilder text = new StringBuilder();
+        for (JsonNode part : candidate.path("content").path("parts")) {
+            text.append(part.path("text").asText(""));
+        }
+        return text.toString();
     }
 
-    private String jsonEscape(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    private Map<String, Object> textRequestBody(String prompt, ResponseSchema schema) {
+        Map<String, Object> textPart = Map.of("text", prompt != null ? prompt : "");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("contents", List.of(Map.of("parts", List.of(textPart))));
+        if (schema != null) {
+            body.put("generationConfig", Map.of(
+                    "responseMimeType", "application/json",
+                    "responseSchema", schema.toGeminiSchema()));
+        }
+        return body;
     }
 }
@@ -0,0 +1,62 @@
+package com.travelplanner.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Gemini Transport
+ *
+ * The wire-level exchange with the Gemini API, kept behind an interface so
+ * GeminiService's coalescing, limiting and parsing can run against either the
+ * real API or an offline stub.
+ *
+ * Implementations (selected by the gemini.transport property):
+ * - http: HttpGeminiTransport, the real generativelanguage.googleapis.com API (default)
+ * - stub: StubGeminiTransport, offline replay/synthesis for load testing
+ *
+ * Error statuses must be raised as GeminiApiException so the call guard can
+ * classify them.
+ */
+public interface GeminiTransport {
+
+    /**
+     * Fail fast if the transport cannot be used (e.g. missing API key)
+     */
+    void ensureReady();
+
+    /**
+     * POST a generateContent request and return the raw response body
+     */
+    String generate(String operation, String requestJson);
+
+    /**
+     * POST a generateContent request whose body is streamed from image files
+     * rather than held in memory
+     */
+    String generate(String operation, GeminiImageRequest imageRequest);
+
+    /**
+     * POST a streamGenerateContent request, passing each SSE "data:" payload to onEvent
+     */
+    void stream(String requestJson, Consumer<String> onEvent);
+
+    /**
+     * Return the raw list-models response body
+     */
+    String listModels();
+
+    /**
+     * Stable key for a request body, used to coalesce calls and name recordings
+     */
+    static String requestKey(String requestJson) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(requestJson.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
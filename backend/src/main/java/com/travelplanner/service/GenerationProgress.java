@@ -0,0 +1,35 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.travelplanner.model.Job;
+
+/**
+ * Generation Progress
+ *
+ * Receives progress from ItineraryService as an itinerary is built, so a
+ * job can show how far it has got. Days are reported once each, as soon as
+ * they are complete and valid, not necessarily in day order.
+ */
+@FunctionalInterface
+public interface GenerationProgress {
+
+    /**
+     * Progress that goes nowhere, for callers nobody is watching
+     */
+    GenerationProgress NONE = phase -> {
+    };
+
+    void phase(Job.Phase phase);
+
+    /**
+     * Number of days the finished itinerary will have
+     */
+    default void totalDays(int totalDays) {
+    }
+
+    /**
+     * One finished, validated day of the itinerary
+     */
+    default void dayCompleted(JsonNode day) {
+    }
+}
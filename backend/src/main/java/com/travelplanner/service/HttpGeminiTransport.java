@@ -0,0 +1,389 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.GeminiApiException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * HTTP Gemini Transport
+ *
+ * Talks to generativelanguage.googleapis.com over the shared pooled HttpClient.
+ * Records time-to-first-byte, total latency and in-flight requests.
+ *
+ * When gemini.http.record-dir is set, every successful generateContent
+ * response is written to {record-dir}/{sha256(request)}.json so it can later
+ * be replayed offline by StubGeminiTransport.
+ */
+@Component
+@ConditionalOnProperty(name = "gemini.transport", havingValue = "http", matchIfMissing = true)
+public class HttpGeminiTransport implements GeminiTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpGeminiTransport.class);
+
+    private static final String GEMINI_GENERATE_URL =
+            "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash:generateContent?key=";
+
+    private static final String GEMINI_STREAM_URL =
+            "https://generativelanguage.googleapis.com/v1/models/gemini-2.5-flash:streamGenerateContent?alt=sse&key=";
+
+    private static final String GEMINI_LIST_MODELS_URL =
+            "https://generativelanguage.googleapis.com/v1/models?key=";
+
+    private final HttpClient httpClient;
+    private final MeterRegistry meterRegistry;
+    private final String geminiApiKey;
+    private final long requestTimeoutMs;
+    private final String recordDir;
+
+    // Number of Gemini requests currently awaiting a response
+    private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+
+    public HttpGeminiTransport(@Qualifier("geminiHttpClient") HttpClient httpClient,
+                               MeterRegistry meterRegistry,
+                               @Value("${gemini.api.key}") String geminiApiKey,
+                               @Value("${gemini.http.request-timeout-ms:60000}") long requestTimeoutMs,
+                               @Value("${gemini.http.record-dir:}") String recordDir) {
+        this.httpClient = httpClient;
+        this.meterRegistry = meterRegistry;
+        this.geminiApiKey = geminiApiKey;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.recordDir = recordDir;
+
+        Gauge.builder("gemini.http.inflight", inFlightRequests, AtomicInteger::get)
+                .description("Gemini API requests currently in flight")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void ensureReady() {
+        if (geminiApiKey == null || geminiApiKey.isEmpty() || "YOUR_API_KEY".equals(geminiApiKey)) {
+            logger.error("Gemini API key is not configured.");
+            throw new RuntimeException("AI service is not configured.");
+        }
+    }
+
+    @Override
+    public String generate(String operation, String requestJson) {
+        try {
+            HttpResponse<String> response = send(postRequest(GEMINI_GENERATE_URL + geminiApiKey, requestJson), operation);
+            logger.info("Gemini API responded with status: {}", response.statusCode());
+            String body = checkStatus(response);
+            record(GeminiTransport.requestKey(requestJson), body);
+            return body;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error calling Gemini API", e);
+            throw new RuntimeException("Gemini API call failed: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String generate(String operation, GeminiImageRequest imageRequest) {
+        StreamedBody body = new StreamedBody(imageRequest);
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(GEMINI_GENERATE_URL + geminiApiKey))
+                    .timeout(Duration.ofMillis(requestTimeoutMs))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(body::open))
+                    .build();
+            HttpResponse<String> response = send(request, operation);
+            logger.info("Gemini API responded with status: {}", response.statusCode());
+            String responseBody = checkStatus(response);
+            body.requestKey().ifPresent(key -> record(key, responseBody));
+            return responseBody;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error calling Gemini API for {}", operation, e);
+            throw new RuntimeException("Gemini API " + operation + " call failed: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+        } finally {
+            body.close();
+        }
+    }
+
+    @Override
+    public void stream(String requestJson, Consumer<String> onEvent) {
+        long start = System.nanoTime();
+        inFlightRequests.incrementAndGet();
+        try {
+            HttpResponse<Stream<String>> response = httpClient.send(
+                    postRequest(GEMINI_STREAM_URL + geminiApiKey, requestJson),
+                    responseInfo -> {
+                        timer("gemini.http.ttfb", "stream").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        return HttpResponse.BodySubscribers.ofLines(StandardCharsets.UTF_8);
+                    });
+
+            try (Stream<String> lines = response.body()) {
+                if (response.statusCode() >= 400) {
+                    throw apiError(response.statusCode(), lines.collect(Collectors.joining()), response.headers());
+                }
+                lines.filter(line -> line.startsWith("data:"))
+                        .map(line -> line.substring(5).trim())
+                        .forEach(onEvent);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Gemini streaming call interrupted", e);
+        } catch (Exception e) {
+            logger.error("Error calling Gemini streaming API", e);
+            throw new RuntimeException("Gemini API streaming call failed: " + e.getClass().getSimpleName() + " - " + e.getMessage(), e);
+        } finally {
+            inFlightRequests.decrementAndGet();
+            timer("gemini.http.latency", "stream").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public String listModels() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(GEMINI_LIST_MODELS_URL + geminiApiKey))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            return send(request, "list_models").body();
+        } catch (Exception e) {
+            logger.error("Error listing Gemini models", e);
+            return "{\"error\": \"Failed to retrieve models.\"}";
+        }
+    }
+
+    private HttpRequest postRequest(String url, String jsonBody) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    /**
+     * Send a request on the shared pooled client, recording time-to-first-byte
+     * (response headers received) and total latency per operation.
+     */
+    private HttpResponse<String> send(HttpRequest request, String operation) throws Exception {
+        long start = System.nanoTime();
+        inFlightRequests.incrementAndGet();
+        try {
+            return httpClient.send(request, responseInfo -> {
+                timer("gemini.http.ttfb", operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } finally {
+            inFlightRequests.decrementAndGet();
+            timer("gemini.http.latency", operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String name, String operation) {
+        return Timer.builder(name)
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private String checkStatus(HttpResponse<String> response) {
+        if (response.statusCode() >= 400) {
+            throw apiError(response.statusCode(), response.body(), response.headers());
+        }
+        return response.body();
+    }
+
+    private GeminiApiException apiError(int status, String errorBody, HttpHeaders headers) {
+        logger.error("Gemini API error {}: {}", status, errorBody);
+        return new GeminiApiException(status, "Gemini API error (" + status + "): " + errorBody, retryAfter(headers));
+    }
+
+    /**
+     * Parse a Retry-After header given either as delay-seconds or an HTTP-date
+     */
+    private Duration retryAfter(HttpHeaders headers) {
+        return headers.firstValue("Retry-After").map(value -> {
+            try {
+                return Duration.ofSeconds(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                try {
+                    ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    Duration delay = Duration.between(ZonedDateTime.now(), retryAt);
+                    return delay.isNegative() ? Duration.ZERO : delay;
+                } catch (DateTimeParseException ignored) {
+                    return null;
+                }
+            }
+        }).orElse(null);
+    }
+
+    private void record(String requestKey, String responseBody) {
+        if (!StringUtils.hasText(recordDir)) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(recordDir);
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve(requestKey + ".json"), responseBody, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warn("Failed to record Gemini response: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Request body produced on a writer thread and handed to the HttpClient through
+     * a bounded pipe, so only PIPE_BUFFER_BYTES of it are buffered at any time.
+     *
+     * A write failure surfaces as an IOException on the reading side instead of a
+     * silently truncated body. The body is also hashed while written so the
+     * response can be recorded under the same key as a buffered request.
+     *
+     * The writer is deliberately a platform thread, and the pipe is read on the
+     * HttpClient's own (platform) executor: Piped streams block in synchronized
+     * wait(), which would pin a virtual thread to its carrier for the length of
+     * the upload.
+     */
+    private static class StreamedBody {
+
+        private static final int PIPE_BUFFER_BYTES = 64 * 1024;
+
+        private final GeminiImageRequest imageRequest;
+        private final AtomicReference<InputStream> current = new AtomicReference<>();
+        private final AtomicReference<String> requestKey = new AtomicReference<>();
+
+        StreamedBody(GeminiImageRequest imageRequest) {
+            this.imageRequest = imageRequest;
+        }
+
+        /**
+         * Start writing a fresh copy of the body; the client may call this again on retry
+         */
+        InputStream open() {
+            PipedInputStream pipeIn = new PipedInputStream(PIPE_BUFFER_BYTES);
+            PipedOutputStream pipeOut;
+            try {
+                pipeOut = new PipedOutputStream(pipeIn);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            AtomicReference<Exception> writeError = new AtomicReference<>();
+            MessageDigest digest = sha256();
+
+            Thread writer = new Thread(() -> {
+                try {
+                    imageRequest.writeTo(new DigestOutputStream(pipeOut, digest));
+                    requestKey.set(HexFormat.of().formatHex(digest.digest()));
+                } catch (Exception e) {
+                    writeError.set(e);
+                } finally {
+                    try {
+                        pipeOut.close();
+                    } catch (IOException ignored) {
+                        // reader already gone
+                    }
+                }
+            }, "gemini-body-writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            InputStream body = new FilterInputStream(pipeIn) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b == -1) {
+                        throwIfFailed();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int n = super.read(buffer, offset, length);
+                    if (n == -1) {
+                        throwIfFailed();
+                    }
+                    return n;
+                }
+
+                private void throwIfFailed() throws IOException {
+                    Exception error = writeError.get();
+                    if (error != null) {
+                        throw new IOException("Failed to write Gemini request body: " + error.getMessage(), error);
+                    }
+                }
+            };
+            InputStream previous = current.getAndSet(body);
+            closeQuietly(previous);
+            return body;
+        }
+
+        Optional<String> requestKey() {
+            return Optional.ofNullable(requestKey.get());
+        }
+
+        /**
+         * Close the reading side so a writer blocked on a full pipe is released
+         */
+        void close() {
+            closeQuietly(current.getAndSet(null));
+        }
+
+        private static void closeQuietly(InputStream stream) {
+            if (stream == null) {
+                return;
+            }
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // nothing to release
+            }
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
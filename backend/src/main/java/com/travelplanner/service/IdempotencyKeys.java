@@ -0,0 +1,188 @@
+package com.travelplanner.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Idempotency Keys
+ *
+ * Remembers which job an Idempotency-Key created, so a client resending a
+ * request (say after a dropped response on a mobile network) gets the
+ * original job back instead of queueing a second Gemini call.
+ *
+ * A key goes through two states:
+ * 1. reserve() records it as in progress for in-progress-seconds, so a
+ *    resend that arrives while the first request is still running is told
+ *    to retry rather than racing it
+ * 2. complete() records the jobId for ttl-hours; release() forgets the key
+ *    if the request failed, so the client can retry with the same key
+ *
+ * Keys are scoped by user, operation and trip, and stored hashed. The store
+ * is Redis (SET NX with expiry), so a resend is recognised whichever node it
+ * reaches; with jobs.idempotency.store=memory, or while Redis is unreachable,
+ * a size-bounded in-memory cache on this node is used instead.
+ *
+ * Metrics: jobs.idempotency.requests (tagged operation,
+ * outcome=new|replayed|in_progress), plus Caffeine cache metrics for the
+ * in-memory store.
+ */
+@Component
+public class IdempotencyKeys {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeys.class);
+    private static final String KEY_PREFIX = "travel-planner::idempotency::";
+    private static final String CACHE_NAME = "idempotencyKeys";
+    private static final String IN_PROGRESS = "";
+
+    /**
+     * What an earlier request with the same key recorded
+     *
+     * @param jobId the job it created, or null while it is still being processed
+     */
+    public record Recorded(String jobId) {
+        public boolean inProgress() {
+            return jobId == null;
+        }
+    }
+
+    private record LocalEntry(String value, long expiresAt) {
+    }
+
+    private final boolean useRedis;
+    private final Duration ttl;
+    private final Duration inProgressTtl;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, LocalEntry> localCache;
+
+    public IdempotencyKeys(@Value("${jobs.idempotency.store:redis}") String store,
+                           @Value("${jobs.idempotency.ttl-hours:24}") long ttlHours,
+                           @Value("${jobs.idempotency.in-progress-seconds:60}") long inProgressSeconds,
+                           @Value("${jobs.idempotency.max-entries:10000}") long maxEntries,
+                           ObjectProvider<StringRedisTemplate> redisTemplate,
+                           MeterRegistry meterRegistry) {
+        this.useRedis = "redis".equalsIgnoreCase(store);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.inProgressTtl = Duration.ofSeconds(inProgressSeconds);
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME);
+
+        logger.info("Idempotency keys initialized with store={}, ttlHours={}, inProgressSeconds={}",
+                useRedis ? "redis" : "memory", ttlHours, inProgressSeconds);
+    }
+
+    /**
+     * Claim a key for a new request
+     *
+     * @return empty if the caller now holds the key and must complete() or
+     *         release() it; otherwise what the earlier request recorded
+     */
+    public Optional<Recorded> reserve(Long userId, String operation, Long tripId, String key) {
+        String storeKey = storeKey(userId, operation, tripId, key);
+        Optional<String> previous = useRedis ? reserveInRedis(storeKey) : reserveLocally(storeKey);
+
+        Optional<Recorded> recorded = previous.map(value -> new Recorded(IN_PROGRESS.equals(value) ? null : value));
+        String outcome = recorded.map(r -> r.inProgress() ? "in_progress" : "replayed").orElse("new");
+        if (recorded.isPresent()) {
+            logger.info("Duplicate {} request for tripId {} from user {} ({})", operation, tripId, userId, outcome);
+        }
+        Counter.builder("jobs.idempotency.requests")
+                .description("Requests carrying an Idempotency-Key, by whether the key was seen before")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        return recorded;
+    }
+
+    /**
+     * Record the job a reserved key created
+     */
+    public void complete(Long userId, String operation, Long tripId, String key, String jobId) {
+        String storeKey = storeKey(userId, operation, tripId, key);
+        if (useRedis) {
+            try {
+                redisTemplate.getObject().opsForValue().set(storeKey, jobId, ttl);
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Redis unavailable for idempotency keys, recording locally: {}", e.getMessage());
+            }
+        }
+        localCache.put(storeKey, new LocalEntry(jobId, System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    /**
+     * Forget a reserved key whose request did not create a job
+     */
+    public void release(Long userId, String operation, Long tripId, String key) {
+        String storeKey = storeKey(userId, operation, tripId, key);
+        if (useRedis) {
+            try {
+                redisTemplate.getObject().delete(storeKey);
+            } catch (RuntimeException e) {
+                logger.warn("Redis unavailable for idempotency keys, releasing locally: {}", e.getMessage());
+            }
+        }
+        localCache.invalidate(storeKey);
+    }
+
+    private Optional<String> reserveInRedis(String storeKey) {
+        try {
+            StringRedisTemplate redis = redisTemplate.getObject();
+            // The earlier entry can expire between the two calls, hence a second try
+            for (int attempt = 0; attempt < 2; attempt++) {
+                if (Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(storeKey, IN_PROGRESS, inProgressTtl))) {
+                    return Optional.empty();
+                }
+                String value = redis.opsForValue().get(storeKey);
+                if (value != null) {
+                    return Optional.of(value);
+                }
+            }
+            return Optional.of(IN_PROGRESS);
+        } catch (RuntimeException e) {
+            logger.warn("Redis unavailable for idempotency keys, using local store: {}", e.getMessage());
+            return reserveLocally(storeKey);
+        }
+    }
+
+    private Optional<String> reserveLocally(String storeKey) {
+        long now = System.currentTimeMillis();
+        LocalEntry reservation = new LocalEntry(IN_PROGRESS, now + inProgressTtl.toMillis());
+        LocalEntry entry = localCache.asMap().compute(storeKey,
+                (k, existing) -> existing == null || existing.expiresAt() <= now ? reservation : existing);
+        return entry == reservation ? Optional.empty() : Optional.of(entry.value());
+    }
+
+    static String storeKey(Long userId, String operation, Long tripId, String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            return KEY_PREFIX + userId + ":" + operation + ":" + tripId + ":" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
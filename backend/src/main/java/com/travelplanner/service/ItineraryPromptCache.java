@@ -0,0 +1,163 @@
+package com.travelplanner.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.travelplanner.dto.prompt.ItineraryPrompt;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Itinerary Prompt Cache
+ *
+ * Caches generated itinerary JSON by a canonical hash of the prompt inputs
+ * rather than by tripId, so equivalent requests from different trips and
+ * users reuse one Gemini result.
+ *
+ * Canonicalization:
+ * - Free text is lower-cased, trimmed and whitespace-collapsed
+ * - Comma-separated lists (interests, foods) are de-duplicated and sorted
+ * - Dates are reduced to trip length in days plus season of the start date
+ * - Budget only contributes when no budget tier is set, rounded to 100
+ *
+ * Entries expire after a fixed TTL and the cache is size-bounded (LRU-like
+ * eviction). Hit/miss/eviction counts are published as Micrometer cache metrics.
+ */
+@Component
+public class ItineraryPromptCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ItineraryPromptCache.class);
+    private static final String CACHE_NAME = "itineraryPrompts";
+
+    private final Cache<String, String> cache;
+    private final boolean enabled;
+
+    public ItineraryPromptCache(@Value("${itinerary.cache.enabled:true}") boolean enabled,
+                                @Value("${itinerary.cache.max-entries:1000}") long maxEntries,
+                                @Value("${itinerary.cache.ttl-hours:24}") long ttlHours,
+                                MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofHours(ttlHours))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+
+        logger.info("Itinerary prompt cache initialized with enabled={}, maxEntries={}, ttlHours={}",
+                enabled, maxEntries, ttlHours);
+    }
+
+    /**
+     * Look up a cached itinerary for the given canonical key
+     */
+    public Optional<String> get(String key) {
+        if (!enabled || key == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Store a generated itinerary under the given canonical key
+     */
+    public void put(String key, String itineraryJson) {
+        if (enabled && key != null && itineraryJson != null) {
+            cache.put(key, itineraryJson);
+        }
+    }
+
+    /**
+     * Compute the canonical SHA-256 key for a prompt
+     */
+    public String keyFor(ItineraryPrompt prompt) {
+        String canonical = String.join("|",
+                normalize(prompt.getDestination()),
+                String.valueOf(ChronoUnit.DAYS.between(prompt.getStartDate(), prompt.getEndDate()) + 1),
+                season(prompt),
+                String.valueOf(prompt.getNumberOfTravelers() != null ? prompt.getNumberOfTravelers() : 1),
+                normalize(prompt.getTravelStyle()),
+                normalizeList(prompt.getInterests()),
+                normalize(prompt.getTransportation()),
+                normalize(prompt.getBudgetTier()),
+                budgetBucket(prompt),
+                normalize(prompt.getLuxuryLevel()),
+                normalize(prompt.getAccommodationStyle()),
+                normalize(prompt.getDietaryNeeds()),
+                normalizeList(prompt.getMustTryFoods()),
+                normalize(prompt.getWeather()),
+                normalize(prompt.getAccessibility()),
+                String.valueOf(prompt.getGroupSize() != null ? prompt.getGroupSize() : 0));
+        return sha256(canonical);
+    }
+
+    private String season(ItineraryPrompt prompt) {
+        switch (prompt.getStartDate().getMonth()) {
+            case DECEMBER:
+            case JANUARY:
+            case FEBRUARY:
+                return "winter";
+            case MARCH:
+            case APRIL:
+            case MAY:
+                return "spring";
+            case JUNE:
+            case JULY:
+            case AUGUST:
+                return "summer";
+            default:
+                return "autumn";
+        }
+    }
+
+    private String budgetBucket(ItineraryPrompt prompt) {
+        // Mirrors PromptBuilderService: the numeric budget is ignored when a tier is present
+        if (StringUtils.hasText(prompt.getBudgetTier()) || prompt.getBudget() == null) {
+            return "";
+        }
+        return String.valueOf(Math.round(prompt.getBudget() / 100.0) * 100);
+    }
+
+    private String normalize(String value) {
+        if (!StringUtils.hasText(value)) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private String normalizeList(String value) {
+        if (!StringUtils.hasText(value)) {
+            return "";
+        }
+        return Arrays.stream(value.split(","))
+                .map(this::normalize)
+                .filter(item -> !item.isEmpty())
+                .distinct()
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
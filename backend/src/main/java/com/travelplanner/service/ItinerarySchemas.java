@@ -0,0 +1,80 @@
+package com.travelplanner.service;
+
+import static com.travelplanner.service.ResponseSchema.array;
+import static com.travelplanner.service.ResponseSchema.integer;
+import static com.travelplanner.service.ResponseSchema.object;
+import static com.travelplanner.service.ResponseSchema.string;
+
+/**
+ * Itinerary Schemas
+ *
+ * Response schemas for itinerary generation, mirroring the JSON structure
+ * described to the model in PromptBuilderService.buildOutputRequirements.
+ *
+ * Essential fields (the rest are repaired away if damaged):
+ * - itinerary: at least one day
+ * - day: its day number and at least one activity
+ * - activity: its description
+ */
+public final class ItinerarySchemas {
+
+    private static final ResponseSchema MEAL = object()
+            .property("recommendation", string())
+            .property("notes", string());
+
+    private static final ResponseSchema ACTIVITY = object()
+            .property("time_of_day", string())
+            .property("travel_details", string())
+            .essential("description", string())
+            .property("location_address", string())
+            .property("estimated_cost", string())
+            .property("booking_info", string())
+            .property("alternative_option", string());
+
+    public static final ResponseSchema DAY = object()
+            .essential("day", integer())
+            .property("date", string())
+            .property("theme", string())
+            .property("daily_overview", string())
+            .essential("activities", array(ACTIVITY, 1))
+            .property("food_suggestions", object()
+                    .property("lunch", MEAL)
+                    .property("dinner", MEAL))
+            .property("practical_tips", object()
+                    .property("transport_tip", string())
+                    .property("cultural_etiquette", string()));
+
+    private static final ResponseSchema BUDGET_BREAKDOWN = object()
+            .property("accommodation_estimate", string())
+            .property("food_estimate", string())
+            .property("activities_estimate", string());
+
+    /**
+     * A full itinerary document (generation and full adaptation)
+     */
+    public static final ResponseSchema ITINERARY = object()
+            .property("trip_summary", string())
+            .property("overall_budget_breakdown", BUDGET_BREAKDOWN)
+            .essential("itinerary", array(DAY, 1))
+            .property("essential_travel_tips", array(string(), 0));
+
+    /**
+     * A list of days only (day-scoped adaptation and fan-out ranges)
+     */
+    public static final ResponseSchema DAYS = object()
+            .essential("itinerary", array(DAY, 1));
+
+    /**
+     * The fan-out trip outline
+     */
+    public static final ResponseSchema OUTLINE = object()
+            .essential("trip_summary", string())
+            .property("overall_budget_breakdown", BUDGET_BREAKDOWN)
+            .property("day_themes", array(object()
+                    .essential("day", integer())
+                    .property("theme", string()), 0))
+            .property("essential_travel_tips", array(string(), 0));
+
+    private ItinerarySchemas() {
+    }
+}
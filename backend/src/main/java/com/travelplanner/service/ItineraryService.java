@@ -1,10 +1,18 @@
 package com.travelplanner.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.travelplanner.dto.prompt.ItineraryPrompt;
+import com.travelplanner.exception.UnusableModelOutputException;
 import com.travelplanner.model.Itinerary;
+import com.travelplanner.model.Job;
 import com.travelplanner.model.Trip;
 import com.travelplanner.repository.ItineraryRepository;
 import com.travelplanner.repository.TripRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -12,13 +20,22 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.function.Consumer;
 
 @Service
 public class ItineraryService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ItineraryService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @Autowired
     private ItineraryRepository itineraryRepository;
 
@@ -31,12 +48,151 @@ public class ItineraryService {
     @Autowired
     private PromptBuilderService promptBuilderService;
 
-    // @Cacheable removed to allow regeneration - caching prevents new AI calls for same tripId
+    @Autowired
+    private ItineraryPromptCache promptCache;
+
+    @Autowired
+    private FanOutItineraryGenerator fanOutGenerator;
+
+    // @Cacheable removed to allow regeneration - caching prevents new AI calls for same tripId.
+    // Results are instead shared through ItineraryPromptCache, keyed by the canonical prompt.
     public Itinerary generateItinerary(Long tripId, Long userId) {
-        Trip trip = tripRepository.findById(tripId)
+        return generateItinerary(tripId, userId, GenerationProgress.NONE);
+    }
+
+    /**
+     * Generate an itinerary, reporting phases and finished days to progress
+     */
+    public Itinerary generateItinerary(Long tripId, Long userId, GenerationProgress progress) {
+        return generateItinerary(tripId, userId, false, progress);
+    }
+
+    /**
+     * Regenerate an itinerary, bypassing the prompt cache so the user gets a fresh result
+     */
+    public Itinerary regenerateItinerary(Long tripId, Long userId) {
+        return regenerateItinerary(tripId, userId, GenerationProgress.NONE);
+    }
+
+    public Itinerary regenerateItinerary(Long tripId, Long userId, GenerationProgress progress) {
+        return generateItinerary(tripId, userId, true, progress);
+    }
+
+    private Itinerary generateItinerary(Long tripId, Long userId, boolean forceFresh, GenerationProgress progress) {
+        Trip trip = findAuthorizedTrip(tripId, userId);
+        ItineraryPrompt prompt = buildPrompt(trip);
+        String cacheKey = promptCache.keyFor(prompt);
+        if (prompt.getStartDate() != null && prompt.getEndDate() != null) {
+            progress.totalDays((int) ChronoUnit.DAYS.between(prompt.getStartDate(), prompt.getEndDate()) + 1);
+        }
+
+        if (!forceFresh) {
+            Optional<String> cached = promptCache.get(cacheKey);
+            if (cached.isPresent()) {
+                logger.info("Prompt cache hit for trip {}", tripId);
+                progress.phase(Job.Phase.PERSISTING);
+                return saveItineraryContent(trip, alignDates(cached.get(), prompt.getStartDate()));
+            }
+        }
+
+        String cleanJsonResponse;
+        if (fanOutGenerator.shouldFanOut(prompt)) {
+            // Long trips are generated as concurrent day ranges
+            cleanJsonResponse = fanOutGenerator.generate(prompt, progress);
+        } else {
+            String formattedPrompt = promptBuilderService.buildItineraryPrompt(prompt);
+            progress.phase(Job.Phase.PROMPT_BUILT);
+
+            if (progress == GenerationProgress.NONE) {
+                // Nobody is watching for days, so skip the incremental parse
+                String aiResponse = geminiService.generateJson(formattedPrompt, ItinerarySchemas.ITINERARY);
+                cleanJsonResponse = ItinerarySchemas.ITINERARY.parse(aiResponse).toString();
+            } else {
+                cleanJsonResponse = streamItinerary(formattedPrompt, progress);
+            }
+        }
+        promptCache.put(cacheKey, cleanJsonResponse);
+        progress.phase(Job.Phase.PERSISTING);
+        return saveItineraryContent(trip, cleanJsonResponse);
+    }
+
+    /**
+     * Stream an itinerary from Gemini, reporting each day as soon as the
+     * parser has seen it close, while later days are still being generated.
+     * The stream is coalesced and hedged by GeminiService, so identical jobs
+     * running at the same time share it.
+     */
+    private String streamItinerary(String formattedPrompt, GenerationProgress progress) {
+        RepairingJsonParser parser = new RepairingJsonParser();
+        int[] reported = {0};
+        String aiResponse = geminiService.streamJson(formattedPrompt, ItinerarySchemas.ITINERARY, chunk -> {
+            progress.phase(Job.Phase.MODEL_STREAMING);
+            parser.feed(chunk);
+            reported[0] = reportFinishedDays(parser, reported[0], progress);
+        });
+        progress.phase(Job.Phase.PARSING);
+        // The full text, not the parser: a joined stream that had to start over may not have been relayed in full
+        return ItinerarySchemas.ITINERARY.parse(aiResponse).toString();
+    }
+
+    /**
+     * Report the days of the partial document closed since the first unreported one
+     *
+     * @return the number of days now reported (or skipped as unusable)
+     */
+    private static int reportFinishedDays(RepairingJsonParser parser, int reported, GenerationProgress progress) {
+        JsonNode root = parser.current();
+        JsonNode days = root == null ? null : root.get("itinerary");
+        if (days == null || !days.isArray()) {
+            return reported;
+        }
+        while (reported < days.size() && parser.isClosed(days.get(reported))) {
+            // Repair a copy; the final pass over the whole document repairs the original
+            JsonNode day = ItinerarySchemas.DAY.repair(days.get(reported).deepCopy(),
+                    "$.itinerary[" + reported + "]", new ArrayList<>());
+            if (day != null) {
+                progress.dayCompleted(day);
+            }
+            reported++;
+        }
+        return reported;
+    }
+
+    /**
+     * Generate an itinerary using Gemini's streaming endpoint.
+     *
+     * Text fragments are passed to onChunk as soon as the model produces them;
+     * the validated (and, if the stream was cut short, repaired) JSON is
+     * persisted to Itinerary.content when the stream ends. A prompt cache hit
+     * is relayed as a single chunk.
+     */
+    public Itinerary generateItineraryStreaming(Long tripId, Long userId, Consumer<String> onChunk) {
+        Trip trip = findAuthorizedTrip(tripId, userId);
+        ItineraryPrompt prompt = buildPrompt(trip);
+        String cacheKey = promptCache.keyFor(prompt);
+
+        Optional<String> cached = promptCache.get(cacheKey);
+        if (cached.isPresent()) {
+            String content = alignDates(cached.get(), prompt.getStartDate());
+            onChunk.accept(content);
+            return saveItineraryContent(trip, content);
+        }
+
+        String formattedPrompt = promptBuilderService.buildItineraryPrompt(prompt);
+
+        String aiResponse = geminiService.streamJson(formattedPrompt, ItinerarySchemas.ITINERARY, onChunk);
+        String cleanJsonResponse = ItinerarySchemas.ITINERARY.parse(aiResponse).toString();
+        promptCache.put(cacheKey, cleanJsonResponse);
+        return saveItineraryContent(trip, cleanJsonResponse);
+    }
+
+    private Trip findAuthorizedTrip(Long tripId, Long userId) {
+        return tripRepository.findById(tripId)
                 .filter(t -> t.getUser().getId().equals(userId))
                 .orElseThrow(() -> new RuntimeException("Error: Trip not found or user not authorized."));
+    }
 
+    private ItineraryPrompt buildPrompt(Trip trip) {
         // Build prompt using PromptBuilderService
         ItineraryPrompt prompt = ItineraryPrompt.builder()
                 .destination(trip.getDestination())
@@ -54,12 +210,10 @@ public class ItineraryService {
 
         // Validate prompt parameters
         prompt.validate();
+        return prompt;
+    }
 
-        String formattedPrompt = promptBuilderService.buildItineraryPrompt(prompt);
-
-        String aiResponse = geminiService.callGemini(formattedPrompt);
-        String cleanJsonResponse = extractJson(aiResponse);
-
+    private Itinerary saveItineraryContent(Trip trip, String cleanJsonResponse) {
         Itinerary itinerary = trip.getItinerary();
         if (itinerary == null) {
             itinerary = new Itinerary();
@@ -75,52 +229,163 @@ public class ItineraryService {
 
     @CacheEvict(value = "itineraries", key = "#tripId")
     public Itinerary adaptItinerary(Long tripId, Long userId, String context) {
-        Trip trip = tripRepository.findById(tripId)
-                .filter(t -> t.getUser().getId().equals(userId))
-                .orElseThrow(() -> new RuntimeException("Error: Trip not found or user not authorized."));
+        return adaptItinerary(tripId, userId, context, GenerationProgress.NONE);
+    }
+
+    /**
+     * Adapt an itinerary, reporting phases to progress (days are not reported)
+     */
+    @CacheEvict(value = "itineraries", key = "#tripId")
+    public Itinerary adaptItinerary(Long tripId, Long userId, String context, GenerationProgress progress) {
+        Trip trip = findAuthorizedTrip(tripId, userId);
 
         String originalItineraryContent = trip.getItinerary() != null ? trip.getItinerary().getContent() : "{}";
 
-        String prompt = promptBuilderService.buildAdaptationPrompt(originalItineraryContent, context);
+        Optional<String> partial = adaptAffectedDays(originalItineraryContent, context, progress);
+        String cleanJsonResponse;
+        if (partial.isPresent()) {
+            cleanJsonResponse = partial.get();
+        } else {
+            String prompt = promptBuilderService.buildAdaptationPrompt(originalItineraryContent, context);
+            progress.phase(Job.Phase.PROMPT_BUILT);
 
-        String aiResponse = geminiService.callGemini(prompt);
-        String cleanJsonResponse = extractJson(aiResponse);
+            String aiResponse = geminiService.generateJson(prompt, ItinerarySchemas.ITINERARY);
+            progress.phase(Job.Phase.PARSING);
+            cleanJsonResponse = ItinerarySchemas.ITINERARY.parse(aiResponse).toString();
+        }
 
+        progress.phase(Job.Phase.PERSISTING);
         Itinerary itinerary = trip.getItinerary();
         itinerary.setContent(cleanJsonResponse);
 
         return itineraryRepository.save(itinerary);
     }
 
-    private LocalDate convertToLocalDate(Date date) {
-        if (date == null) {
-            return null;
+    /**
+     * Adapt only the days the request refers to and merge them into the stored itinerary.
+     *
+     * Returns empty when the change is trip-wide, touches most of the trip, or the
+     * stored content can't be read, in which case the full itinerary is adapted.
+     */
+    private Optional<String> adaptAffectedDays(String originalItineraryContent, String context, GenerationProgress progress) {
+        JsonNode root = readItineraryDocument(originalItineraryContent);
+        if (root == null) {
+            return Optional.empty();
+        }
+        ArrayNode days = (ArrayNode) root.get("itinerary");
+        SortedSet<Integer> affected = AdaptationScope.affectedDays(context, days);
+        if (affected.isEmpty() || affected.size() * 2 > days.size()) {
+            return Optional.empty();
         }
-        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-    }
 
-    private String extractJson(String aiResponse) {
-        Pattern pattern = Pattern.compile("```json\\s*([\\s\\S]*?)\\s*```");
-        Matcher matcher = pattern.matcher(aiResponse);
+        ArrayNode affectedDays = objectMapper.createArrayNode();
+        ArrayNode outlineDays = objectMapper.createArrayNode();
+        for (JsonNode day : days) {
+            int dayNumber = day.path("day").asInt();
+            if (affected.contains(dayNumber)) {
+                affectedDays.add(day);
+            }
+            outlineDays.addObject()
+                    .put("day", dayNumber)
+                    .put("date", day.path("date").asText())
+                    .put("theme", day.path("theme").asText());
+        }
+        ObjectNode outline = objectMapper.createObjectNode();
+        outline.put("trip_summary", root.path("trip_summary").asText());
+        outline.set("days", outlineDays);
+
+        String prompt = promptBuilderService.buildDayAdaptationPrompt(
+                outline.toString(), affectedDays.toString(), List.copyOf(affected), context);
+        logger.info("Adapting days {} of {} (prompt length {})", affected, days.size(), prompt.length());
+        progress.phase(Job.Phase.PROMPT_BUILT);
+
+        JsonNode adaptedDays;
+        try {
+            String aiResponse = geminiService.generateJson(prompt, ItinerarySchemas.DAYS);
+            progress.phase(Job.Phase.PARSING);
+            adaptedDays = ItinerarySchemas.DAYS.parse(aiResponse);
+        } catch (UnusableModelOutputException e) {
+            logger.warn("Day-scoped adaptation returned no usable days ({}); adapting the full itinerary", e.getMessage());
+            return Optional.empty();
+        }
 
-        if (matcher.find()) {
-            return matcher.group(1).trim();
+        Map<Integer, JsonNode> replacements = new HashMap<>();
+        for (JsonNode day : adaptedDays.get("itinerary")) {
+            int dayNumber = day.path("day").asInt(-1);
+            if (affected.contains(dayNumber) && day.isObject()) {
+                replacements.put(dayNumber, day);
+            }
+        }
+        if (!replacements.keySet().containsAll(affected)) {
+            logger.warn("Day-scoped adaptation returned days {} but {} were requested; adapting the full itinerary",
+                    replacements.keySet(), affected);
+            return Optional.empty();
         }
 
-        // Fallback: Find the first { or [ and the last } or ]
-        int firstBrace = aiResponse.indexOf('{');
-        int lastBrace = aiResponse.lastIndexOf('}');
-        int firstBracket = aiResponse.indexOf('[');
-        int lastBracket = aiResponse.lastIndexOf(']');
+        for (int i = 0; i < days.size(); i++) {
+            JsonNode replacement = replacements.get(days.get(i).path("day").asInt());
+            if (replacement != null) {
+                // Dates are fixed by the trip, not by the model
+                ((ObjectNode) replacement).set("date", days.get(i).path("date"));
+                days.set(i, replacement);
+            }
+        }
+        return Optional.of(root.toString());
+    }
 
-        int start = firstBrace != -1 && (firstBracket == -1 || firstBrace < firstBracket) ? firstBrace : firstBracket;
-        int end = lastBrace != -1 && (lastBracket == -1 || lastBrace > lastBracket) ? lastBrace : lastBracket;
+    /**
+     * Parse stored or returned content into an itinerary document with an itinerary[] array.
+     *
+     * Accepts both a plain itinerary object and the raw Gemini response envelope
+     * (whose candidate text holds the itinerary, possibly fenced in markdown).
+     *
+     * @return the document, or null if it has no itinerary array
+     */
+    private JsonNode readItineraryDocument(String content) {
+        try {
+            JsonNode root = objectMapper.readTree(content);
+            JsonNode candidateText = root.path("candidates").path(0).path("content").path("parts").path(0).path("text");
+            if (candidateText.isTextual()) {
+                root = RepairingJsonParser.parse(candidateText.asText()).finish();
+            }
+            return root.path("itinerary").isArray() ? root : null;
+        } catch (Exception e) {
+            logger.warn("Could not read itinerary document: {}", e.getMessage());
+            return null;
+        }
+    }
 
-        if (start != -1 && end != -1 && end > start) {
-            return aiResponse.substring(start, end + 1).trim();
+    /**
+     * Rewrite each day's date relative to this trip's start date.
+     *
+     * Cached itineraries are shared across trips of the same length and season,
+     * so the stored dates belong to whichever trip generated them first.
+     */
+    private String alignDates(String itineraryJson, LocalDate startDate) {
+        try {
+            JsonNode root = objectMapper.readTree(itineraryJson);
+            JsonNode days = root.path("itinerary");
+            if (!days.isArray()) {
+                return itineraryJson;
+            }
+            for (int i = 0; i < days.size(); i++) {
+                if (days.get(i) instanceof ObjectNode day) {
+                    int dayNumber = day.path("day").asInt(i + 1);
+                    day.put("date", startDate.plusDays(dayNumber - 1L).toString());
+                }
+            }
+            return objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            logger.warn("Could not align cached itinerary dates: {}", e.getMessage());
+            return itineraryJson;
         }
+    }
 
-        throw new RuntimeException("No valid JSON found in the AI response.");
+    private LocalDate convertToLocalDate(Date date) {
+        if (date == null) {
+            return null;
+        }
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
     }
 
     public GeminiService getGeminiService() {
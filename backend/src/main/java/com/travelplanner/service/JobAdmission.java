@@ -0,0 +1,168 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.JobRejectedException;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Job Admission
+ *
+ * Decides whether a new job is accepted before it is queued, so overload is
+ * turned away at the door with 503 + Retry-After instead of piling up work
+ * that will time out anyway.
+ *
+ * A job is rejected when:
+ * - the user already has max-in-flight-per-user jobs PENDING or PROCESSING,
+ *   so one user cannot fill the queue
+ * - the backlog of PENDING jobs for its bulkhead (generation or adaptation)
+ *   has reached max-queued
+ *
+ * Retry-After is estimated from the worker's recent run times
+ * (default-run-seconds until some have finished), capped at
+ * max-retry-after-seconds:
+ * - user limit: one run time, for one of the user's jobs to finish
+ * - backlog: jobs over the bound × run time ÷ slots on this node
+ *
+ * Streamed generations (admitStream) run at once on the generation bulkhead
+ * instead of queueing. They count toward the user's in-flight limit while
+ * they run (tracked on this node), and are only admitted while no generation
+ * job is waiting, so a stream never takes a slot ahead of the fair queue.
+ *
+ * Metrics: jobs.admission.rejected (tagged reason=user_limit|backlog).
+ */
+@Service
+public class JobAdmission {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobAdmission.class);
+    private static final List<Job.JobStatus> IN_FLIGHT = List.of(Job.JobStatus.PENDING, Job.JobStatus.PROCESSING);
+
+    // Streams running on this node, per user
+    private final Map<Long, Integer> streams = new ConcurrentHashMap<>();
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobWorker jobWorker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobs.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.admission.max-in-flight-per-user:3}")
+    private int maxInFlightPerUser;
+
+    @Value("${jobs.admission.max-queued.generation:50}")
+    private int maxQueuedGeneration;
+
+    @Value("${jobs.admission.max-queued.adaptation:20}")
+    private int maxQueuedAdaptation;
+
+    @Value("${jobs.admission.default-run-seconds:30}")
+    private long defaultRunSeconds;
+
+    @Value("${jobs.admission.max-retry-after-seconds:120}")
+    private long maxRetryAfterSeconds;
+
+    /**
+     * Check that a job of jobType may be queued for userId
+     *
+     * @throws JobRejectedException if it may not
+     */
+    public void admit(Long userId, String jobType) {
+        if (!enabled) {
+            return;
+        }
+        checkUserLimit(userId, jobType, streams.getOrDefault(userId, 0));
+
+        long queued = jobRepository.countByJobTypeInAndStatus(jobWorker.bulkheadJobTypes(jobType), Job.JobStatus.PENDING);
+        int maxQueued = maxQueued(jobType);
+        if (queued >= maxQueued) {
+            reject("backlog", userId, jobType);
+            throw new JobRejectedException("The itinerary service is busy.",
+                    estimatedWait(jobType, queued - maxQueued + 1));
+        }
+    }
+
+    /**
+     * Check that userId may start a streamed generation now, and count it
+     * against the user's in-flight limit until the returned callback is run
+     *
+     * @return to be run once when the stream's work has finished
+     * @throws JobRejectedException if it may not
+     */
+    public Runnable admitStream(Long userId) {
+        String jobType = "ITINERARY_GENERATION";
+        int running = streams.merge(userId, 1, Integer::sum);
+        Runnable release = () -> streams.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+        if (!enabled) {
+            return release;
+        }
+        try {
+            checkUserLimit(userId, jobType, running - 1);
+            long queued = jobRepository.countByJobTypeInAndStatus(jobWorker.bulkheadJobTypes(jobType), Job.JobStatus.PENDING);
+            if (queued > 0) {
+                // Queued jobs get the free slots first; wait for them as a queued job would
+                reject("backlog", userId, jobType);
+                throw new JobRejectedException("The itinerary service is busy.", estimatedWait(jobType, queued));
+            }
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return release;
+    }
+
+    private void checkUserLimit(Long userId, String jobType, int userStreams) {
+        long inFlight = jobRepository.countByUserIdAndStatusIn(userId, IN_FLIGHT) + userStreams;
+        if (inFlight >= maxInFlightPerUser) {
+            reject("user_limit", userId, jobType);
+            // One of the user's own jobs has to finish first
+            throw new JobRejectedException("You already have " + inFlight + " itinerary jobs in progress.",
+                    capped(runTime(jobType)));
+        }
+    }
+
+    /**
+     * Estimated time until jobsAhead jobs of jobType's bulkhead have finished
+     */
+    public Duration estimatedWait(String jobType, long jobsAhead) {
+        return capped(runTime(jobType).multipliedBy(jobsAhead).dividedBy(Math.max(1, jobWorker.slots(jobType))));
+    }
+
+    private Duration runTime(String jobType) {
+        return jobWorker.averageRunTime(jobType).orElse(Duration.ofSeconds(defaultRunSeconds));
+    }
+
+    private Duration capped(Duration wait) {
+        long seconds = (wait.toMillis() + 999) / 1000;
+        return Duration.ofSeconds(Math.max(1, Math.min(maxRetryAfterSeconds, seconds)));
+    }
+
+    private int maxQueued(String jobType) {
+        return jobWorker.bulkheadJobTypes(jobType).contains("ITINERARY_ADAPTATION") ? maxQueuedAdaptation : maxQueuedGeneration;
+    }
+
+    private void reject(String reason, Long userId, String jobType) {
+        logger.warn("Rejecting {} job for user {}: {}", jobType, userId, reason);
+        Counter.builder("jobs.admission.rejected")
+                .description("Jobs turned away at admission, by reason")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
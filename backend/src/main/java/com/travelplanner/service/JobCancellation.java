@@ -0,0 +1,92 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Job Cancellation
+ *
+ * Stops work nobody will read: a job the user cancelled, or an older
+ * regeneration superseded by a newer one for the same trip.
+ *
+ * Cancelling a job:
+ * 1. JobQueue.cancel marks it CANCELLED and clears its lease, so a queued job
+ *    or pending retry is never claimed and a running attempt cannot record
+ *    an outcome
+ * 2. If it is running on this node, the worker interrupts it at once; the
+ *    interrupt aborts the in-flight Gemini HTTP exchange and frees the slot.
+ *    Workers on other nodes notice within jobs.worker.cancel-check-interval-ms
+ * 3. Subscribers are told through JobStatusNotifier
+ *
+ * Metrics: jobs.cancelled (tagged reason=user|superseded).
+ */
+@Service
+public class JobCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobCancellation.class);
+    private static final List<Job.JobStatus> ACTIVE_STATUSES = List.of(Job.JobStatus.PENDING, Job.JobStatus.PROCESSING);
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private JobWorker jobWorker;
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private JobStatusNotifier jobStatusNotifier;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Cancel a job at the user's request
+     *
+     * @return false if the job had already finished
+     */
+    public boolean cancel(Job job) {
+        return cancel(job, "Cancelled by user", "user");
+    }
+
+    /**
+     * Cancel the trip's unfinished jobs of the given types, e.g. before queueing
+     * a regeneration that makes them obsolete
+     *
+     * @return the number of jobs cancelled
+     */
+    public int cancelSuperseded(Long tripId, Long userId, Collection<String> jobTypes) {
+        int cancelled = 0;
+        for (Job job : jobRepository.findByTripIdAndUserIdAndJobTypeInAndStatusIn(tripId, userId, jobTypes, ACTIVE_STATUSES)) {
+            if (cancel(job, "Superseded by a newer request", "superseded")) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    private boolean cancel(Job job, String reason, String tag) {
+        if (!jobQueue.cancel(job, reason)) {
+            return false;
+        }
+        logger.info("Cancelled job {} for trip {}: {}", job.getJobId(), job.getTripId(), reason);
+        jobWorker.abort(job.getJobId());
+        jobStatusNotifier.publish(job);
+        Counter.builder("jobs.cancelled")
+                .description("Jobs cancelled before finishing, by reason")
+                .tag("reason", tag)
+                .register(meterRegistry)
+                .increment();
+        return true;
+    }
+}
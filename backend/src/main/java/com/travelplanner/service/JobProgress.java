@@ -0,0 +1,113 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Job Progress
+ *
+ * Records the progress of one attempt of an itinerary job on its row
+ * (phase, daysCompleted, totalDays, partialResult) and pushes it to status
+ * subscribers. partialResult holds the finished days in day order, so a
+ * client can render day 1 while later days are still being generated.
+ *
+ * Progress is best effort: a failed write is logged and the job carries on.
+ * Updates are serialized with a ReentrantLock rather than synchronized, so a
+ * virtual thread waiting on the row write parks instead of pinning its
+ * carrier. Each day is serialized once, when it arrives.
+ *
+ * Metrics: jobs.progress.first_day (time from the start of an attempt to its
+ * first finished day, tagged type).
+ */
+class JobProgress implements GenerationProgress {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobProgress.class);
+
+    private final Job job;
+    private final JobQueue jobQueue;
+    private final JobStatusNotifier jobStatusNotifier;
+    private final MeterRegistry meterRegistry;
+    private final long startNanos = System.nanoTime();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Finished days, already serialized, in day order
+    private final Map<Integer, String> days = new TreeMap<>();
+    private Job.Phase phase;
+    private Integer totalDays;
+
+    JobProgress(Job job, JobQueue jobQueue, JobStatusNotifier jobStatusNotifier, MeterRegistry meterRegistry) {
+        this.job = job;
+        this.jobQueue = jobQueue;
+        this.jobStatusNotifier = jobStatusNotifier;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void phase(Job.Phase phase) {
+        lock.lock();
+        try {
+            if (phase == this.phase) {
+                return;
+            }
+            this.phase = phase;
+            record();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void totalDays(int totalDays) {
+        lock.lock();
+        try {
+            this.totalDays = totalDays;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void dayCompleted(JsonNode day) {
+        int dayNumber = day.path("day").asInt(-1);
+        if (dayNumber < 1) {
+            return;
+        }
+        String serialized = day.toString();
+        lock.lock();
+        try {
+            if (days.putIfAbsent(dayNumber, serialized) != null) {
+                return;
+            }
+            if (days.size() == 1) {
+                Timer.builder("jobs.progress.first_day")
+                        .description("Time from the start of a job attempt to its first finished itinerary day")
+                        .tag("type", job.getJobType())
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+            record();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record() {
+        String partialResult = days.isEmpty() ? null : "[" + String.join(",", days.values()) + "]";
+        try {
+            if (jobQueue.progress(job, phase, days.size(), totalDays, partialResult)) {
+                jobStatusNotifier.publish(job);
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Failed to record progress of job {}: {}", job.getJobId(), e.getMessage());
+        }
+    }
+}
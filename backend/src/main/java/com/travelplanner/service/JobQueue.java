@@ -0,0 +1,259 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Itinerary;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Job Queue
+ *
+ * Queue operations on the jobs table. A job is enqueued by saving it as
+ * PENDING; workers on any node claim it, lease it and record its outcome here.
+ *
+ * Lease protocol:
+ * 1. claim() locks claimable rows with FOR UPDATE SKIP LOCKED, in the fair
+ *    order set by FairScheduler, and marks them PROCESSING, owned by the
+ *    worker until now + lease-seconds
+ * 2. The worker renews the lease while it works (heartbeat)
+ * 3. complete()/fail() only apply while the worker still owns the lease, so
+ *    a worker that stalled past its lease cannot overwrite a re-run's outcome
+ * 4. requeueExpired() returns jobs with an expired lease to PENDING; after
+ *    max-deliveries claims such a job is failed instead
+ *
+ * A failed attempt that RetryPolicy allows to be retried goes back to PENDING
+ * through retry(), with availableAt pushed out by the backoff delay.
+ *
+ * progress() records how far the running attempt has got; claiming a job
+ * resets its progress, so a retried job starts over from nothing.
+ *
+ * cancel() moves an unfinished job to CANCELLED and clears its lease, so a
+ * pending retry is never claimed and a running attempt's outcome is discarded.
+ *
+ * purgeFinished() deletes one batch of jobs that finished before a cutoff
+ * (see JobRetention).
+ */
+@Service
+public class JobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQueue.class);
+    private static final List<Job.JobStatus> ACTIVE = List.of(Job.JobStatus.PENDING, Job.JobStatus.PROCESSING);
+    private static final List<Job.JobStatus> FINISHED =
+            List.of(Job.JobStatus.COMPLETED, Job.JobStatus.FAILED, Job.JobStatus.CANCELLED);
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Value("${jobs.queue.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${jobs.queue.max-deliveries:3}")
+    private int maxDeliveries;
+
+    /**
+     * Claim up to limit queued jobs of the given types for workerId
+     *
+     * @return the claimed jobs, already PROCESSING and leased
+     */
+    @Transactional
+    public List<Job> claim(String workerId, Collection<String> jobTypes, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Job> jobs = jobRepository.findClaimable(Job.JobStatus.PENDING, jobTypes, now, PageRequest.of(0, limit));
+        for (Job job : jobs) {
+            job.setStatus(Job.JobStatus.PROCESSING);
+            job.setStartedAt(now);
+            job.setLeaseOwner(workerId);
+            job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+            job.setDeliveryCount(job.getDeliveryCount() == null ? 1 : job.getDeliveryCount() + 1);
+            job.setPhase(null);
+            job.setDaysCompleted(null);
+            job.setTotalDays(null);
+            job.setPartialResult(null);
+        }
+        if (!jobs.isEmpty()) {
+            jobRepository.saveAll(jobs);
+            logger.debug("Worker {} claimed {} job(s)", workerId, jobs.size());
+        }
+        return jobs;
+    }
+
+    /**
+     * Extend the lease on a claimed job
+     *
+     * @return false if the lease was lost (expired and re-queued, or finished elsewhere)
+     */
+    @Transactional
+    public boolean renew(Job job) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(leaseSeconds);
+        boolean renewed = jobRepository.renewLease(job.getJobId(), job.getLeaseOwner(),
+                Job.JobStatus.PROCESSING, expiresAt) == 1;
+        if (renewed) {
+            job.setLeaseExpiresAt(expiresAt);
+        }
+        return renewed;
+    }
+
+    /**
+     * Record the progress of a claimed job; job is updated to match the stored row
+     *
+     * @return false if the lease was lost
+     */
+    @Transactional
+    public boolean progress(Job job, Job.Phase phase, Integer daysCompleted, Integer totalDays, String partialResult) {
+        if (jobRepository.updateProgress(job.getJobId(), job.getLeaseOwner(), Job.JobStatus.PROCESSING,
+                phase, daysCompleted, totalDays, partialResult) != 1) {
+            return false;
+        }
+        job.setPhase(phase);
+        job.setDaysCompleted(daysCompleted);
+        job.setTotalDays(totalDays);
+        job.setPartialResult(partialResult);
+        return true;
+    }
+
+    /**
+     * Record success, referring to the itinerary produced; job is updated to match the stored row
+     *
+     * @return false if the lease was lost and the result discarded
+     */
+    @Transactional
+    public boolean complete(Job job, Itinerary itinerary) {
+        return finish(job, Job.JobStatus.COMPLETED, itinerary.getId(), itinerary.getVersion(), null);
+    }
+
+    /**
+     * Record failure; job is updated to match the stored row
+     *
+     * @return false if the lease was lost and the failure discarded
+     */
+    @Transactional
+    public boolean fail(Job job, String errorMessage) {
+        return finish(job, Job.JobStatus.FAILED, null, null, errorMessage);
+    }
+
+    private boolean finish(Job job, Job.JobStatus status, Long itineraryId, Long itineraryVersion,
+                           String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepository.finish(job.getJobId(), job.getLeaseOwner(), status,
+                itineraryId, itineraryVersion, errorMessage, job.getRetryCount(), now) != 1) {
+            return false;
+        }
+        job.setStatus(status);
+        job.setItineraryId(itineraryId);
+        job.setItineraryVersion(itineraryVersion);
+        job.setErrorMessage(errorMessage);
+        job.setCompletedAt(now);
+        job.setPartialResult(null);
+        return true;
+    }
+
+    /**
+     * Return a failed job to the queue for another attempt after delay, freeing the
+     * worker instead of sleeping on it; job is updated to match the stored row
+     *
+     * @return false if the lease was lost and the retry discarded
+     */
+    @Transactional
+    public boolean retry(Job job, Duration delay) {
+        LocalDateTime availableAt = LocalDateTime.now().plus(delay);
+        int retryCount = (job.getRetryCount() == null ? 0 : job.getRetryCount()) + 1;
+        if (jobRepository.scheduleRetry(job.getJobId(), job.getLeaseOwner(), availableAt, retryCount,
+                Job.JobStatus.PROCESSING, Job.JobStatus.PENDING) != 1) {
+            return false;
+        }
+        job.setStatus(Job.JobStatus.PENDING);
+        job.setAvailableAt(availableAt);
+        job.setRetryCount(retryCount);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        return true;
+    }
+
+    /**
+     * Cancel a job that is queued, waiting for a retry or running; job is
+     * updated to match the stored row
+     *
+     * @return false if the job had already finished
+     */
+    @Transactional
+    public boolean cancel(Job job, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobRepository.cancel(job.getJobId(), reason, now, ACTIVE, Job.JobStatus.CANCELLED) != 1) {
+            return false;
+        }
+        job.setStatus(Job.JobStatus.CANCELLED);
+        job.setErrorMessage(reason);
+        job.setCompletedAt(now);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        return true;
+    }
+
+    /**
+     * The jobs among jobIds that have been cancelled
+     */
+    public List<String> cancelledAmong(Collection<String> jobIds) {
+        return jobRepository.findStatusesByJobIdIn(jobIds).stream()
+                .filter(view -> view.getStatus() == Job.JobStatus.CANCELLED)
+                .map(JobRepository.JobStatusView::getJobId)
+                .toList();
+    }
+
+    /**
+     * Give a claimed job back to the queue (e.g. the worker could not start it)
+     */
+    @Transactional
+    public void release(Job job) {
+        jobRepository.release(job.getJobId(), job.getLeaseOwner(), LocalDateTime.now(),
+                Job.JobStatus.PROCESSING, Job.JobStatus.PENDING);
+    }
+
+    /**
+     * Give every job held by workerId back to the queue (worker shutdown)
+     */
+    @Transactional
+    public int releaseAll(String workerId) {
+        return jobRepository.releaseAll(workerId, LocalDateTime.now(), Job.JobStatus.PROCESSING, Job.JobStatus.PENDING);
+    }
+
+    /**
+     * Re-queue jobs whose worker stopped renewing its lease
+     */
+    @Transactional
+    public int requeueExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int failed = jobRepository.failExpired(now, maxDeliveries,
+                "Job abandoned by its worker " + maxDeliveries + " times",
+                Job.JobStatus.PROCESSING, Job.JobStatus.FAILED);
+        int requeued = jobRepository.requeueExpired(now, maxDeliveries, Job.JobStatus.PROCESSING, Job.JobStatus.PENDING);
+        if (requeued > 0 || failed > 0) {
+            logger.warn("Lease expired: re-queued {} job(s), failed {} job(s) out of deliveries", requeued, failed);
+        }
+        return requeued;
+    }
+
+    /**
+     * Delete up to batchSize jobs that finished (COMPLETED, FAILED or CANCELLED)
+     * before cutoff, oldest first
+     *
+     * @return the number of jobs deleted
+     */
+    @Transactional
+    public int purgeFinished(LocalDateTime cutoff, int batchSize) {
+        List<Long> ids = jobRepository.findPurgeable(FINISHED, cutoff, PageRequest.of(0, batchSize)).stream()
+                .map(Job::getId)
+                .toList();
+        return ids.isEmpty() ? 0 : jobRepository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,91 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job Retention
+ *
+ * Keeps the jobs table from growing without bound. Jobs that finished
+ * (COMPLETED, FAILED or CANCELLED) more than max-age-hours ago are deleted
+ * in batches of batch-size, each in its own short transaction, and at most
+ * max-batches per run, so a large backlog is worked off over several runs
+ * instead of in one long delete.
+ *
+ * Every node runs the purge. Each batch is locked with SKIP LOCKED, so nodes
+ * purging at the same time take disjoint batches rather than contending.
+ *
+ * Metrics: jobs.retention.rows_reclaimed (jobs deleted).
+ */
+@Component
+public class JobRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRetention.class);
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobs.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.retention.max-age-hours:168}")
+    private long maxAgeHours;
+
+    @Value("${jobs.retention.batch-size:500}")
+    private int batchSize;
+
+    @Value("${jobs.retention.max-batches:20}")
+    private int maxBatches;
+
+    private Counter rowsReclaimed;
+
+    @PostConstruct
+    void init() {
+        rowsReclaimed = Counter.builder("jobs.retention.rows_reclaimed")
+                .description("Finished jobs deleted by the retention purge")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Delete finished jobs older than the retention period
+     *
+     * @return the number of jobs deleted
+     */
+    @Scheduled(fixedDelayString = "${jobs.retention.interval-ms:600000}",
+            initialDelayString = "${jobs.retention.initial-delay-ms:60000}")
+    public int purge() {
+        if (!enabled) {
+            return 0;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(maxAgeHours);
+        int purged = 0;
+        try {
+            for (int batch = 0; batch < maxBatches; batch++) {
+                int deleted = jobQueue.purgeFinished(cutoff, batchSize);
+                purged += deleted;
+                if (deleted < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to purge finished jobs: {}", e.getMessage());
+        }
+        if (purged > 0) {
+            rowsReclaimed.increment(purged);
+            logger.info("Purged {} job(s) finished before {}", purged, cutoff);
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,258 @@
+package com.travelplanner.service;
+
+import com.travelplanner.dto.response.JobResponse;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Job Status Notifier
+ *
+ * Pushes job status transitions to subscribed clients so they don't have to
+ * poll GET /api/v1/jobs/{jobId}. Progress of a PROCESSING job (a new phase,
+ * another finished day) counts as a transition too.
+ *
+ * Transitions reach subscribers two ways:
+ * - published directly by the worker that made them (JobWorker on claim,
+ *   JobProgress on progress, AsyncItineraryService on completion or
+ *   failure, JobCancellation on cancellation), delivered at once when
+ *   the subscriber is connected to the same node
+ * - picked up by watch(), which reads the status of every job with a
+ *   subscriber on this node in one query, so transitions made on other
+ *   nodes arrive within watch-interval-ms
+ *
+ * Each subscription remembers the last state delivered to it, starting from
+ * the state its subscriber read, so a subscriber that joins with an older
+ * state than the others still gets every transition it has not seen.
+ *
+ * An idle subscription costs a map entry; SSE connections hold no thread.
+ */
+@Service
+public class JobStatusNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusNotifier.class);
+
+    @Autowired
+    private JobRepository jobRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobs.events.stream-timeout-ms:600000}")
+    private long streamTimeoutMs;
+
+    // jobId -> subscriptions waiting for its next transitions
+    private final Map<String, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final Set<SseEmitter> streams = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("jobs.events.subscribers", subscribers, Map::size)
+                .description("Jobs with at least one status subscriber on this node")
+                .register(meterRegistry);
+        Gauge.builder("jobs.events.streams", streams, Set::size)
+                .description("Open job status SSE connections on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Listen for transitions of a job away from the status current
+     *
+     * @return call to unsubscribe
+     */
+    public Runnable subscribe(String jobId, Job.JobStatus current, Consumer<JobResponse> listener) {
+        return subscribe(jobId, state(current, null, null), listener);
+    }
+
+    /**
+     * Listen for transitions of a job away from currentState, as given by state()
+     *
+     * @return call to unsubscribe
+     */
+    public Runnable subscribe(String jobId, String currentState, Consumer<JobResponse> listener) {
+        Subscription subscription = new Subscription(listener, currentState);
+        subscribers.computeIfAbsent(jobId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        return () -> subscribers.computeIfPresent(jobId, (id, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    /**
+     * Deliver a job's new state to its subscribers on this node
+     */
+    public void publish(Job job) {
+        publish(JobResponse.from(job));
+    }
+
+    private void publish(JobResponse event) {
+        Set<Subscription> subscriptions = subscribers.get(event.getJobId());
+        if (subscriptions == null) {
+            return;
+        }
+        String state = state(event);
+        for (Subscription subscription : subscriptions) {
+            if (state.equals(subscription.delivered.getAndSet(state))) {
+                // Already delivered, e.g. by watch() before the worker's own publish
+                continue;
+            }
+            try {
+                subscription.listener.accept(event);
+            } catch (RuntimeException e) {
+                logger.debug("Job status listener for {} failed: {}", event.getJobId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Open an SSE stream of a job's status
+     *
+     * Sends a "status" event with the current state right away and one per
+     * transition; the stream completes after the COMPLETED, FAILED or
+     * CANCELLED event, which carries the itinerary reference or error message.
+     */
+    public SseEmitter stream(Job job) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        if (!send(emitter, JobResponse.from(job))) {
+            return emitter;
+        }
+        if (isTerminal(job.getStatus())) {
+            emitter.complete();
+            return emitter;
+        }
+
+        Runnable unsubscribe = subscribe(job.getJobId(), state(job.getStatus(), job.getPhase(), job.getDaysCompleted()), event -> {
+            if (send(emitter, event) && isTerminal(Job.JobStatus.valueOf(event.getStatus()))) {
+                emitter.complete();
+            }
+        });
+        streams.add(emitter);
+        Runnable cleanup = () -> {
+            unsubscribe.run();
+            streams.remove(emitter);
+        };
+        emitter.onCompletion(cleanup);
+        emitter.onTimeout(cleanup);
+        emitter.onError(error -> cleanup.run());
+        return emitter;
+    }
+
+    /**
+     * Catch transitions made on other nodes (and re-queues, which nobody publishes)
+     */
+    @Scheduled(fixedDelayString = "${jobs.events.watch-interval-ms:1000}")
+    public void watch() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        try {
+            for (JobRepository.JobStatusView view : jobRepository.findStatusesByJobIdIn(subscribers.keySet())) {
+                if (!anyBehind(view.getJobId(), state(view.getStatus(), view.getPhase(), view.getDaysCompleted()))) {
+                    continue;
+                }
+                boolean hasDays = view.getStatus() == Job.JobStatus.PROCESSING
+                        && view.getDaysCompleted() != null && view.getDaysCompleted() > 0;
+                if (isTerminal(view.getStatus()) || hasDays) {
+                    // Only terminal events carry the itinerary reference or error, and only
+                    // day progress the partial days, so only they need the full row
+                    jobRepository.findByJobId(view.getJobId()).ifPresent(this::publish);
+                } else {
+                    JobResponse event = new JobResponse(view.getJobId(), view.getStatus().toString(), null, null, null, null);
+                    if (view.getStatus() == Job.JobStatus.PROCESSING && view.getPhase() != null) {
+                        event.setPhase(view.getPhase().toString());
+                    }
+                    publish(event);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to check status of watched jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Keep idle SSE connections from being closed by proxies
+     */
+    @Scheduled(fixedDelayString = "${jobs.events.keep-alive-ms:25000}")
+    public void keepAlive() {
+        for (SseEmitter emitter : streams) {
+            try {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } catch (IOException | IllegalStateException e) {
+                streams.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Whether any subscriber of the job has not yet been sent state
+     */
+    private boolean anyBehind(String jobId, String state) {
+        Set<Subscription> subscriptions = subscribers.get(jobId);
+        return subscriptions != null
+                && subscriptions.stream().anyMatch(subscription -> !state.equals(subscription.delivered.get()));
+    }
+
+    private boolean send(SseEmitter emitter, JobResponse event) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(event));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * What a subscriber has seen of a job: its status and, while it is
+     * PROCESSING, its phase and finished days. Also the job's ETag value.
+     */
+    public static String state(Job.JobStatus status, Job.Phase phase, Integer daysCompleted) {
+        if (status != Job.JobStatus.PROCESSING || phase == null) {
+            return status.name();
+        }
+        return status.name() + "-" + phase.name() + "-" + (daysCompleted == null ? 0 : daysCompleted);
+    }
+
+    public static String state(JobResponse event) {
+        return state(Job.JobStatus.valueOf(event.getStatus()),
+                event.getPhase() == null ? null : Job.Phase.valueOf(event.getPhase()),
+                event.getDaysCompleted());
+    }
+
+    public static boolean isTerminal(Job.JobStatus status) {
+        return status == Job.JobStatus.COMPLETED || status == Job.JobStatus.FAILED
+                || status == Job.JobStatus.CANCELLED;
+    }
+
+    /**
+     * One listener and the last state (see state()) delivered to it
+     */
+    private static final class Subscription {
+
+        private final Consumer<JobResponse> listener;
+        private final AtomicReference<String> delivered;
+
+        private Subscription(Consumer<JobResponse> listener, String currentState) {
+            this.listener = listener;
+            this.delivered = new AtomicReference<>(currentState);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job Worker
+ *
+ * Consumes the job queue on this node. Every node runs a worker; they
+ * coordinate only through the jobs table, so adding nodes adds capacity.
+ *
+ * - poll: for each bulkhead, claims as many jobs of its types as it has free
+ *   slots and runs each on that bulkhead via AsyncItineraryService.process
+ *   (generation and regeneration on the generationExecutor, adaptation on the
+ *   adaptationExecutor), so a backlog of one kind never occupies the other's slots
+ * - heartbeat: renews the lease of every running job; a job whose lease was
+ *   lost is interrupted, since another worker may already be re-running it
+ * - reap: re-queues jobs whose worker died without finishing them
+ * - checkCancelled: interrupts running jobs that were cancelled (see JobCancellation)
+ *
+ * On shutdown running jobs get shutdown-grace-seconds to finish; the rest are
+ * released back to the queue for another node.
+ */
+@Component
+public class JobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobWorker.class);
+
+    /**
+     * An executor and the job types it runs; its concurrency is its slot count
+     */
+    private record Bulkhead(String name, List<String> jobTypes, BulkheadExecutor executor) {
+    }
+
+    private record RunningJob(Job job, Bulkhead bulkhead, FutureTask<Void> task) {
+    }
+
+    private final String workerId = workerId();
+    private final Map<String, RunningJob> running = new ConcurrentHashMap<>();
+    // Moving average of job run time per bulkhead name (ms), for admission estimates
+    private final Map<String, Long> averageRunMillis = new ConcurrentHashMap<>();
+    private volatile boolean stopping;
+    private List<Bulkhead> bulkheads;
+
+    @Autowired
+    private JobQueue jobQueue;
+
+    @Autowired
+    private AsyncItineraryService asyncItineraryService;
+
+    @Autowired
+    private JobStatusNotifier jobStatusNotifier;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("generationExecutor")
+    private BulkheadExecutor generationExecutor;
+
+    @Autowired
+    @Qualifier("adaptationExecutor")
+    private BulkheadExecutor adaptationExecutor;
+
+    @Value("${jobs.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.worker.shutdown-grace-seconds:30}")
+    private long shutdownGraceSeconds;
+
+    @PostConstruct
+    void init() {
+        bulkheads = List.of(
+                new Bulkhead("generation", List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION"), generationExecutor),
+                new Bulkhead("adaptation", List.of("ITINERARY_ADAPTATION"), adaptationExecutor));
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.worker.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled || stopping) {
+            return;
+        }
+        for (Bulkhead bulkhead : bulkheads) {
+            poll(bulkhead);
+        }
+    }
+
+    private void poll(Bulkhead bulkhead) {
+        // Streamed generations occupy generation slots without being jobs of this worker
+        BulkheadExecutor executor = bulkhead.executor();
+        int busy = Math.max(runningCount(bulkhead), executor.getActiveCount() + executor.getQueuedCount());
+        int free = executor.getConcurrency() - busy;
+        if (free <= 0) {
+            return;
+        }
+        List<Job> claimed;
+        try {
+            claimed = jobQueue.claim(workerId, bulkhead.jobTypes(), free);
+        } catch (RuntimeException e) {
+            logger.warn("Worker {} failed to poll the {} queue: {}", workerId, bulkhead.name(), e.getMessage());
+            return;
+        }
+        for (Job job : claimed) {
+            recordQueueWait(job, bulkhead);
+            jobStatusNotifier.publish(job);
+            start(job, bulkhead);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.worker.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        for (RunningJob runningJob : running.values()) {
+            try {
+                if (!jobQueue.renew(runningJob.job())) {
+                    logger.warn("Worker {} lost the lease on job {}; abandoning it", workerId, runningJob.job().getJobId());
+                    runningJob.task().cancel(true);
+                    running.remove(runningJob.job().getJobId(), runningJob);
+                }
+            } catch (RuntimeException e) {
+                // Keep working; the lease has headroom for a missed heartbeat
+                logger.warn("Worker {} failed to renew lease on job {}: {}", workerId, runningJob.job().getJobId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Abort running jobs cancelled through another node; cancellations made on
+     * this node abort at once through abort()
+     */
+    @Scheduled(fixedDelayString = "${jobs.worker.cancel-check-interval-ms:2000}")
+    public void checkCancelled() {
+        if (running.isEmpty()) {
+            return;
+        }
+        try {
+            jobQueue.cancelledAmong(List.copyOf(running.keySet())).forEach(this::abort);
+        } catch (RuntimeException e) {
+            logger.warn("Worker {} failed to check for cancelled jobs: {}", workerId, e.getMessage());
+        }
+    }
+
+    /**
+     * Interrupt a cancelled job if it is running here, aborting its in-flight
+     * Gemini call and freeing its slot
+     *
+     * @return false if the job is not running on this node
+     */
+    public boolean abort(String jobId) {
+        RunningJob runningJob = running.remove(jobId);
+        if (runningJob == null) {
+            return false;
+        }
+        logger.info("Worker {} aborting cancelled job {}", workerId, jobId);
+        runningJob.task().cancel(true);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.queue.reaper-interval-ms:30000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jobQueue.requeueExpired();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to re-queue expired jobs: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stopping = true;
+        bulkheads.forEach(bulkhead -> bulkhead.executor().shutdown());
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(shutdownGraceSeconds);
+            boolean finished = true;
+            for (Bulkhead bulkhead : bulkheads) {
+                finished &= bulkhead.executor()
+                        .awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            if (!finished) {
+                // Release first so the interrupted jobs can no longer record a failure
+                int released = jobQueue.releaseAll(workerId);
+                logger.info("Worker {} released {} unfinished job(s) back to the queue", workerId, released);
+                running.values().forEach(runningJob -> runningJob.task().cancel(true));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int runningCount() {
+        return running.size();
+    }
+
+    private int runningCount(Bulkhead bulkhead) {
+        return (int) running.values().stream().filter(runningJob -> runningJob.bulkhead() == bulkhead).count();
+    }
+
+    String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Job types that share a bulkhead (and so a backlog) with jobType
+     */
+    public List<String> bulkheadJobTypes(String jobType) {
+        return bulkhead(jobType).jobTypes();
+    }
+
+    /**
+     * Jobs of jobType's bulkhead this node runs at once
+     */
+    public int slots(String jobType) {
+        return bulkhead(jobType).executor().getConcurrency();
+    }
+
+    /**
+     * Recent average run time of jobs in jobType's bulkhead, if any have finished on this node
+     */
+    public Optional<Duration> averageRunTime(String jobType) {
+        return Optional.ofNullable(averageRunMillis.get(bulkhead(jobType).name())).map(Duration::ofMillis);
+    }
+
+    private Bulkhead bulkhead(String jobType) {
+        return bulkheads.stream()
+                .filter(bulkhead -> bulkhead.jobTypes().contains(jobType))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown job type: " + jobType));
+    }
+
+    private void start(Job job, Bulkhead bulkhead) {
+        FutureTask<Void> task = new FutureTask<>(() -> run(job, bulkhead), null);
+        running.put(job.getJobId(), new RunningJob(job, bulkhead, task));
+        try {
+            bulkhead.executor().execute(task);
+        } catch (TaskRejectedException e) {
+            running.remove(job.getJobId());
+            logger.warn("Worker {} could not start job {} on the {} bulkhead; releasing it",
+                    workerId, job.getJobId(), bulkhead.name());
+            jobQueue.release(job);
+        }
+    }
+
+    /**
+     * Time the job spent queued in the jobs table; the bulkhead executors have
+     * no queue of their own, so this is where generation and adaptation wait
+     */
+    private void recordQueueWait(Job job, Bulkhead bulkhead) {
+        if (job.getAvailableAt() == null || job.getStartedAt() == null) {
+            return;
+        }
+        Timer.builder("jobs.queue.wait")
+                .description("Time from a job becoming available to being claimed")
+                .tag("bulkhead", bulkhead.name())
+                .tag("priority", job.getPriority() != null ? job.getPriority().name() : "NONE")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(Duration.between(job.getAvailableAt(), job.getStartedAt()));
+    }
+
+    private void run(Job job, Bulkhead bulkhead) {
+        long start = System.nanoTime();
+        try {
+            asyncItineraryService.process(job);
+            recordRunTime(bulkhead, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            logger.error("Job {} threw outside of its own error handling: {}", job.getJobId(), e.getMessage(), e);
+        } finally {
+            // The same job may have been re-claimed by this worker after a lost lease
+            running.computeIfPresent(job.getJobId(), (jobId, runningJob) -> runningJob.job() == job ? null : runningJob);
+        }
+    }
+
+    private void recordRunTime(Bulkhead bulkhead, long millis) {
+        averageRunMillis.merge(bulkhead.name(), millis, (average, sample) -> Math.round(average * 0.8 + sample * 0.2));
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "worker";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
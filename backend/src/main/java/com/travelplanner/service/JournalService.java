@@ -8,20 +8,21 @@ import com.travelplanner.model.Trip;
 import com.travelplanner.repository.JournalEntryRepository;
 import com.travelplanner.repository.PhotoRepository;
 import com.travelplanner.repository.TripRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
-import java.util.Base64;
 
 @Service
 public class JournalService {
 
+    private static final Logger logger = LoggerFactory.getLogger(JournalService.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     @Autowired
     private JournalEntryRepository journalEntryRepository;
 
@@ -34,6 +35,9 @@ public class JournalService {
     @Autowired
     private GeminiService geminiService;
 
+    @Autowired
+    private PhotoDerivativeService photoDerivativeService;
+
     @Transactional
     public JournalEntry saveJournal(Long tripId, JournalEntry journalData, Long userId) {
         Trip trip = tripRepository.findById(tripId)
@@ -100,17 +104,16 @@ public class JournalService {
         );
 
         // Prepare request with photos
-        Map<String, Object> requestBody = createGeminiRequestWithPhotos(prompt, photos);
+        GeminiImageRequest imageRequest = createGeminiRequestWithPhotos(prompt, photos);
         
         // Call Gemini API
-        String response = geminiService.callGeminiWithImages(requestBody);
+        String response = geminiService.callGeminiWithImages(imageRequest);
         
         // Parse response
         String journalJson = extractJsonFromGeminiResponse(response);
         
         // Validate JSON structure
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode journalNode = mapper.readTree(journalJson);
+        JsonNode journalNode = objectMapper.readTree(journalJson);
         
         if (!journalNode.has("title") || !journalNode.has("summary") || !journalNode.has("entries")) {
             throw new RuntimeException("Generated journal has invalid format. Please try again.");
@@ -129,46 +132,17 @@ public class JournalService {
         return journalEntryRepository.save(journal);
     }
 
-    private Map<String, Object> createGeminiRequestWithPhotos(String prompt, List<Photo> photos) throws IOException {
-        List<Map<String, Object>> parts = new ArrayList<>();
-        
-        // Add text prompt
-        Map<String, Object> textPart = new HashMap<>();
-        textPart.put("text", prompt);
-        parts.add(textPart);
-        
-        // Add image parts
-        for (Photo photo : photos) {
-            try {
-                Path filePath = Paths.get(photo.getFilePath());
-                byte[] imageBytes = Files.readAllBytes(filePath);
-                String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-                
-                Map<String, Object> inlineData = new HashMap<>();
-                inlineData.put("mimeType", photo.getMimeType());
-                inlineData.put("data", base64Image);
-                
-                Map<String, Object> imagePart = new HashMap<>();
-                imagePart.put("inlineData", inlineData);
-                parts.add(imagePart);
-            } catch (IOException e) {
-                // Log the error but continue with other photos
-                System.err.println("Failed to process photo: " + photo.getOriginalName());
-            }
-        }
-        
-        Map<String, Object> content = new HashMap<>();
-        content.put("parts", parts);
-        
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("contents", Collections.singletonList(content));
-        
-        return requestBody;
+    /**
+     * Describe the request; photos are downscaled (or reused from the derivative
+     * cache) and their bytes streamed and Base64-encoded by the transport when the
+     * request is sent, not loaded here.
+     */
+    private GeminiImageRequest createGeminiRequestWithPhotos(String prompt, List<Photo> photos) {
+        return new GeminiImageRequest(prompt, photoDerivativeService.prepare(photos));
     }
 
     private String extractJsonFromGeminiResponse(String response) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode responseNode = mapper.readTree(response);
+        JsonNode responseNode = objectMapper.readTree(response);
         
         if (!responseNode.has("candidates") || responseNode.get("candidates").isEmpty()) {
             throw new RuntimeException("Invalid response from AI service. Please try again.");
@@ -0,0 +1,332 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Photo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Photo Derivative Service
+ *
+ * Produces the downscaled copies of trip photos that are sent to Gemini for
+ * journal generation. The model gains nothing from 12 MP originals, while
+ * upload time and request size grow with them.
+ *
+ * For each photo:
+ * 1. Reuse {original}.gemini-{maxDimension}.jpg if it exists and is newer than the original
+ * 2. Otherwise decode with ImageIO, subsampling during decode so a large photo is
+ *    never fully materialized, turn it upright per its EXIF Orientation tag
+ *    (the derivative carries no metadata, and phone photos are usually stored
+ *    sideways), scale the long edge to maxDimension and re-encode as JPEG at
+ *    the configured quality
+ * 3. Originals that are already small JPEGs, or that ImageIO cannot decode
+ *    (e.g. HEIC), are sent as-is
+ *
+ * Photos are processed in parallel on the imageExecutor (one thread per core by default).
+ */
+@Service
+public class PhotoDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhotoDerivativeService.class);
+    private static final String DERIVATIVE_MIME_TYPE = "image/jpeg";
+    private static final int ORIENTATION_NORMAL = 1;
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    @Qualifier("imageExecutor")
+    private Executor imageExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${journal.images.downscale.enabled:true}")
+    private boolean enabled;
+
+    // Longest edge of a derivative, in pixels
+    @Value("${journal.images.max-dimension:1536}")
+    private int maxDimension;
+
+    @Value("${journal.images.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    /**
+     * Resolve the image to send for each photo, creating derivatives as needed
+     *
+     * @return one image per readable photo, in the order given
+     */
+    public List<GeminiImageRequest.ImagePart> prepare(List<Photo> photos) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        List<CompletableFuture<Optional<GeminiImageRequest.ImagePart>>> futures = photos.stream()
+                .map(photo -> CompletableFuture.supplyAsync(() -> imageFor(photo), imageExecutor))
+                .toList();
+        List<GeminiImageRequest.ImagePart> images = futures.stream()
+                .map(CompletableFuture::join)
+                .flatMap(Optional::stream)
+                .toList();
+        sample.stop(meterRegistry.timer("journal.images.prepare"));
+        return images;
+    }
+
+    /**
+     * Remove cached derivatives of a photo (called when the photo is deleted)
+     */
+    public void deleteDerivatives(Photo photo) {
+        Path original = Paths.get(photo.getFilePath());
+        Path directory = original.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> derivatives = Files.newDirectoryStream(directory,
+                original.getFileName() + ".gemini-*.jpg")) {
+            for (Path derivative : derivatives) {
+                Files.deleteIfExists(derivative);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete derivatives of {}: {}", original, e.getMessage());
+        }
+    }
+
+    private Optional<GeminiImageRequest.ImagePart> imageFor(Photo photo) {
+        Path original = Paths.get(photo.getFilePath());
+        if (!Files.isReadable(original)) {
+            logger.warn("Failed to process photo: {}", photo.getOriginalName());
+            return Optional.empty();
+        }
+        GeminiImageRequest.ImagePart originalPart = new GeminiImageRequest.ImagePart(original, photo.getMimeType());
+        if (!enabled) {
+            return Optional.of(originalPart);
+        }
+
+        Path derivative = derivativePath(original);
+        try {
+            if (Files.exists(derivative)
+                    && Files.getLastModifiedTime(derivative).compareTo(Files.getLastModifiedTime(original)) >= 0) {
+                count("hit");
+                return Optional.of(new GeminiImageRequest.ImagePart(derivative, DERIVATIVE_MIME_TYPE));
+            }
+            if (createDerivative(original, derivative)) {
+                count("created");
+                return Optional.of(new GeminiImageRequest.ImagePart(derivative, DERIVATIVE_MIME_TYPE));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not downscale photo {}, sending original: {}", photo.getOriginalName(), e.getMessage());
+        }
+        count("original");
+        return Optional.of(originalPart);
+    }
+
+    Path derivativePath(Path original) {
+        return original.resolveSibling(original.getFileName() + ".gemini-" + maxDimension + ".jpg");
+    }
+
+    /**
+     * @return false if the original should be sent unchanged
+     */
+    private boolean createDerivative(Path original, Path derivative) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            if (input == null) {
+                return false;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                if (longEdge <= maxDimension && "jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                    return false;
+                }
+
+                // Decode at no less than the target size, skipping pixels we would discard anyway
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, longEdge / maxDimension);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                int orientation = "jpeg".equalsIgnoreCase(reader.getFormatName())
+                        ? readOrientation(original) : ORIENTATION_NORMAL;
+
+                writeJpeg(scale(decoded, orientation), derivative);
+                return true;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale to maxDimension and turn upright in one pass
+     */
+    private BufferedImage scale(BufferedImage source, int orientation) {
+        // Orientations 5-8 swap width and height
+        boolean transposed = orientation >= 5 && orientation <= 8;
+        int uprightWidth = transposed ? source.getHeight() : source.getWidth();
+        int uprightHeight = transposed ? source.getWidth() : source.getHeight();
+        int longEdge = Math.max(uprightWidth, uprightHeight);
+        double ratio = longEdge > maxDimension ? (double) maxDimension / longEdge : 1.0;
+        int width = Math.max(1, (int) Math.round(uprightWidth * ratio));
+        int height = Math.max(1, (int) Math.round(uprightHeight * ratio));
+
+        // JPEG has no alpha: flatten transparency onto white
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.scale((double) width / uprightWidth, (double) height / uprightHeight);
+            graphics.drawImage(source, uprightTransform(orientation, source.getWidth(), source.getHeight()), null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Maps the stored image onto its upright orientation (EXIF values 1-8)
+     */
+    private static AffineTransform uprightTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);        // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);  // rotated 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);       // mirrored vertically
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);             // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);       // needs 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);  // transversed
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);        // needs 90 counter-clockwise
+            default -> new AffineTransform();
+        };
+    }
+
+    /**
+     * Read the EXIF Orientation tag of a JPEG, scanning its header segments
+     *
+     * @return 1-8, or 1 (upright) if there is no usable tag
+     */
+    static int readOrientation(Path jpeg) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(jpeg)))) {
+            if (input.readUnsignedShort() != 0xFFD8) {
+                return ORIENTATION_NORMAL;
+            }
+            while (true) {
+                int marker = input.readUnsignedShort();
+                // Image data starts at SOS; EXIF never comes after it
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return ORIENTATION_NORMAL;
+                }
+                int length = input.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return ORIENTATION_NORMAL;
+                }
+                if (marker == 0xFFE1) {
+                    byte[] segment = input.readNBytes(length);
+                    if (segment.length >= EXIF_HEADER.length
+                            && Arrays.equals(segment, 0, EXIF_HEADER.length, EXIF_HEADER, 0, EXIF_HEADER.length)) {
+                        return orientation(ByteBuffer.wrap(segment, EXIF_HEADER.length, segment.length - EXIF_HEADER.length).slice());
+                    }
+                } else {
+                    input.skipNBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Find the Orientation entry in IFD0 of a TIFF-structured EXIF block
+     */
+    private static int orientation(ByteBuffer tiff) {
+        try {
+            tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            int ifd = tiff.getInt(4);
+            int entries = Short.toUnsignedInt(tiff.getShort(ifd));
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if (Short.toUnsignedInt(tiff.getShort(entry)) == ORIENTATION_TAG) {
+                    int orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                    return orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF
+        }
+        return ORIENTATION_NORMAL;
+    }
+
+    /**
+     * Write to a temp file and move it into place so concurrent generations never
+     * read a half-written derivative
+     */
+    private void writeJpeg(BufferedImage image, Path derivative) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        Path temp = Files.createTempFile(derivative.toAbsolutePath().getParent(), derivative.getFileName().toString(), ".tmp");
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            try {
+                Files.move(temp, derivative, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, derivative, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder("journal.images.derivatives")
+                .description("Photos prepared for Gemini, by outcome (hit, created, original)")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -29,6 +29,9 @@ public class PhotoService {
     @Autowired
     private TripRepository tripRepository;
 
+    @Autowired
+    private PhotoDerivativeService photoDerivativeService;
+
     @Value("${app.photo.upload.dir:./uploads/photos}")
     private String uploadDir;
 
@@ -99,6 +102,7 @@ public class PhotoService {
             // Log the error but don't fail the deletion
             System.err.println("Failed to delete file: " + photo.getFilePath());
         }
+        photoDerivativeService.deleteDerivatives(photo);
         
         // Delete from database
         photoRepository.delete(photo);
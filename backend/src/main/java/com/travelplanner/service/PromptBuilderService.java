@@ -6,6 +6,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * Prompt Builder Service
  * 
@@ -24,6 +27,40 @@ public class PromptBuilderService {
 
     private static final Logger logger = LoggerFactory.getLogger(PromptBuilderService.class);
 
+    // JSON structure of a single itinerary day, shared by full and day-range prompts
+    private static final String DAY_SCHEMA =
+        "    {\n" +
+        "      \"day\": 1,\n" +
+        "      \"date\": \"2025-XX-XX\",\n" +
+        "      \"theme\": \"Descriptive day theme\",\n" +
+        "      \"daily_overview\": \"Detailed overview of what this day covers\",\n" +
+        "      \"activities\": [\n" +
+        "        {\n" +
+        "          \"time_of_day\": \"Morning (9:00-12:00)\",\n" +
+        "          \"travel_details\": \"From hotel, take taxi (20 min, approx. ₹200-300)\",\n" +
+        "          \"description\": \"Comprehensive activity description with cultural context and insider information\",\n" +
+        "          \"location_address\": \"Complete address with postal code and landmarks\",\n" +
+        "          \"estimated_cost\": \"₹XXX per person for specific items\",\n" +
+        "          \"booking_info\": \"How to book, advance requirements, contact details\",\n" +
+        "          \"alternative_option\": \"Alternative activity or venue if main one is unavailable\"\n" +
+        "        }\n" +
+        "      ],\n" +
+        "      \"food_suggestions\": {\n" +
+        "        \"lunch\": {\n" +
+        "          \"recommendation\": \"Restaurant name, location\",\n" +
+        "          \"notes\": \"Description with specialties, dietary options, ratings\"\n" +
+        "        },\n" +
+        "        \"dinner\": {\n" +
+        "          \"recommendation\": \"Restaurant name, location\",\n" +
+        "          \"notes\": \"Description with specialties, dietary options, ratings\"\n" +
+        "        }\n" +
+        "      },\n" +
+        "      \"practical_tips\": {\n" +
+        "        \"transport_tip\": \"Best transportation options for this day\",\n" +
+        "        \"cultural_etiquette\": \"Important cultural considerations and etiquette tips\"\n" +
+        "      }\n" +
+        "    }\n";
+
     /**
      * Build a complete itinerary generation prompt
      */
@@ -54,6 +91,75 @@ public class PromptBuilderService {
         return finalPrompt;
     }
 
+    /**
+     * Build the outline prompt for fan-out generation of long trips
+     *
+     * Asks only for the trip-level sections and a one-line theme per day. The
+     * outline is shared with every day-range prompt so the ranges stay coherent.
+     */
+    public String buildTripOutlinePrompt(ItineraryPrompt prompt) {
+        StringBuilder promptBuilder = new StringBuilder();
+        promptBuilder.append(buildSystemContext(prompt));
+        promptBuilder.append(buildTravelPreferences(prompt));
+        promptBuilder.append(buildBudgetSection(prompt));
+        promptBuilder.append(buildAccommodationAndFood(prompt));
+        promptBuilder.append(buildSpecialRequirements(prompt));
+        promptBuilder.append(
+            "First produce only the trip OUTLINE: decide which area or highlight each day covers, " +
+            "keeping travel between days logical and avoiding repeated attractions.\n\n" +
+            "OUTPUT FORMAT: Return ONLY a clean JSON object with this exact structure:\n" +
+            "{\n" +
+            "  \"trip_summary\": \"Detailed 3-4 sentence description of the entire trip with highlights\",\n" +
+            "  \"overall_budget_breakdown\": {\n" +
+            "    \"accommodation_estimate\": \"₹XX,XXX for X nights (description)\",\n" +
+            "    \"food_estimate\": \"₹XX,XXX for X travelers (description)\",\n" +
+            "    \"activities_estimate\": \"₹XX,XXX covering all activities (description)\"\n" +
+            "  },\n" +
+            "  \"day_themes\": [\n" +
+            "    { \"day\": 1, \"theme\": \"Descriptive day theme and area covered\" }\n" +
+            "  ],\n" +
+            "  \"essential_travel_tips\": [\"Tip 1\", \"Tip 2\", \"Tip 3\", \"Tip 4\", \"Tip 5\"]\n" +
+            "}\n\n" +
+            "NO markdown, NO backticks, NO extra text - ONLY the JSON object.");
+        return promptBuilder.toString();
+    }
+
+    /**
+     * Build the prompt for one day range of a fan-out generation
+     *
+     * @param outlineJson the trip outline (summary and per-day themes) shared by all ranges
+     * @param fromDay     first day number of the range (1-based, inclusive)
+     * @param toDay       last day number of the range (inclusive)
+     */
+    public String buildDayRangePrompt(ItineraryPrompt prompt, String outlineJson, int fromDay, int toDay) {
+        StringBuilder promptBuilder = new StringBuilder();
+        promptBuilder.append(buildSystemContext(prompt));
+        promptBuilder.append(buildTravelPreferences(prompt));
+        promptBuilder.append(buildBudgetSection(prompt));
+        promptBuilder.append(buildAccommodationAndFood(prompt));
+        promptBuilder.append(buildSpecialRequirements(prompt));
+        promptBuilder.append(String.format(
+            "The trip outline has already been planned: %s. " +
+            "Plan ONLY days %d to %d (%s to %s) in full detail, following the outline's themes for those days " +
+            "and not repeating attractions assigned to other days.\n\n",
+            outlineJson,
+            fromDay,
+            toDay,
+            prompt.getStartDate().plusDays(fromDay - 1L),
+            prompt.getStartDate().plusDays(toDay - 1L)
+        ));
+        promptBuilder.append(
+            "REQUIREMENTS:\n" +
+            "• Include EXACT names, addresses, and timing for all locations\n" +
+            "• Include meal recommendations with specific restaurant names\n" +
+            "• Add estimated costs and booking requirements where relevant\n\n" +
+            "OUTPUT FORMAT: Return ONLY a clean JSON object of the form {\"itinerary\": [...]} " +
+            "with one entry per requested day, each with this exact structure and its real day number:\n" +
+            DAY_SCHEMA + "\n" +
+            "NO markdown, NO backticks, NO extra text - ONLY the JSON object.");
+        return promptBuilder.toString();
+    }
+
     /**
      * Build system context and role definition
      */
@@ -187,37 +293,7 @@ public class PromptBuilderService {
             "    \"activities_estimate\": \"₹XX,XXX covering all activities (description)\"\n" +
             "  },\n" +
             "  \"itinerary\": [\n" +
-            "    {\n" +
-            "      \"day\": 1,\n" +
-            "      \"date\": \"2025-XX-XX\",\n" +
-            "      \"theme\": \"Descriptive day theme\",\n" +
-            "      \"daily_overview\": \"Detailed overview of what this day covers\",\n" +
-            "      \"activities\": [\n" +
-            "        {\n" +
-            "          \"time_of_day\": \"Morning (9:00-12:00)\",\n" +
-            "          \"travel_details\": \"From hotel, take taxi (20 min, approx. ₹200-300)\",\n" +
-            "          \"description\": \"Comprehensive activity description with cultural context and insider information\",\n" +
-            "          \"location_address\": \"Complete address with postal code and landmarks\",\n" +
-            "          \"estimated_cost\": \"₹XXX per person for specific items\",\n" +
-            "          \"booking_info\": \"How to book, advance requirements, contact details\",\n" +
-            "          \"alternative_option\": \"Alternative activity or venue if main one is unavailable\"\n" +
-            "        }\n" +
-            "      ],\n" +
-            "      \"food_suggestions\": {\n" +
-            "        \"lunch\": {\n" +
-            "          \"recommendation\": \"Restaurant name, location\",\n" +
-            "          \"notes\": \"Description with specialties, dietary options, ratings\"\n" +
-            "        },\n" +
-            "        \"dinner\": {\n" +
-            "          \"recommendation\": \"Restaurant name, location\",\n" +
-            "          \"notes\": \"Description with specialties, dietary options, ratings\"\n" +
-            "        }\n" +
-            "      },\n" +
-            "      \"practical_tips\": {\n" +
-            "        \"transport_tip\": \"Best transportation options for this day\",\n" +
-            "        \"cultural_etiquette\": \"Important cultural considerations and etiquette tips\"\n" +
-            "      }\n" +
-            "    }\n" +
+            DAY_SCHEMA +
             "  ],\n" +
             "  \"essential_travel_tips\": [\n" +
             "    \"Pack comfortable walking shoes and weather-appropriate clothing\",\n" +
@@ -244,6 +320,30 @@ public class PromptBuilderService {
         );
     }
 
+    /**
+     * Build adaptation prompt scoped to a subset of days
+     *
+     * Sends only the affected days plus a compact outline of the rest of the trip,
+     * so prompt and response size scale with the change rather than the trip length.
+     */
+    public String buildDayAdaptationPrompt(String tripOutline, String affectedDaysJson,
+                                           List<Integer> dayNumbers, String adaptationContext) {
+        return String.format(
+            "You are an expert local tour guide. A traveler's plan needs to be adapted. " +
+            "Trip outline for context: %s. " +
+            "Here are the days to change (JSON array): %s. " +
+            "Now, please adapt ONLY days %s based on the following new context: '%s'. " +
+            "Keep the rest of the trip in mind so the changed days stay consistent with it. " +
+            "The response MUST be a clean JSON object of the form {\"itinerary\": [...]} containing exactly " +
+            "these days, each with the same structure and the same \"day\" number as in the input. " +
+            "NO markdown, NO backticks, NO extra text - ONLY the JSON object.",
+            tripOutline,
+            affectedDaysJson,
+            dayNumbers.stream().map(String::valueOf).collect(Collectors.joining(", ")),
+            adaptationContext
+        );
+    }
+
     /**
      * Build conversational prompt with conversation history
      * 
@@ -0,0 +1,223 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Repairing JSON Parser
+ *
+ * Incremental, forgiving parser for model output. Text can be fed in chunks as
+ * it streams from Gemini; a tree is built token by token on Jackson's
+ * non-blocking parser, so no second pass over the full text is needed.
+ *
+ * Repairs:
+ * - leading prose or a ```json fence before the first '{' is skipped
+ * - anything after the root object closes (closing fence, trailing prose) is ignored
+ * - trailing commas, comments and raw control characters in strings are accepted
+ * - on truncation or a syntax error, every container still open is closed and
+ *   the value being written when the damage occurred (e.g. an unterminated
+ *   string) is dropped
+ *
+ * Whether what survives is usable is decided by ResponseSchema.
+ */
+public class RepairingJsonParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(RepairingJsonParser.class);
+
+    private static final JsonFactory jsonFactory = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .enable(JsonReadFeature.ALLOW_NON_NUMERIC_NUMBERS)
+            .build();
+
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    /**
+     * An open container and the field name awaiting a value (objects only)
+     */
+    private static final class Frame {
+        private final JsonNode node;
+        private String pendingField;
+
+        private Frame(JsonNode node) {
+            this.node = node;
+        }
+    }
+
+    private final JsonParser parser;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private JsonNode root;
+    private boolean started;
+    private boolean rootClosed;
+    private boolean damaged;
+
+    public RepairingJsonParser() {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create JSON parser", e);
+        }
+    }
+
+    /**
+     * Parse a complete (possibly damaged) text in one go
+     */
+    public static RepairingJsonParser parse(String text) {
+        RepairingJsonParser parser = new RepairingJsonParser();
+        parser.feed(text);
+        parser.finish();
+        return parser;
+    }
+
+    /**
+     * Feed the next chunk of model output
+     */
+    public void feed(String chunk) {
+        if (chunk == null || chunk.isEmpty() || rootClosed || damaged) {
+            return;
+        }
+        if (!started) {
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            chunk = chunk.substring(start);
+            started = true;
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            markDamaged(e);
+            return;
+        }
+        drain();
+    }
+
+    /**
+     * Signal end of output and return the (repaired) root, or null if no object was started
+     */
+    public JsonNode finish() {
+        if (started && !rootClosed && !damaged) {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+            drain();
+        }
+        if (!rootClosed) {
+            damaged = true;
+        }
+        return root;
+    }
+
+    /**
+     * Root parsed so far; containers still open are included with what they hold
+     */
+    public JsonNode current() {
+        return root;
+    }
+
+    /**
+     * True if container, a node of current(), has been closed, i.e. it will
+     * not change as more text is fed
+     */
+    public boolean isClosed(JsonNode container) {
+        for (Frame frame : stack) {
+            if (frame.node == container) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True if the text was cut short or malformed and had to be repaired
+     */
+    public boolean isDamaged() {
+        return damaged;
+    }
+
+    private void drain() {
+        try {
+            JsonToken token;
+            while (!rootClosed && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handle(token);
+            }
+        } catch (IOException e) {
+            markDamaged(e);
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> open(nodes.objectNode());
+            case START_ARRAY -> open(nodes.arrayNode());
+            case END_OBJECT, END_ARRAY -> close();
+            case FIELD_NAME -> {
+                if (!stack.isEmpty()) {
+                    stack.peek().pendingField = parser.getCurrentName();
+                }
+            }
+            case VALUE_STRING -> attach(nodes.textNode(parser.getText()));
+            case VALUE_NUMBER_INT -> attach(parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                    ? nodes.numberNode(parser.getBigIntegerValue())
+                    : nodes.numberNode(parser.getLongValue()));
+            case VALUE_NUMBER_FLOAT -> attach(nodes.numberNode(parser.getDoubleValue()));
+            case VALUE_TRUE -> attach(nodes.booleanNode(true));
+            case VALUE_FALSE -> attach(nodes.booleanNode(false));
+            case VALUE_NULL -> attach(nodes.nullNode());
+            default -> {
+                // VALUE_EMBEDDED_OBJECT and friends don't occur in textual JSON
+            }
+        }
+    }
+
+    private void open(JsonNode container) {
+        if (root == null) {
+            root = container;
+        } else {
+            attach(container);
+        }
+        stack.push(new Frame(container));
+    }
+
+    private void close() {
+        stack.pop();
+        if (stack.isEmpty()) {
+            rootClosed = true;
+        }
+    }
+
+    private void attach(JsonNode value) {
+        Frame parent = stack.peek();
+        if (parent == null) {
+            return;
+        }
+        if (parent.node instanceof ObjectNode object) {
+            if (parent.pendingField != null) {
+                object.set(parent.pendingField, value);
+                parent.pendingField = null;
+            }
+        } else {
+            ((ArrayNode) parent.node).add(value);
+        }
+    }
+
+    private void markDamaged(IOException e) {
+        damaged = true;
+        logger.debug("Model output JSON damaged, repairing: {}", e.getMessage());
+    }
+}
@@ -0,0 +1,233 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.travelplanner.exception.UnusableModelOutputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Response Schema
+ *
+ * Describes the JSON a Gemini call must return. The same description is used
+ * twice:
+ * - sent as generationConfig.responseSchema so Gemini's JSON mode produces it
+ * - applied to the parsed output to validate and repair it
+ *
+ * Properties declared with property() are requested from the model but may be
+ * dropped if damaged; essential() properties must survive or the enclosing
+ * object is dropped. Arrays drop damaged items and are only unusable when
+ * fewer than minItems remain. Output is rejected only when the root itself
+ * doesn't survive.
+ */
+public final class ResponseSchema {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseSchema.class);
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    public enum Type {
+        OBJECT,
+        ARRAY,
+        STRING,
+        INTEGER
+    }
+
+    private final Type type;
+    private final Map<String, ResponseSchema> properties = new LinkedHashMap<>();
+    private final Set<String> essential = new LinkedHashSet<>();
+    private final ResponseSchema items;
+    private final int minItems;
+
+    private ResponseSchema(Type type, ResponseSchema items, int minItems) {
+        this.type = type;
+        this.items = items;
+        this.minItems = minItems;
+    }
+
+    public static ResponseSchema object() {
+        return new ResponseSchema(Type.OBJECT, null, 0);
+    }
+
+    public static ResponseSchema array(ResponseSchema items, int minItems) {
+        return new ResponseSchema(Type.ARRAY, items, minItems);
+    }
+
+    public static ResponseSchema string() {
+        return new ResponseSchema(Type.STRING, null, 0);
+    }
+
+    public static ResponseSchema integer() {
+        return new ResponseSchema(Type.INTEGER, null, 0);
+    }
+
+    /**
+     * Add a property the model is asked for; dropped from the output if damaged
+     */
+    public ResponseSchema property(String name, ResponseSchema schema) {
+        properties.put(name, schema);
+        return this;
+    }
+
+    /**
+     * Add a property without which the enclosing object is unusable
+     */
+    public ResponseSchema essential(String name, ResponseSchema schema) {
+        properties.put(name, schema);
+        essential.add(name);
+        return this;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * The schema in Gemini's responseSchema (OpenAPI subset) format
+     */
+    public Map<String, Object> toGeminiSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", type.name());
+        if (type == Type.OBJECT) {
+            Map<String, Object> props = new LinkedHashMap<>();
+            properties.forEach((name, property) -> props.put(name, property.toGeminiSchema()));
+            schema.put("properties", props);
+            schema.put("required", new ArrayList<>(properties.keySet()));
+            // Keep the declared order so streamed output arrives summary-first, days in order
+            schema.put("propertyOrdering", new ArrayList<>(properties.keySet()));
+        } else if (type == Type.ARRAY) {
+            schema.put("items", items.toGeminiSchema());
+            if (minItems > 0) {
+                schema.put("minItems", minItems);
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * Parse, validate and repair a complete model response
+     *
+     * @throws UnusableModelOutputException if nothing usable survives
+     */
+    public JsonNode parse(String text) {
+        return conform(RepairingJsonParser.parse(text));
+    }
+
+    /**
+     * Validate and repair the result of a (finished) incremental parse
+     *
+     * @throws UnusableModelOutputException if nothing usable survives
+     */
+    public JsonNode conform(RepairingJsonParser parser) {
+        JsonNode raw = parser.finish();
+        List<String> problems = new ArrayList<>();
+        if (parser.isDamaged()) {
+            problems.add("output truncated or malformed");
+        }
+        JsonNode repaired = raw == null ? null : repair(raw, "$", problems);
+        if (repaired == null) {
+            throw new UnusableModelOutputException("AI response could not be used: "
+                    + (problems.isEmpty() ? "no JSON object found" : String.join("; ", problems)));
+        }
+        if (!problems.isEmpty()) {
+            logger.warn("Repaired AI response: {}", problems);
+        }
+        return repaired;
+    }
+
+    /**
+     * @return the conforming node (possibly modified in place), or null if unusable
+     */
+    JsonNode repair(JsonNode node, String path, List<String> problems) {
+        switch (type) {
+            case STRING:
+                if (node.isTextual()) {
+                    return node;
+                }
+                if (node.isValueNode() && !node.isNull()) {
+                    return nodes.textNode(node.asText());
+                }
+                problems.add(path + " is not a string");
+                return null;
+            case INTEGER:
+                if (node.isIntegralNumber()) {
+                    return node;
+                }
+                if (node.isNumber() || (node.isTextual() && node.asText().trim().matches("-?\\d+"))) {
+                    return nodes.numberNode(node.isNumber() ? node.asLong() : Long.parseLong(node.asText().trim()));
+                }
+                problems.add(path + " is not an integer");
+                return null;
+            case ARRAY:
+                return repairArray(node, path, problems);
+            default:
+                return repairObject(node, path, problems);
+        }
+    }
+
+    private JsonNode repairArray(JsonNode node, String path, List<String> problems) {
+        if (!node.isArray()) {
+            problems.add(path + " is not an array");
+            return null;
+        }
+        ArrayNode repaired = nodes.arrayNode();
+        for (int i = 0; i < node.size(); i++) {
+            JsonNode item = items.repair(node.get(i), path + "[" + i + "]", problems);
+            if (item != null) {
+                repaired.add(item);
+            } else {
+                problems.add("dropped " + path + "[" + i + "]");
+            }
+        }
+        if (repaired.size() < minItems) {
+            problems.add(path + " has fewer than " + minItems + " usable items");
+            return null;
+        }
+        return repaired;
+    }
+
+    private JsonNode repairObject(JsonNode node, String path, List<String> problems) {
+        if (!(node instanceof ObjectNode object)) {
+            problems.add(path + " is not an object");
+            return null;
+        }
+        for (String name : essential) {
+            if (!object.hasNonNull(name)) {
+                problems.add(path + "." + name + " is missing");
+                return null;
+            }
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+        List<String> dropped = new ArrayList<>();
+        Map<String, JsonNode> replaced = new LinkedHashMap<>();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            ResponseSchema property = properties.get(field.getKey());
+            if (property == null) {
+                // Unknown fields are kept as-is
+                continue;
+            }
+            JsonNode value = property.repair(field.getValue(), path + "." + field.getKey(), problems);
+            if (value == null) {
+                if (essential.contains(field.getKey())) {
+                    return null;
+                }
+                dropped.add(field.getKey());
+            } else if (value != field.getValue()) {
+                replaced.put(field.getKey(), value);
+            }
+        }
+        dropped.forEach(object::remove);
+        replaced.forEach(object::set);
+        return object;
+    }
+}
@@ -0,0 +1,205 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.BadRequestException;
+import com.travelplanner.exception.GeminiApiException;
+import com.travelplanner.exception.GeminiUnavailableException;
+import com.travelplanner.exception.ResourceNotFoundException;
+import com.travelplanner.exception.UnauthorizedException;
+import com.travelplanner.exception.UnusableModelOutputException;
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Retry Policy
+ *
+ * Decides whether a failed job attempt is retried and when. A retry is not
+ * slept out on the worker: the job goes back to the queue with a later
+ * availableAt (see JobQueue.retry) and its slot is freed at once.
+ *
+ * A failure is retried only if:
+ * - its cause is transient: 429/5xx from Gemini, an open circuit, I/O and
+ *   other unexpected errors. 4xx responses, model output that failed
+ *   validation and bad or unauthorized requests fail immediately
+ * - the job has made fewer than max-attempts attempts
+ * - the retry budget has a token left
+ *
+ * Backoff is full jitter: a uniform delay in [0, min(max-delay, base-delay × 2^retries)],
+ * floored at any Retry-After Gemini sent.
+ *
+ * Retry budget: every first attempt earns budget-ratio tokens (capped at
+ * max-burst) and each retry spends one, so during an outage retries add at
+ * most that fraction to the load instead of multiplying it. The budget is
+ * kept per node, and in-place retries of part of an attempt (a fan-out day
+ * range) draw on it too.
+ *
+ * Metrics: jobs.retry (tagged outcome=scheduled|not_retryable|exhausted|budget_exhausted).
+ */
+@Component
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${jobs.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${jobs.retry.base-delay-ms:2000}")
+    private long baseDelayMs;
+
+    @Value("${jobs.retry.max-delay-ms:60000}")
+    private long maxDelayMs;
+
+    @Value("${jobs.retry.budget-ratio:0.2}")
+    private double budgetRatio;
+
+    @Value("${jobs.retry.max-burst:10}")
+    private double maxBurst;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private double budgetTokens;
+
+    @PostConstruct
+    void init() {
+        budgetTokens = maxBurst;
+    }
+
+    /**
+     * Note the start of an attempt; first attempts earn retry budget
+     */
+    public void recordAttempt(Job job) {
+        if (retries(job) > 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            budgetTokens = Math.min(maxBurst, budgetTokens + budgetRatio);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delay before the next attempt of a job whose current attempt failed
+     *
+     * @return empty if the job should fail now
+     */
+    public Optional<Duration> retryDelay(Job job, Throwable failure) {
+        return retryDelay(retries(job), maxAttempts - 1, failure, "job " + job.getJobId());
+    }
+
+    /**
+     * Delay before retrying part of an attempt in place, such as one fan-out
+     * day range; classified, backed off and budgeted like a job retry
+     *
+     * @param retries times this part has already been retried
+     * @param maxRetries retries this part may have in all
+     * @return empty if it should fail now
+     */
+    public Optional<Duration> retryDelay(int retries, int maxRetries, Throwable failure) {
+        return retryDelay(retries, maxRetries, failure, "in-place call");
+    }
+
+    private Optional<Duration> retryDelay(int retries, int maxRetries, Throwable failure, String subject) {
+        if (!isRetryable(failure)) {
+            count("not_retryable");
+            return Optional.empty();
+        }
+        if (retries >= maxRetries) {
+            count("exhausted");
+            return Optional.empty();
+        }
+        if (!trySpendBudget()) {
+            logger.warn("Retry budget exhausted, not retrying {}", subject);
+            count("budget_exhausted");
+            return Optional.empty();
+        }
+        count("scheduled");
+
+        long ceiling = backoffCeiling(retries).toMillis();
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        Duration retryAfter = retryAfter(failure);
+        if (retryAfter != null) {
+            delay = Math.max(delay, retryAfter.toMillis());
+        }
+        return Optional.of(Duration.ofMillis(delay));
+    }
+
+    /**
+     * Upper bound of the jittered delay for a job that has already been retried retries times
+     */
+    Duration backoffCeiling(int retries) {
+        long ceiling = baseDelayMs << Math.min(retries, 30);
+        return Duration.ofMillis(ceiling <= 0 ? maxDelayMs : Math.min(maxDelayMs, ceiling));
+    }
+
+    /**
+     * Whether a failure could go away by trying again
+     */
+    boolean isRetryable(Throwable failure) {
+        if (failure instanceof GeminiApiException apiException) {
+            return apiException.isRetryable();
+        }
+        if (failure instanceof GeminiUnavailableException) {
+            return true;
+        }
+        if (failure instanceof UnusableModelOutputException
+                || failure instanceof IllegalArgumentException
+                || failure instanceof BadRequestException
+                || failure instanceof ResourceNotFoundException
+                || failure instanceof UnauthorizedException) {
+            return false;
+        }
+        // ItineraryService reports a missing or foreign trip this way
+        String message = failure.getMessage();
+        return message == null || !message.contains("not authorized");
+    }
+
+    private Duration retryAfter(Throwable failure) {
+        if (failure instanceof GeminiApiException apiException) {
+            return apiException.getRetryAfter();
+        }
+        if (failure instanceof GeminiUnavailableException unavailable) {
+            return unavailable.getRetryAfter();
+        }
+        return null;
+    }
+
+    private boolean trySpendBudget() {
+        lock.lock();
+        try {
+            if (budgetTokens < 1.0) {
+                return false;
+            }
+            budgetTokens -= 1.0;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int retries(Job job) {
+        return job.getRetryCount() == null ? 0 : job.getRetryCount();
+    }
+
+    private void count(String outcome) {
+        Counter.builder("jobs.retry")
+                .description("Failed job attempts, by what happened next")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
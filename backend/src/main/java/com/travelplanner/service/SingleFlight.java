@@ -0,0 +1,98 @@
+package com.travelplanner.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight call coalescing
+ *
+ * Concurrent callers that ask for the same key while a call is already running
+ * wait for that call and receive its result (or its exception) instead of
+ * issuing their own. The key is released as soon as the call finishes, so this
+ * de-duplicates in-flight work only; it is not a cache.
+ *
+ * Cancellation stays with the caller it was meant for:
+ * - a waiting caller that is interrupted (e.g. its job was cancelled) stops
+ *   waiting at once; the call carries on for the others
+ * - if the caller running the call is interrupted, the waiting callers do not
+ *   inherit its failure: they start over, and one of them runs the call
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Run the call for this key, or join the call already in flight for it
+     *
+     * @return the result and whether this caller shared another caller's flight
+     */
+    public Result<V> execute(K key, Supplier<V> call) {
+        while (true) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = calls.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, call);
+            }
+            try {
+                return new Result<>(await(existing), true);
+            } catch (Abandoned e) {
+                // The caller running it was cancelled; try again, maybe as the one running it
+            }
+        }
+    }
+
+    /**
+     * Number of distinct keys currently in flight
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    private Result<V> lead(K key, CompletableFuture<V> flight, Supplier<V> call) {
+        V value;
+        try {
+            value = call.get();
+        } catch (RuntimeException | Error e) {
+            // Release the key first, so callers that start over do not find this flight again
+            calls.remove(key, flight);
+            flight.completeExceptionally(Thread.currentThread().isInterrupted() ? new Abandoned() : e);
+            throw e;
+        }
+        calls.remove(key, flight);
+        flight.complete(value);
+        return new Result<>(value, false);
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a coalesced call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Completes a flight whose caller was interrupted, telling the callers
+     * waiting on it to start over
+     */
+    private static final class Abandoned extends RuntimeException {
+        private Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+
+    public record Result<V>(V value, boolean shared) {
+    }
+}
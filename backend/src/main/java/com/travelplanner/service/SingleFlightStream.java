@@ -0,0 +1,209 @@
+package com.travelplanner.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Single-flight stream coalescing
+ *
+ * The streaming counterpart of SingleFlight: concurrent callers that ask for
+ * the same key while a stream is already running join it instead of opening
+ * their own. A joining caller is first handed everything streamed so far and
+ * then the rest as it arrives, on its own thread, so a slow consumer never
+ * holds up the stream or the other callers. Everyone receives the full text
+ * (or the exception) the stream ends with.
+ *
+ * Cancellation follows SingleFlight: an interrupted joiner stops following at
+ * once, and if the caller running the stream is interrupted the joiners start
+ * over. A caller that starts over is only handed text beyond what it has
+ * already received; if the new stream's text differs from it, relaying stops
+ * and the caller just gets the final text.
+ */
+public class SingleFlightStream<K> {
+
+    private final ConcurrentHashMap<K, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Run the stream for this key, or join the stream already in flight for it
+     *
+     * @param onChunk receives the streamed text, piece by piece
+     * @param call runs the stream, handing each fragment to the consumer it is
+     *             given, and returns the full text
+     * @return the full text and whether this caller shared another caller's stream
+     */
+    public SingleFlight.Result<String> execute(K key, Consumer<String> onChunk,
+                                               Function<Consumer<String>, String> call) {
+        Receiver receiver = new Receiver(onChunk);
+        while (true) {
+            Flight flight = new Flight();
+            Flight existing = flights.putIfAbsent(key, flight);
+            receiver.startFlight();
+            if (existing == null) {
+                return lead(key, flight, receiver, call);
+            }
+            try {
+                return new SingleFlight.Result<>(existing.follow(receiver), true);
+            } catch (Abandoned e) {
+                // The caller running it was cancelled; try again, maybe as the one running it
+            }
+        }
+    }
+
+    /**
+     * Number of distinct keys currently streaming
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private SingleFlight.Result<String> lead(K key, Flight flight, Receiver receiver,
+                                             Function<Consumer<String>, String> call) {
+        String text;
+        try {
+            text = call.apply(fragment -> {
+                flight.append(fragment);
+                receiver.offer(fragment);
+            });
+        } catch (RuntimeException | Error e) {
+            // Release the key first, so callers that start over do not find this flight again
+            flights.remove(key, flight);
+            flight.finish(null, Thread.currentThread().isInterrupted() ? new Abandoned() : e);
+            throw e;
+        }
+        flights.remove(key, flight);
+        flight.finish(text, null);
+        return new SingleFlight.Result<>(text, false);
+    }
+
+    /**
+     * One running stream: the text so far and, once it has ended, its outcome
+     */
+    private static final class Flight {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final StringBuilder text = new StringBuilder();
+        private boolean done;
+        private String result;
+        private Throwable failure;
+
+        void append(String fragment) {
+            lock.lock();
+            try {
+                text.append(fragment);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void finish(String result, Throwable failure) {
+            lock.lock();
+            try {
+                this.result = result;
+                this.failure = failure;
+                done = true;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Relay the stream to receiver until it ends, outside the lock
+         */
+        String follow(Receiver receiver) {
+            int position = 0;
+            while (true) {
+                String piece;
+                boolean ended;
+                lock.lock();
+                try {
+                    while (position == text.length() && !done) {
+                        changed.await();
+                    }
+                    piece = text.substring(position);
+                    ended = done;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while following a coalesced stream", e);
+                } finally {
+                    lock.unlock();
+                }
+                if (!piece.isEmpty()) {
+                    position += piece.length();
+                    receiver.offer(piece);
+                }
+                if (ended) {
+                    return outcome();
+                }
+            }
+        }
+
+        private String outcome() {
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One caller's view of the stream; remembers what it was handed, so
+     * starting over on another flight does not repeat it
+     */
+    private static final class Receiver {
+
+        private final Consumer<String> onChunk;
+        private final StringBuilder received = new StringBuilder();
+        // Position in the current flight's text
+        private int position;
+        private boolean relaying = true;
+
+        Receiver(Consumer<String> onChunk) {
+            this.onChunk = onChunk;
+        }
+
+        void startFlight() {
+            position = 0;
+        }
+
+        /**
+         * Take the next piece of the current flight's text
+         */
+        void offer(String piece) {
+            int start = position;
+            position += piece.length();
+            if (!relaying) {
+                return;
+            }
+            int overlap = Math.min(position, received.length()) - start;
+            if (overlap > 0 && !received.substring(start, start + overlap).equals(piece.substring(0, overlap))) {
+                // The stream that replaced an abandoned one says something else
+                relaying = false;
+                return;
+            }
+            if (overlap < piece.length()) {
+                String chunk = piece.substring(Math.max(0, overlap));
+                received.append(chunk);
+                onChunk.accept(chunk);
+            }
+        }
+    }
+
+    /**
+     * Completes a flight whose caller was interrupted, telling the callers
+     * following it to start over
+     */
+    private static final class Abandoned extends RuntimeException {
+        private Abandoned() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.travelplanner.exception.GeminiApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stub Gemini Transport
+ *
+ * Offline stand-in for the Gemini API so the whole job pipeline can be
+ * load-tested on a laptop with no network or API key.
+ *
+ * For each request it:
+ * 1. Replays {replay-dir}/{sha256(request)}.json if a recording exists
+ *    (recordings are produced by HttpGeminiTransport with gemini.http.record-dir)
+ * 2. Otherwise synthesizes a valid response: an itinerary matching the
+ *    PromptBuilderService output structure, the original itinerary for
+ *    adaptation prompts, or a journal for image requests
+ * 3. Sleeps for a latency drawn from a log-normal distribution
+ *    (median and sigma configurable) before answering
+ * 4. Fails a configurable fraction of calls with 429 (with Retry-After) or 503
+ *
+ * Enable with gemini.transport=stub (see application-loadtest.properties).
+ */
+@Component
+@ConditionalOnProperty(name = "gemini.transport", havingValue = "stub")
+public class StubGeminiTransport implements GeminiTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubGeminiTransport.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final Pattern DESTINATION_PATTERN = Pattern.compile("deep knowledge of (.+?)\\. ");
+    private static final Pattern DATES_PATTERN = Pattern.compile("from (\\d{4}-\\d{2}-\\d{2}) to (\\d{4}-\\d{2}-\\d{2})");
+    private static final Pattern DAY_RANGE_PATTERN = Pattern.compile("Plan ONLY days (\\d+) to (\\d+)");
+    private static final String ADAPTATION_MARKER = "original itinerary JSON: ";
+    private static final String ADAPTATION_END_MARKER = ". Now, please adapt";
+    private static final int STREAM_CHUNK_SIZE = 256;
+
+    private final String replayDir;
+    private final long latencyMedianMs;
+    private final double latencySigma;
+    private final double rateLimitErrorRate;
+    private final double serverErrorRate;
+    private final long retryAfterSeconds;
+
+    public StubGeminiTransport(@Value("${gemini.stub.replay-dir:}") String replayDir,
+                               @Value("${gemini.stub.latency-median-ms:2000}") long latencyMedianMs,
+                               @Value("${gemini.stub.latency-sigma:0.5}") double latencySigma,
+                               @Value("${gemini.stub.error-rate-429:0.0}") double rateLimitErrorRate,
+                               @Value("${gemini.stub.error-rate-503:0.0}") double serverErrorRate,
+                               @Value("${gemini.stub.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.replayDir = replayDir;
+        this.latencyMedianMs = latencyMedianMs;
+        this.latencySigma = latencySigma;
+        this.rateLimitErrorRate = rateLimitErrorRate;
+        this.serverErrorRate = serverErrorRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        logger.warn("Using STUB Gemini transport (latencyMedianMs={}, sigma={}, 429 rate={}, 503 rate={}) - no real AI calls will be made",
+                latencyMedianMs, latencySigma, rateLimitErrorRate, serverErrorRate);
+    }
+
+    @Override
+    public void ensureReady() {
+        // Always ready: no API key or network needed
+    }
+
+    @Override
+    public String generate(String operation, String requestJson) {
+        simulateLatency(latencyMillis());
+        maybeFail();
+        return replay(requestJson).orElseGet(() -> envelope(synthesize(requestJson)));
+    }
+
+    @Override
+    public String generate(String operation, GeminiImageRequest imageRequest) {
+        simulateLatency(latencyMillis());
+        maybeFail();
+
+        // Write the body as the real transport would, to honour its I/O cost and derive the replay key
+        String requestKey;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            imageRequest.writeTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+            requestKey = HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Stub failed to write image request: " + e.getMessage(), e);
+        }
+        return replayByKey(requestKey).orElseGet(() -> {
+            try {
+                return envelope(synthesizeJournal(imageRequest.getImages().size()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to serialize stub journal", e);
+            }
+        });
+    }
+
+    @Override
+    public void stream(String requestJson, Consumer<String> onEvent) {
+        long totalLatency = latencyMillis();
+        // Time to first chunk is a small fraction of the total, like the real API
+        simulateLatency(totalLatency / 10);
+        maybeFail();
+
+        String text = replay(requestJson)
+                .map(this::extractText)
+                .orElseGet(() -> synthesize(requestJson));
+        int chunks = Math.max(1, (text.length() + STREAM_CHUNK_SIZE - 1) / STREAM_CHUNK_SIZE);
+        long perChunkDelay = (totalLatency - totalLatency / 10) / chunks;
+        for (int i = 0; i < text.length(); i += STREAM_CHUNK_SIZE) {
+            onEvent.accept(envelope(text.substring(i, Math.min(text.length(), i + STREAM_CHUNK_SIZE))));
+            simulateLatency(perChunkDelay);
+        }
+    }
+
+    @Override
+    public String listModels() {
+        return "{\"models\":[{\"name\":\"models/gemini-2.5-flash\",\"displayName\":\"Gemini 2.5 Flash (stub)\"," +
+                "\"supportedGenerationMethods\":[\"generateContent\",\"streamGenerateContent\"]}]}";
+    }
+
+    private Optional<String> replay(String requestJson) {
+        return replayByKey(GeminiTransport.requestKey(requestJson));
+    }
+
+    private Optional<String> replayByKey(String requestKey) {
+        if (!StringUtils.hasText(replayDir)) {
+            return Optional.empty();
+        }
+        Path recording = Paths.get(replayDir).resolve(requestKey + ".json");
+        if (!Files.exists(recording)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readString(recording, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Failed to read Gemini recording {}: {}", recording, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private long latencyMillis() {
+        // Log-normal: median * e^(sigma * N(0,1)) gives a realistic long right tail
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Math.max(0, Math.round(latencyMedianMs * Math.exp(latencySigma * gaussian)));
+    }
+
+    private void simulateLatency(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Stub Gemini call interrupted", e);
+        }
+    }
+
+    private void maybeFail() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < rateLimitErrorRate) {
+            throw new GeminiApiException(429, "Gemini API error (429): stub rate limit", Duration.ofSeconds(retryAfterSeconds));
+        }
+        if (roll < rateLimitErrorRate + serverErrorRate) {
+            throw new GeminiApiException(503, "Gemini API error (503): stub unavailable", null);
+        }
+    }
+
+    private String synthesize(String requestJson) {
+        try {
+            JsonNode parts = objectMapper.readTree(requestJson).path("contents").path(0).path("parts");
+            StringBuilder prompt = new StringBuilder();
+            boolean hasImages = false;
+            for (JsonNode part : parts) {
+                prompt.append(part.path("text").asText(""));
+                hasImages |= part.has("inlineData");
+            }
+            if (hasImages) {
+                return synthesizeJournal(parts.size() - 1);
+            }
+            String promptText = prompt.toString();
+            int adaptationStart = promptText.indexOf(ADAPTATION_MARKER);
+            if (adaptationStart >= 0) {
+                int adaptationEnd = promptText.indexOf(ADAPTATION_END_MARKER, adaptationStart);
+                if (adaptationEnd > adaptationStart) {
+                    return promptText.substring(adaptationStart + ADAPTATION_MARKER.length(), adaptationEnd);
+                }
+            }
+            return synthesizeItinerary(promptText);
+        } catch (IOException e) {
+            throw new GeminiApiException(400, "Gemini API error (400): stub could not parse request", null);
+        }
+    }
+
+    private String synthesizeItinerary(String prompt) throws IOException {
+        Matcher destinationMatcher = DESTINATION_PATTERN.matcher(prompt);
+        String destination = destinationMatcher.find() ? destinationMatcher.group(1) : "the destination";
+
+        LocalDate startDate = LocalDate.now();
+        int days = 3;
+        Matcher datesMatcher = DATES_PATTERN.matcher(prompt);
+        if (datesMatcher.find()) {
+            startDate = LocalDate.parse(datesMatcher.group(1));
+            days = (int) ChronoUnit.DAYS.between(startDate, LocalDate.parse(datesMatcher.group(2))) + 1;
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("trip_summary", "A " + days + "-day trip exploring " + destination + " (synthesized by the stub transport).");
+        ObjectNode budget = root.putObject("overall_budget_breakdown");
+        budget.put("accommodation_estimate", "₹" + (days * 4000) + " for " + days + " nights");
+        budget.put("food_estimate", "₹" + (days * 1500) + " for the group");
+        budget.put("activities_estimate", "₹" + (days * 2000) + " covering all activities");
+
+        // Fan-out range prompts ask for a slice of the trip
+        int firstDay = 1;
+        int lastDay = days;
+        Matcher rangeMatcher = DAY_RANGE_PATTERN.matcher(prompt);
+        if (rangeMatcher.find()) {
+            firstDay = Integer.parseInt(rangeMatcher.group(1));
+            lastDay = Integer.parseInt(rangeMatcher.group(2));
+        }
+
+        ArrayNode itinerary = root.putArray("itinerary");
+        for (int day = firstDay; day <= lastDay; day++) {
+            ObjectNode dayNode = itinerary.addObject();
+            dayNode.put("day", day);
+            dayNode.put("date", startDate.plusDays(day - 1L).toString());
+            dayNode.put("theme", "Day " + day + " in " + destination);
+            dayNode.put("daily_overview", "Exploring highlights of " + destination + " on day " + day + ".");
+            ArrayNode activities = dayNode.putArray("activities");
+            for (String timeOfDay : new String[]{"Morning (9:00-12:00)", "Afternoon (13:00-17:00)", "Evening (18:00-21:00)"}) {
+                ObjectNode activity = activities.addObject();
+                activity.put("time_of_day", timeOfDay);
+                activity.put("travel_details", "Short taxi ride (15 min)");
+                activity.put("description", "Sample activity in " + destination);
+                activity.put("location_address", "Central " + destination);
+                activity.put("estimated_cost", "₹500 per person");
+                activity.put("booking_info", "No booking required");
+                activity.put("alternative_option", "Nearby museum");
+            }
+            ObjectNode food = dayNode.putObject("food_suggestions");
+            food.putObject("lunch").put("recommendation", "Local cafe, " + destination).put("notes", "Popular with locals");
+            food.putObject("dinner").put("recommendation", "Local restaurant, " + destination).put("notes", "Regional specialties");
+            ObjectNode tips = dayNode.putObject("practical_tips");
+            tips.put("transport_tip", "Use public transport where possible");
+            tips.put("cultural_etiquette", "Dress modestly at religious sites");
+        }
+
+        ArrayNode essentialTips = root.putArray("essential_travel_tips");
+        essentialTips.add("Pack comfortable walking shoes");
+        essentialTips.add("Carry some local currency");
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String synthesizeJournal(int photoCount) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("title", "A Journey in " + photoCount + " Photos");
+        root.put("summary", "A synthesized journal generated by the stub transport.");
+        ArrayNode entries = root.putArray("entries");
+        entries.addObject().put("date", LocalDate.now().toString()).put("content", "A memorable day captured in photos.");
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private String envelope(String text) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.putArray("candidates").addObject()
+                .putObject("content")
+                .putArray("parts").addObject().put("text", text);
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize stub response", e);
+        }
+    }
+
+    private String extractText(String responseJson) {
+        try {
+            return objectMapper.readTree(responseJson).path("candidates").path(0)
+                    .path("content").path("parts").path(0).path("text").asText("");
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.travelplanner.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual Threads
+ *
+ * Named virtual threads for the opt-in virtual execution mode
+ * (execution.virtual-threads.enabled).
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Factory for virtual threads named prefix0, prefix1, ...
+     */
+    public static ThreadFactory factory(String prefix) {
+        return Thread.ofVirtual().name(prefix, 0).factory();
+    }
+
+    /**
+     * Executor that starts a new virtual thread per task
+     */
+    public static Executor perTaskExecutor(String prefix) {
+        ThreadFactory factory = factory(prefix);
+        return task -> factory.newThread(task).start();
+    }
+}
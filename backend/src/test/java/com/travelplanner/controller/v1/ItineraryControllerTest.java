@@ -1,11 +1,17 @@
 package com.travelplanner.controller.v1;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.exception.GlobalExceptionHandler;
+import com.travelplanner.exception.JobRejectedException;
 import com.travelplanner.model.Job;
 import com.travelplanner.repository.JobRepository;
 import com.travelplanner.security.services.UserDetailsImpl;
 import com.travelplanner.service.AsyncItineraryService;
+import com.travelplanner.service.FairScheduler;
+import com.travelplanner.service.IdempotencyKeys;
 import com.travelplanner.service.ItineraryService;
+import com.travelplanner.service.JobAdmission;
+import com.travelplanner.service.JobCancellation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,10 +20,14 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -38,6 +48,18 @@ class ItineraryControllerTest {
     @Mock
     private JobRepository jobRepository;
 
+    @Mock
+    private JobAdmission jobAdmission;
+
+    @Mock
+    private FairScheduler fairScheduler;
+
+    @Mock
+    private JobCancellation jobCancellation;
+
+    @Mock
+    private IdempotencyKeys idempotencyKeys;
+
     @InjectMocks
     private ItineraryController itineraryController;
 
@@ -52,6 +74,7 @@ class ItineraryControllerTest {
         userDetails = new UserDetailsImpl(1L, "testuser", "test@example.com", "password");
         mockMvc = MockMvcBuilders.standaloneSetup(itineraryController)
                 .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver(userDetails))
+                .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
         objectMapper = new ObjectMapper();
     }
@@ -67,7 +90,45 @@ class ItineraryControllerTest {
                 .andExpect(jsonPath("$.message").exists());
 
         verify(jobRepository).save(any(Job.class));
-        verify(asyncItineraryService).generateItineraryAsync(anyString(), eq(1L), eq(1L));
+    }
+
+    @Test
+    void generateItinerary_UserAtInFlightLimit_Returns503WithRetryAfter() throws Exception {
+        doThrow(new JobRejectedException("You already have 3 itinerary jobs in progress.", Duration.ofSeconds(30)))
+                .when(jobAdmission).admit(1L, "ITINERARY_GENERATION");
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
+    @Test
+    void streamItinerary_ExecutorFull_Returns503WithRetryAfter() throws Exception {
+        Runnable release = mock(Runnable.class);
+        when(jobAdmission.admitStream(1L)).thenReturn(release);
+        doThrow(new TaskRejectedException("full"))
+                .when(asyncItineraryService).streamItineraryAsync(any(), eq(1L), eq(1L), eq(release));
+        when(jobAdmission.estimatedWait("ITINERARY_GENERATION", 1)).thenReturn(Duration.ofSeconds(20));
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1/stream"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "20"));
+
+        verify(release).run();
+    }
+
+    @Test
+    void streamItinerary_NotAdmitted_Returns503WithoutStarting() throws Exception {
+        when(jobAdmission.admitStream(1L))
+                .thenThrow(new JobRejectedException("You already have 3 itinerary jobs in progress.", Duration.ofSeconds(30)));
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1/stream"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "30"));
+
+        verify(asyncItineraryService, never()).streamItineraryAsync(any(), anyLong(), anyLong(), any());
     }
 
     @Test
@@ -79,8 +140,26 @@ class ItineraryControllerTest {
                 .andExpect(jsonPath("$.jobId").exists())
                 .andExpect(jsonPath("$.status").value("PENDING"));
 
-        verify(jobRepository).save(any(Job.class));
-        verify(asyncItineraryService).generateItineraryAsync(anyString(), eq(1L), eq(1L));
+        verify(jobRepository).save(jobCaptor.capture());
+        assertEquals("ITINERARY_REGENERATION", jobCaptor.getValue().getJobType());
+    }
+
+    @Test
+    void regenerateItinerary_CancelsEarlierGenerationForTrip() throws Exception {
+        when(jobCancellation.cancelSuperseded(eq(1L), eq(1L), anyCollection())).thenReturn(1);
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(put("/api/v1/itineraries/regenerate/1"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.attached").doesNotExist());
+
+        var order = inOrder(jobAdmission, jobCancellation, jobRepository);
+        order.verify(jobAdmission).admit(1L, "ITINERARY_REGENERATION");
+        order.verify(jobCancellation).cancelSuperseded(eq(1L), eq(1L),
+                argThat(types -> types.contains("ITINERARY_GENERATION") && types.contains("ITINERARY_REGENERATION")));
+        order.verify(jobRepository).save(any(Job.class));
+        verify(jobRepository, never()).findFirstByTripIdAndUserIdAndJobTypeInAndStatusInOrderByCreatedAtDesc(
+                any(), any(), anyCollection(), anyCollection());
     }
 
     @Test
@@ -94,8 +173,8 @@ class ItineraryControllerTest {
                 .andExpect(jsonPath("$.jobId").exists())
                 .andExpect(jsonPath("$.status").value("PENDING"));
 
-        verify(jobRepository).save(any(Job.class));
-        verify(asyncItineraryService).adaptItineraryAsync(anyString(), eq(1L), eq(1L), eq("Add more outdoor activities"));
+        verify(jobRepository).save(jobCaptor.capture());
+        assertEquals("Add more outdoor activities", jobCaptor.getValue().getPayload());
     }
 
     @Test
@@ -112,6 +191,7 @@ class ItineraryControllerTest {
         assertEquals(1L, savedJob.getTripId());
         assertEquals(1L, savedJob.getUserId());
         assertEquals(Job.JobStatus.PENDING, savedJob.getStatus());
+        verify(fairScheduler).schedule(savedJob, true);
     }
 
     @Test
@@ -129,6 +209,92 @@ class ItineraryControllerTest {
         assertEquals(1L, savedJob.getTripId());
     }
 
+    @Test
+    void generateItinerary_ActiveJobForTrip_AttachesInsteadOfEnqueuing() throws Exception {
+        Job running = new Job("job-running", "ITINERARY_GENERATION", 1L, 1L);
+        running.setStatus(Job.JobStatus.PROCESSING);
+        when(jobRepository.findFirstByTripIdAndUserIdAndJobTypeInAndStatusInOrderByCreatedAtDesc(
+                eq(1L), eq(1L), anyCollection(), anyCollection())).thenReturn(java.util.Optional.of(running));
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-running"))
+                .andExpect(jsonPath("$.status").value("PROCESSING"))
+                .andExpect(jsonPath("$.attached").value(true));
+
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
+    @Test
+    void generateItinerary_NewIdempotencyKey_RecordsJobForKey() throws Exception {
+        when(idempotencyKeys.reserve(1L, "generate", 1L, "key-1")).thenReturn(Optional.empty());
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1").header("Idempotency-Key", "key-1"))
+                .andExpect(status().isAccepted());
+
+        verify(jobRepository).save(jobCaptor.capture());
+        verify(idempotencyKeys).complete(1L, "generate", 1L, "key-1", jobCaptor.getValue().getJobId());
+    }
+
+    @Test
+    void adaptItinerary_RepeatedIdempotencyKey_ReturnsOriginalJobWithoutEnqueuing() throws Exception {
+        Job original = new Job("job-original", "ITINERARY_ADAPTATION", 1L, 1L);
+        original.setStatus(Job.JobStatus.PROCESSING);
+        when(idempotencyKeys.reserve(1L, "adapt", 1L, "key-1"))
+                .thenReturn(Optional.of(new IdempotencyKeys.Recorded("job-original")));
+        when(jobRepository.findByJobId("job-original")).thenReturn(Optional.of(original));
+
+        mockMvc.perform(post("/api/v1/itineraries/adapt/1")
+                .header("Idempotency-Key", "key-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"context\": \"Reduce budget\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.jobId").value("job-original"))
+                .andExpect(jsonPath("$.status").value("PROCESSING"))
+                .andExpect(jsonPath("$.duplicate").value(true));
+
+        verify(jobAdmission, never()).admit(any(), any());
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
+    @Test
+    void regenerateItinerary_IdempotencyKeyInProgress_Returns409WithoutCancelling() throws Exception {
+        when(idempotencyKeys.reserve(1L, "regenerate", 1L, "key-1"))
+                .thenReturn(Optional.of(new IdempotencyKeys.Recorded(null)));
+
+        mockMvc.perform(put("/api/v1/itineraries/regenerate/1").header("Idempotency-Key", "key-1"))
+                .andExpect(status().isConflict())
+                .andExpect(header().exists("Retry-After"));
+
+        verify(jobCancellation, never()).cancelSuperseded(any(), any(), anyCollection());
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
+    @Test
+    void generateItinerary_RejectedWithIdempotencyKey_ReleasesKey() throws Exception {
+        when(idempotencyKeys.reserve(1L, "generate", 1L, "key-1")).thenReturn(Optional.empty());
+        doThrow(new JobRejectedException("Queue full", Duration.ofSeconds(30)))
+                .when(jobAdmission).admit(1L, "ITINERARY_GENERATION");
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1").header("Idempotency-Key", "key-1"))
+                .andExpect(status().isServiceUnavailable());
+
+        verify(idempotencyKeys).release(1L, "generate", 1L, "key-1");
+        verify(idempotencyKeys, never()).complete(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void generateItinerary_WithoutIdempotencyKey_DoesNotTouchStore() throws Exception {
+        when(jobRepository.save(any(Job.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        mockMvc.perform(post("/api/v1/itineraries/generate/1"))
+                .andExpect(status().isAccepted());
+
+        verifyNoInteractions(idempotencyKeys);
+    }
+
     @Test
     void generateItinerary_WithoutAuth_ReturnsInternalServerError() throws Exception {
         mockMvc.perform(post("/api/v1/itineraries/generate/1"))
@@ -1,21 +1,36 @@
 package com.travelplanner.controller.v1;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.dto.response.JobResponse;
+import com.travelplanner.exception.GlobalExceptionHandler;
+import com.travelplanner.exception.JobRejectedException;
+import com.travelplanner.model.Itinerary;
 import com.travelplanner.model.Job;
+import com.travelplanner.repository.ItineraryRepository;
 import com.travelplanner.repository.JobRepository;
 import com.travelplanner.security.services.UserDetailsImpl;
+import com.travelplanner.service.FairScheduler;
+import com.travelplanner.service.JobAdmission;
+import com.travelplanner.service.JobCancellation;
+import com.travelplanner.service.JobStatusNotifier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -30,6 +45,21 @@ class JobControllerTest {
     @Mock
     private JobRepository jobRepository;
 
+    @Mock
+    private ItineraryRepository itineraryRepository;
+
+    @Mock
+    private JobStatusNotifier jobStatusNotifier;
+
+    @Mock
+    private JobAdmission jobAdmission;
+
+    @Mock
+    private FairScheduler fairScheduler;
+
+    @Mock
+    private JobCancellation jobCancellation;
+
     @InjectMocks
     private JobController jobController;
 
@@ -42,10 +72,44 @@ class JobControllerTest {
         userDetails = new UserDetailsImpl(1L, "testuser", "test@example.com", "password");
         mockMvc = MockMvcBuilders.standaloneSetup(jobController)
                 .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver(userDetails))
+                .setControllerAdvice(new GlobalExceptionHandler())
                 .build();
         objectMapper = new ObjectMapper();
 
         testJob = new Job("job-123", "ITINERARY_GENERATION", 1L, 1L);
+        ReflectionTestUtils.setField(jobController, "maxWaitSeconds", 30);
+    }
+
+    private static JobRepository.JobStatusView statusView(Job.JobStatus status) {
+        return new JobRepository.JobStatusView() {
+            @Override
+            public String getJobId() {
+                return "job-123";
+            }
+
+            @Override
+            public Job.JobStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Job.Phase getPhase() {
+                return null;
+            }
+
+            @Override
+            public Integer getDaysCompleted() {
+                return null;
+            }
+        };
+    }
+
+    private static Itinerary itinerary(Long version) {
+        Itinerary itinerary = new Itinerary();
+        itinerary.setId(7L);
+        itinerary.setVersion(version);
+        itinerary.setContent("{\"itinerary\": []}");
+        return itinerary;
     }
 
     @Test
@@ -59,6 +123,9 @@ class JobControllerTest {
                 .andExpect(jsonPath("$.jobId").exists())
                 .andExpect(jsonPath("$.status").value("PENDING"))
                 .andExpect(jsonPath("$.message").exists());
+
+        // The job API is the bulk path
+        verify(fairScheduler).schedule(any(Job.class), eq(false));
     }
 
     @Test
@@ -73,10 +140,26 @@ class JobControllerTest {
                 .andExpect(jsonPath("$.status").value("PENDING"));
     }
 
+    @Test
+    void createItineraryGenerationJob_Overloaded_Returns503WithRetryAfter() throws Exception {
+        doThrow(new JobRejectedException("The itinerary service is busy.", Duration.ofSeconds(42)))
+                .when(jobAdmission).admit(1L, "ITINERARY_GENERATION");
+
+        mockMvc.perform(post("/api/v1/jobs/itinerary/generate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"tripId\": 1}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "42"))
+                .andExpect(jsonPath("$.message").value("The itinerary service is busy."));
+
+        verify(jobRepository, never()).save(any(Job.class));
+    }
+
     @Test
     void getJobStatus_Found_ReturnsJobResponse() throws Exception {
         testJob.setStatus(Job.JobStatus.COMPLETED);
-        testJob.setResult("{\"days\": []}");
+        testJob.setItineraryId(7L);
+        testJob.setItineraryVersion(2L);
         testJob.setStartedAt(LocalDateTime.now().minusMinutes(5));
         testJob.setCompletedAt(LocalDateTime.now());
 
@@ -86,7 +169,47 @@ class JobControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.jobId").value("job-123"))
                 .andExpect(jsonPath("$.status").value("COMPLETED"))
-                .andExpect(jsonPath("$.result").value("{\"days\": []}"));
+                .andExpect(jsonPath("$.itineraryId").value(7))
+                .andExpect(jsonPath("$.itineraryVersion").value(2))
+                .andExpect(jsonPath("$.result").doesNotExist());
+
+        verifyNoInteractions(itineraryRepository);
+    }
+
+    @Test
+    void getJobResult_Completed_ReturnsReferencedItinerary() throws Exception {
+        testJob.setStatus(Job.JobStatus.COMPLETED);
+        testJob.setItineraryId(7L);
+        testJob.setItineraryVersion(2L);
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+        when(itineraryRepository.findById(7L)).thenReturn(Optional.of(itinerary(2L)));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123/result"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2\""))
+                .andExpect(content().json("{\"itinerary\": []}"));
+    }
+
+    @Test
+    void getJobResult_ItineraryChangedSince_Returns409() throws Exception {
+        testJob.setStatus(Job.JobStatus.COMPLETED);
+        testJob.setItineraryId(7L);
+        testJob.setItineraryVersion(2L);
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+        when(itineraryRepository.findById(7L)).thenReturn(Optional.of(itinerary(3L)));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123/result"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getJobResult_NotCompleted_Returns404() throws Exception {
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123/result"))
+                .andExpect(status().isNotFound());
+
+        verifyNoInteractions(itineraryRepository);
     }
 
     @Test
@@ -121,6 +244,149 @@ class JobControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void getJobStatus_ReturnsStatusETag() throws Exception {
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"PENDING\""));
+    }
+
+    @Test
+    void getJobStatus_Processing_ReturnsProgressAndPartialDays() throws Exception {
+        testJob.setStatus(Job.JobStatus.PROCESSING);
+        testJob.setPhase(Job.Phase.MODEL_STREAMING);
+        testJob.setDaysCompleted(1);
+        testJob.setTotalDays(12);
+        testJob.setPartialResult("[{\"day\":1}]");
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"PROCESSING-MODEL_STREAMING-1\""))
+                .andExpect(jsonPath("$.phase").value("MODEL_STREAMING"))
+                .andExpect(jsonPath("$.daysCompleted").value(1))
+                .andExpect(jsonPath("$.totalDays").value(12))
+                .andExpect(jsonPath("$.partialResult").value("[{\"day\":1}]"));
+    }
+
+    @Test
+    void getJobStatus_IfNoneMatchUnchanged_Returns304WithoutReadingResult() throws Exception {
+        when(jobRepository.findStatusViewByJobId("job-123")).thenReturn(Optional.of(statusView(Job.JobStatus.PROCESSING)));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123").header("If-None-Match", "W/\"PROCESSING\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(jobRepository, never()).findByJobId(anyString());
+    }
+
+    @Test
+    void getJobStatus_IfNoneMatchStale_ReturnsJob() throws Exception {
+        testJob.setStatus(Job.JobStatus.COMPLETED);
+        when(jobRepository.findStatusViewByJobId("job-123")).thenReturn(Optional.of(statusView(Job.JobStatus.COMPLETED)));
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+
+        mockMvc.perform(get("/api/v1/jobs/job-123").header("If-None-Match", "W/\"PROCESSING\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void waitForJobStatus_FinishedJob_AnswersImmediately() throws Exception {
+        testJob.setStatus(Job.JobStatus.COMPLETED);
+        when(jobRepository.findStatusViewByJobId("job-123")).thenReturn(Optional.of(statusView(Job.JobStatus.COMPLETED)));
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+
+        MvcResult pending = mockMvc.perform(get("/api/v1/jobs/job-123").param("waitSeconds", "25"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+        verify(jobStatusNotifier, never()).subscribe(anyString(), anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void waitForJobStatus_AnswersWhenStatusChanges() throws Exception {
+        when(jobRepository.findStatusViewByJobId("job-123")).thenReturn(Optional.of(statusView(Job.JobStatus.PENDING)));
+        ArgumentCaptor<Consumer<JobResponse>> listener = ArgumentCaptor.forClass(Consumer.class);
+        when(jobStatusNotifier.subscribe(eq("job-123"), eq("PENDING"), listener.capture())).thenReturn(() -> { });
+
+        MvcResult pending = mockMvc.perform(get("/api/v1/jobs/job-123").param("waitSeconds", "25")
+                        .header("If-None-Match", "W/\"PENDING\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        testJob.setStatus(Job.JobStatus.PROCESSING);
+        listener.getValue().accept(JobResponse.from(testJob));
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"PROCESSING\""))
+                .andExpect(jsonPath("$.status").value("PROCESSING"));
+    }
+
+    @Test
+    void streamJobStatus_NotFound_Returns404() throws Exception {
+        when(jobRepository.findByJobId("job-999")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/jobs/job-999/events"))
+                .andExpect(status().isNotFound());
+
+        verify(jobStatusNotifier, never()).stream(any(Job.class));
+    }
+
+    @Test
+    void streamJobStatus_Found_OpensStream() throws Exception {
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+        when(jobStatusNotifier.stream(testJob)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/v1/jobs/job-123/events"))
+                .andExpect(request().asyncStarted());
+
+        verify(jobStatusNotifier).stream(testJob);
+    }
+
+    @Test
+    void cancelJob_Running_ReturnsCancelledJob() throws Exception {
+        testJob.setStatus(Job.JobStatus.PROCESSING);
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+        when(jobCancellation.cancel(testJob)).thenAnswer(invocation -> {
+            testJob.setStatus(Job.JobStatus.CANCELLED);
+            return true;
+        });
+
+        mockMvc.perform(delete("/api/v1/jobs/job-123/run"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+    }
+
+    @Test
+    void cancelJob_AlreadyCompleted_Returns409() throws Exception {
+        testJob.setStatus(Job.JobStatus.COMPLETED);
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
+        when(jobCancellation.cancel(testJob)).thenReturn(false);
+
+        mockMvc.perform(delete("/api/v1/jobs/job-123/run"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void cancelJob_OtherUsersJob_Returns404() throws Exception {
+        Job otherJob = new Job("job-123", "ITINERARY_GENERATION", 1L, 2L);
+        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(otherJob));
+
+        mockMvc.perform(delete("/api/v1/jobs/job-123/run"))
+                .andExpect(status().isNotFound());
+
+        verify(jobCancellation, never()).cancel(any(Job.class));
+    }
+
     @Test
     void deleteJob_Found_ReturnsNoContent() throws Exception {
         when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
@@ -0,0 +1,54 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptationScopeTest {
+
+    private JsonNode days;
+
+    @BeforeEach
+    void setUp() {
+        ArrayNode array = new ObjectMapper().createArrayNode();
+        for (int day = 1; day <= 7; day++) {
+            array.addObject().put("day", day).put("date", "2025-05-0" + day);
+        }
+        days = array;
+    }
+
+    @Test
+    void singleDayReference() {
+        assertEquals(Set.of(3), AdaptationScope.affectedDays("Swap day 3 for a beach day", days));
+    }
+
+    @Test
+    void listAndRangeReferences() {
+        assertEquals(Set.of(2, 5), AdaptationScope.affectedDays("Days 2 and 5 need less walking", days));
+        assertEquals(Set.of(2, 3, 4), AdaptationScope.affectedDays("Make days 2-4 cheaper", days));
+        assertEquals(Set.of(4, 5, 6), AdaptationScope.affectedDays("day 4 to day 6 should be outdoors", days));
+    }
+
+    @Test
+    void ordinalAndDateReferences() {
+        assertEquals(Set.of(1, 7), AdaptationScope.affectedDays("Relax on the first day and the last day", days));
+        assertEquals(Set.of(3), AdaptationScope.affectedDays("Museums closed on 2025-05-03", days));
+    }
+
+    @Test
+    void daysOutsideItineraryAreIgnored() {
+        assertEquals(Set.of(), AdaptationScope.affectedDays("Add something on day 12", days));
+    }
+
+    @Test
+    void tripWideRequestHasNoScope() {
+        assertTrue(AdaptationScope.affectedDays("Make it 3 days shorter and more relaxed", days).isEmpty());
+        assertTrue(AdaptationScope.affectedDays(null, days).isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+package com.travelplanner.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void acquire_RejectsBeyondLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, Duration.ofSeconds(10));
+
+        assertTrue(limiter.acquire(Duration.ZERO));
+        assertTrue(limiter.acquire(Duration.ZERO));
+        assertFalse(limiter.acquire(Duration.ofMillis(10)));
+    }
+
+    @Test
+    void onSuccess_IncreasesLimitWhenSaturated() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 0.5, Duration.ofSeconds(10));
+        limiter.acquire(Duration.ZERO);
+        limiter.acquire(Duration.ZERO);
+
+        limiter.onSuccess(Duration.ofMillis(100).toNanos());
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void onDropped_DecreasesLimitMultiplicatively() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 0.5, Duration.ofSeconds(10));
+        limiter.acquire(Duration.ZERO);
+
+        limiter.onDropped();
+
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void slowSuccess_TreatedAsCongestion() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 0.5, Duration.ofSeconds(1));
+        limiter.acquire(Duration.ZERO);
+
+        limiter.onSuccess(Duration.ofSeconds(5).toNanos());
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void slowSuccessesAlone_ShrinkTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 50, 0.9, Duration.ofSeconds(20));
+
+        // Every call succeeds, but each takes longer than the threshold (still under a 60s timeout)
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire(Duration.ZERO));
+            limiter.onSuccess(Duration.ofSeconds(30).toNanos());
+        }
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void limitNeverDropsBelowMinimum() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 10, 0.1, Duration.ofSeconds(10));
+        limiter.acquire(Duration.ZERO);
+
+        limiter.onDropped();
+
+        assertEquals(2, limiter.getLimit());
+    }
+}
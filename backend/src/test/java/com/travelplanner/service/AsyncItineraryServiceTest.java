@@ -1,20 +1,31 @@
 package com.travelplanner.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.exception.GeminiApiException;
 import com.travelplanner.model.Itinerary;
 import com.travelplanner.model.Job;
-import com.travelplanner.repository.JobRepository;
+import com.travelplanner.model.Trip;
+import com.travelplanner.model.User;
 import com.travelplanner.repository.ItineraryRepository;
 import com.travelplanner.repository.TripRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,7 +38,10 @@ class AsyncItineraryServiceTest {
     private ItineraryService itineraryService;
 
     @Mock
-    private JobRepository jobRepository;
+    private JobQueue jobQueue;
+
+    @Mock
+    private JobStatusNotifier jobStatusNotifier;
 
     @Mock
     private ItineraryRepository itineraryRepository;
@@ -35,109 +49,253 @@ class AsyncItineraryServiceTest {
     @Mock
     private TripRepository tripRepository;
 
+    @Mock
+    private RetryPolicy retryPolicy;
+
+    @Mock
+    private BulkheadExecutor generationExecutor;
+
     @InjectMocks
     private AsyncItineraryService asyncItineraryService;
 
-    @Captor
-    private ArgumentCaptor<Job> jobCaptor;
-
     private Job testJob;
 
     @BeforeEach
     void setUp() {
         testJob = new Job("job-123", "ITINERARY_GENERATION", 1L, 1L);
+        testJob.setStatus(Job.JobStatus.PROCESSING);
+        testJob.setLeaseOwner("worker-1");
     }
 
     @Test
-    void generateItineraryAsync_Success() {
-        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
-        when(jobRepository.save(any(Job.class))).thenReturn(testJob);
+    void process_Generation_Success() {
+        Itinerary mockItinerary = new Itinerary();
+        mockItinerary.setContent("{\"days\": []}");
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenReturn(mockItinerary);
+        when(jobQueue.complete(testJob, mockItinerary)).thenReturn(true);
 
+        asyncItineraryService.process(testJob);
+
+        verify(jobQueue).complete(testJob, mockItinerary);
+        verify(jobQueue, never()).fail(any(Job.class), anyString());
+        verify(jobStatusNotifier).publish(testJob);
+    }
+
+    @Test
+    void process_Regeneration_BypassesPromptCache() {
+        testJob.setJobType("ITINERARY_REGENERATION");
         Itinerary mockItinerary = new Itinerary();
         mockItinerary.setContent("{\"days\": []}");
-        when(itineraryService.generateItinerary(1L, 1L)).thenReturn(mockItinerary);
+        when(itineraryService.regenerateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenReturn(mockItinerary);
 
-        asyncItineraryService.generateItineraryAsync("job-123", 1L, 1L);
+        asyncItineraryService.process(testJob);
 
-        verify(jobRepository, times(2)).save(jobCaptor.capture());
-        Job finalJob = jobCaptor.getAllValues().get(jobCaptor.getAllValues().size() - 1);
-        assertEquals(Job.JobStatus.COMPLETED, finalJob.getStatus());
-        assertNotNull(finalJob.getCompletedAt());
-        assertEquals("{\"days\": []}", finalJob.getResult());
+        verify(itineraryService, never()).generateItinerary(anyLong(), anyLong(), any(GenerationProgress.class));
+        verify(jobQueue).complete(testJob, mockItinerary);
     }
 
     @Test
-    void generateItineraryAsync_JobNotFound() {
-        when(jobRepository.findByJobId("job-999")).thenReturn(Optional.empty());
+    void process_UnknownJobType_FailsJob() {
+        testJob.setJobType("SOMETHING_ELSE");
 
-        assertThrows(RuntimeException.class, () -> {
-            asyncItineraryService.generateItineraryAsync("job-999", 1L, 1L);
-        });
+        asyncItineraryService.process(testJob);
+
+        verify(jobQueue).fail(eq(testJob), contains("Unknown job type"));
+    }
+
+    @Test
+    void process_ItineraryServiceFails_FailsJob() {
+        // Last allowed attempt
+        testJob.setRetryCount(2);
+        RuntimeException failure = new RuntimeException("Gemini API error");
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenThrow(failure);
+        when(retryPolicy.retryDelay(testJob, failure)).thenReturn(Optional.empty());
+
+        asyncItineraryService.process(testJob);
+
+        ArgumentCaptor<String> error = ArgumentCaptor.forClass(String.class);
+        verify(jobQueue).fail(eq(testJob), error.capture());
+        assertTrue(error.getValue().contains("Gemini API error"));
+        assertTrue(error.getValue().contains("3 attempts"));
+        verify(jobQueue, never()).retry(any(Job.class), any(Duration.class));
     }
 
     @Test
-    void generateItineraryAsync_ItineraryServiceFails_UpdatesJobToFailed() {
-        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
-        when(jobRepository.save(any(Job.class))).thenReturn(testJob);
-
-        // Simulate failure after all retries
-        when(itineraryService.generateItinerary(1L, 1L)).thenThrow(new RuntimeException("Gemini API error"));
-
-        asyncItineraryService.generateItineraryAsync("job-123", 1L, 1L);
-
-        // Find the last saved job
-        verify(jobRepository, atLeastOnce()).save(jobCaptor.capture());
-        Job lastJob = jobCaptor.getAllValues().get(jobCaptor.getAllValues().size() - 1);
-        assertEquals(Job.JobStatus.FAILED, lastJob.getStatus());
-        assertNotNull(lastJob.getErrorMessage());
-        assertTrue(lastJob.getErrorMessage().contains("Gemini API error") || 
-                   lastJob.getErrorMessage().contains("3 attempts"));
+    void process_RetryableFailure_RequeuesInsteadOfSleeping() {
+        RuntimeException failure = new RuntimeException("Transient error");
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenThrow(failure);
+        when(retryPolicy.retryDelay(testJob, failure)).thenReturn(Optional.of(Duration.ofSeconds(5)));
+        when(jobQueue.retry(testJob, Duration.ofSeconds(5))).thenReturn(true);
+
+        asyncItineraryService.process(testJob);
+
+        verify(retryPolicy).recordAttempt(testJob);
+        verify(itineraryService, times(1)).generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class));
+        verify(jobQueue).retry(testJob, Duration.ofSeconds(5));
+        verify(jobQueue, never()).fail(any(Job.class), anyString());
+        verify(jobStatusNotifier).publish(testJob);
     }
 
     @Test
-    void generateItineraryAsync_TransientFailureThenSuccess() {
-        when(jobRepository.findByJobId("job-123")).thenReturn(Optional.of(testJob));
-        when(jobRepository.save(any(Job.class))).thenReturn(testJob);
+    void process_RetryAfterLeaseLost_DoesNotPublish() {
+        RuntimeException failure = new RuntimeException("Transient error");
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenThrow(failure);
+        when(retryPolicy.retryDelay(testJob, failure)).thenReturn(Optional.of(Duration.ofSeconds(5)));
+        when(jobQueue.retry(testJob, Duration.ofSeconds(5))).thenReturn(false);
 
-        // First call fails, second succeeds
-        Itinerary mockItinerary = new Itinerary();
-        mockItinerary.setContent("{\"days\": []}");
-        when(itineraryService.generateItinerary(1L, 1L))
-                .thenThrow(new RuntimeException("Transient error"))
-                .thenReturn(mockItinerary);
+        asyncItineraryService.process(testJob);
+
+        verify(jobQueue, never()).fail(any(Job.class), anyString());
+        verify(jobStatusNotifier, never()).publish(any(Job.class));
+    }
+
+    @Test
+    void process_NotRetryable_FailsOnFirstAttempt() {
+        GeminiApiException failure = new GeminiApiException(400, "Bad request", null);
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenThrow(failure);
+        when(retryPolicy.retryDelay(testJob, failure)).thenReturn(Optional.empty());
 
-        asyncItineraryService.generateItineraryAsync("job-123", 1L, 1L);
+        asyncItineraryService.process(testJob);
 
-        verify(itineraryService, times(2)).generateItinerary(1L, 1L);
-        verify(jobRepository, atLeast(2)).save(any(Job.class));
+        verify(itineraryService, times(1)).generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class));
+        verify(jobQueue).fail(testJob, "Bad request");
     }
 
     @Test
-    void adaptItineraryAsync_Success() {
-        when(jobRepository.findByJobId("job-456")).thenReturn(Optional.of(testJob));
-        when(jobRepository.save(any(Job.class))).thenReturn(testJob);
+    void process_Interrupted_LeavesJobForRequeue() {
+        when(itineraryService.generateItinerary(eq(1L), eq(1L), any(GenerationProgress.class))).thenAnswer(invocation -> {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Gemini");
+        });
+
+        try {
+            asyncItineraryService.process(testJob);
+        } finally {
+            Thread.interrupted();
+        }
+
+        verify(jobQueue, never()).fail(any(Job.class), anyString());
+        verify(jobQueue, never()).complete(any(Job.class), any(Itinerary.class));
+    }
+
+    @Test
+    void process_Adaptation_UsesPayloadAsContext() {
+        testJob.setJobType("ITINERARY_ADAPTATION");
+        testJob.setPayload("Add more outdoor activities");
 
         Itinerary mockItinerary = new Itinerary();
         mockItinerary.setContent("{\"days\": [{\"day\": 1}]}");
-        when(itineraryService.adaptItinerary(1L, 1L, "Add more outdoor activities")).thenReturn(mockItinerary);
+        when(itineraryService.adaptItinerary(eq(1L), eq(1L), eq("Add more outdoor activities"), any(GenerationProgress.class))).thenReturn(mockItinerary);
 
-        asyncItineraryService.adaptItineraryAsync("job-456", 1L, 1L, "Add more outdoor activities");
+        asyncItineraryService.process(testJob);
 
-        verify(jobRepository, atLeast(2)).save(any(Job.class));
-        verify(itineraryService).adaptItinerary(1L, 1L, "Add more outdoor activities");
+        verify(itineraryService).adaptItinerary(eq(1L), eq(1L), eq("Add more outdoor activities"), any(GenerationProgress.class));
+        verify(jobQueue).complete(testJob, mockItinerary);
     }
 
     @Test
-    void adaptItineraryAsync_Failure_UpdatesJobToFailed() {
-        when(jobRepository.findByJobId("job-456")).thenReturn(Optional.of(testJob));
-        when(jobRepository.save(any(Job.class))).thenReturn(testJob);
+    void process_AdaptationFails_FailsJob() {
+        testJob.setJobType("ITINERARY_ADAPTATION");
+        testJob.setPayload("test");
 
-        when(itineraryService.adaptItinerary(1L, 1L, "test")).thenThrow(new RuntimeException("Adaptation failed"));
+        when(itineraryService.adaptItinerary(eq(1L), eq(1L), eq("test"), any(GenerationProgress.class))).thenThrow(new RuntimeException("Adaptation failed"));
 
-        asyncItineraryService.adaptItineraryAsync("job-456", 1L, 1L, "test");
+        asyncItineraryService.process(testJob);
+
+        verify(jobQueue).fail(testJob, "Adaptation failed");
+    }
+
+    @Test
+    void streamItineraryAsync_RunsOnGenerationBulkheadThenReportsDone() {
+        Runnable whenDone = mock(Runnable.class);
+        Itinerary mockItinerary = new Itinerary();
+        mockItinerary.setContent("{\"days\": []}");
+        when(itineraryService.generateItineraryStreaming(eq(1L), eq(1L), any())).thenReturn(mockItinerary);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(generationExecutor).execute(any(Runnable.class));
+
+        asyncItineraryService.streamItineraryAsync(new SseEmitter(), 1L, 1L, whenDone);
+
+        verify(generationExecutor).execute(any(Runnable.class));
+        verify(itineraryService).generateItineraryStreaming(eq(1L), eq(1L), any());
+        verify(whenDone).run();
+    }
+
+    @Test
+    void process_ConcurrentJobsForTheSamePrompt_ShareOneStreamAndSeeDaysBeforeItEnds() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        String dayOne = "{\"itinerary\": [{\"day\": 1, \"activities\": [{\"description\": \"Louvre\"}]},";
+        String dayTwo = " {\"day\": 2, \"activities\": [{\"description\": \"Orsay\"}]}]}";
+        CountDownLatch release = new CountDownLatch(1);
+        GeminiTransport transport = mock(GeminiTransport.class);
+        doAnswer(invocation -> {
+            java.util.function.Consumer<String> onEvent = invocation.getArgument(1);
+            onEvent.accept(streamEvent(dayOne));
+            // The model is still working on day 2
+            release.await(5, TimeUnit.SECONDS);
+            onEvent.accept(streamEvent(dayTwo));
+            return null;
+        }).when(transport).stream(anyString(), any());
+
+        // Real generation path from the job down to the transport
+        GeminiService geminiService = new GeminiService();
+        ReflectionTestUtils.setField(geminiService, "transport", transport);
+        ReflectionTestUtils.setField(geminiService, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(geminiService, "callGuard",
+                new GeminiCallGuard(10, 1, 50, 0.9, 20000, 30000, 20, 10, 0.5, 30, 2, meterRegistry));
+        ReflectionTestUtils.setField(geminiService, "hedger",
+                new GeminiHedger(false, 0.95, 5000, 200, 20, 0.05, 5, false, meterRegistry));
+        geminiService.registerMetrics();
+        PromptBuilderService promptBuilderService = mock(PromptBuilderService.class);
+        when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Plan two days in Paris");
+        ItineraryService realItineraryService = new ItineraryService();
+        ReflectionTestUtils.setField(realItineraryService, "itineraryRepository", itineraryRepository);
+        ReflectionTestUtils.setField(realItineraryService, "tripRepository", tripRepository);
+        ReflectionTestUtils.setField(realItineraryService, "geminiService", geminiService);
+        ReflectionTestUtils.setField(realItineraryService, "promptBuilderService", promptBuilderService);
+        ReflectionTestUtils.setField(realItineraryService, "promptCache", mock(ItineraryPromptCache.class));
+        ReflectionTestUtils.setField(realItineraryService, "fanOutGenerator", mock(FanOutItineraryGenerator.class));
+        ReflectionTestUtils.setField(asyncItineraryService, "itineraryService", realItineraryService);
+        ReflectionTestUtils.setField(asyncItineraryService, "meterRegistry", meterRegistry);
+
+        User user = new User();
+        user.setId(1L);
+        Trip trip = new Trip();
+        trip.setId(1L);
+        trip.setDestination("Paris");
+        trip.setUser(user);
+        trip.setStartDate(new Date());
+        trip.setEndDate(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Job first = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        Job second = new Job("job-2", "ITINERARY_GENERATION", 1L, 1L);
+        Thread leader = new Thread(() -> asyncItineraryService.process(first));
+        leader.start();
+        // Day 1 is recorded while the stream is still open
+        verify(jobQueue, timeout(5000)).progress(eq(first), eq(Job.Phase.MODEL_STREAMING), eq(1), any(), anyString());
+        Thread joiner = new Thread(() -> asyncItineraryService.process(second));
+        joiner.start();
+        // The second job joins the open stream and is handed day 1 at once
+        verify(jobQueue, timeout(5000)).progress(eq(second), eq(Job.Phase.MODEL_STREAMING), eq(1), any(), anyString());
+        release.countDown();
+        leader.join(5000);
+        joiner.join(5000);
+
+        verify(transport, times(1)).stream(anyString(), any());
+        verify(transport, never()).generate(anyString(), anyString());
+        assertEquals(1.0, meterRegistry.counter("gemini.requests.coalesced").count());
+        verify(jobQueue).progress(eq(first), eq(Job.Phase.MODEL_STREAMING), eq(2), any(), anyString());
+        verify(jobQueue).progress(eq(second), eq(Job.Phase.MODEL_STREAMING), eq(2), any(), anyString());
+        verify(jobQueue).complete(eq(first), any(Itinerary.class));
+        verify(jobQueue).complete(eq(second), any(Itinerary.class));
+    }
 
-        verify(jobRepository, atLeast(2)).save(jobCaptor.capture());
-        Job lastJob = jobCaptor.getAllValues().get(jobCaptor.getAllValues().size() - 1);
-        assertEquals(Job.JobStatus.FAILED, lastJob.getStatus());
+    private static String streamEvent(String text) throws Exception {
+        return new ObjectMapper().writeValueAsString(Map.of("candidates", List.of(Map.of(
+                "content", Map.of("parts", List.of(Map.of("text", text)))))));
     }
 }
@@ -0,0 +1,131 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BulkheadExecutor executor;
+    private CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private Runnable blocking(CountDownLatch started) {
+        return () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    @Test
+    void platform_FullPoolAndQueue_Rejects() throws Exception {
+        executor = BulkheadExecutor.platform("test", 1, 1, BulkheadExecutor.Overflow.REJECT, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+
+        executor.execute(blocking(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(blocking(new CountDownLatch(1)));
+
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+        assertEquals(1, executor.getActiveCount());
+        assertEquals(1, executor.getQueuedCount());
+        assertEquals(1.0, meterRegistry.counter("executor.bulkhead.rejected", "bulkhead", "test").count());
+        assertEquals(1.0, meterRegistry.get("executor.bulkhead.queued").tag("bulkhead", "test").gauge().value());
+    }
+
+    @Test
+    void platform_DropOverflow_DiscardsTask() throws Exception {
+        executor = BulkheadExecutor.platform("test", 1, 0, BulkheadExecutor.Overflow.DROP, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        executor.execute(blocking(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(ran::incrementAndGet);
+
+        assertEquals(0, ran.get());
+        assertEquals(1.0, meterRegistry.counter("executor.bulkhead.rejected", "bulkhead", "test").count());
+    }
+
+    @Test
+    void platform_CallerRunsOverflow_RunsOnSubmitter() throws Exception {
+        executor = BulkheadExecutor.platform("test", 1, 0, BulkheadExecutor.Overflow.CALLER_RUNS, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread[] ranOn = new Thread[1];
+
+        executor.execute(blocking(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> ranOn[0] = Thread.currentThread());
+
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+
+    @Test
+    void platform_RecordsWaitTime() throws Exception {
+        executor = BulkheadExecutor.platform("test", 1, 0, BulkheadExecutor.Overflow.REJECT, meterRegistry);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("executor.bulkhead.wait").tag("bulkhead", "test").timer().count());
+    }
+
+    @Test
+    void shutdown_RejectsNewTasksEvenWhenOverflowIsCallerRuns() {
+        executor = BulkheadExecutor.platform("test", 1, 0, BulkheadExecutor.Overflow.CALLER_RUNS, meterRegistry);
+        executor.shutdown();
+
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+    }
+
+    @Test
+    void virtual_SemaphoreLimitsConcurrencyAndQueue() throws Exception {
+        executor = BulkheadExecutor.virtual("test", 2, 1, BulkheadExecutor.Overflow.REJECT, meterRegistry);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch thirdStarted = new CountDownLatch(1);
+
+        executor.execute(blocking(started));
+        executor.execute(blocking(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(blocking(thirdStarted));
+
+        // Two permits taken: the third task waits for one
+        assertFalse(thirdStarted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(1, executor.getQueuedCount());
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+
+        release.countDown();
+        assertTrue(thirdStarted.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
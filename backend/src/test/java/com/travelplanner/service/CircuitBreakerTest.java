@@ -0,0 +1,117 @@
+package com.travelplanner.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private MutableClock clock;
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+        breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofSeconds(30), 1, clock);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure(null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(null);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenProbeSuccess_ClosesBreaker() {
+        openBreaker();
+        clock.advance(Duration.ofSeconds(31));
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire()); // only one probe allowed
+        breaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenProbeFailure_ReopensBreaker() {
+        openBreaker();
+        clock.advance(Duration.ofSeconds(31));
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(null);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void retryAfter_SingleFailure_DoesNotOpenBreaker() {
+        breaker.onFailure(Duration.ofSeconds(120));
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void retryAfter_LengthensOpenPeriodOnceThresholdTrips() {
+        breaker.onSuccess();
+        breaker.onSuccess();
+        breaker.onFailure(null);
+        breaker.onFailure(Duration.ofSeconds(120));
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock.advance(Duration.ofSeconds(60));
+        assertFalse(breaker.tryAcquire());
+        clock.advance(Duration.ofSeconds(61));
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(null);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
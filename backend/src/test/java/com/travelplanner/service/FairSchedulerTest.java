@@ -0,0 +1,131 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.ItineraryRepository;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FairSchedulerTest {
+
+    private static final List<String> GENERATION = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+    private static final List<String> ADAPTATION = List.of("ITINERARY_ADAPTATION");
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private ItineraryRepository itineraryRepository;
+
+    @Mock
+    private JobWorker jobWorker;
+
+    @InjectMocks
+    private FairScheduler fairScheduler;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(fairScheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(fairScheduler, "firstItineraryWeight", 4.0);
+        ReflectionTestUtils.setField(fairScheduler, "interactiveWeight", 2.0);
+        ReflectionTestUtils.setField(fairScheduler, "bulkWeight", 1.0);
+        ReflectionTestUtils.setField(fairScheduler, "defaultRunSeconds", 30L);
+        fairScheduler.registerMetrics();
+    }
+
+    @Test
+    void schedule_UserWithBacklog_QueuesBehindOwnJobsOnly() {
+        long backlogEnd = System.currentTimeMillis() + 600_000;
+        when(jobWorker.bulkheadJobTypes("ITINERARY_ADAPTATION")).thenReturn(ADAPTATION);
+        when(jobWorker.averageRunTime("ITINERARY_ADAPTATION")).thenReturn(Optional.of(Duration.ofSeconds(20)));
+        when(jobRepository.findMaxFairTag(1L, ADAPTATION, Job.JobStatus.PENDING)).thenReturn(Optional.of(backlogEnd));
+        when(jobRepository.findMaxFairTag(2L, ADAPTATION, Job.JobStatus.PENDING)).thenReturn(Optional.empty());
+
+        Job heavy = new Job("job-1", "ITINERARY_ADAPTATION", 1L, 1L);
+        Job light = new Job("job-2", "ITINERARY_ADAPTATION", 2L, 2L);
+        fairScheduler.schedule(heavy, false);
+        fairScheduler.schedule(light, false);
+
+        assertEquals(Job.Priority.BULK, heavy.getPriority());
+        assertEquals(backlogEnd + 20_000, heavy.getFairTag());
+        assertTrue(light.getFairTag() < heavy.getFairTag());
+        assertTrue(light.getFairTag() <= System.currentTimeMillis() + 20_000);
+    }
+
+    @Test
+    void schedule_InteractiveOutranksBulkFromTheSameStart() {
+        when(jobWorker.bulkheadJobTypes("ITINERARY_ADAPTATION")).thenReturn(ADAPTATION);
+        when(jobWorker.averageRunTime("ITINERARY_ADAPTATION")).thenReturn(Optional.empty());
+        when(jobRepository.findMaxFairTag(anyLong(), eq(ADAPTATION), eq(Job.JobStatus.PENDING))).thenReturn(Optional.empty());
+
+        Job interactive = new Job("job-1", "ITINERARY_ADAPTATION", 1L, 1L);
+        Job bulk = new Job("job-2", "ITINERARY_ADAPTATION", 2L, 2L);
+        fairScheduler.schedule(bulk, false);
+        fairScheduler.schedule(interactive, true);
+
+        assertEquals(Job.Priority.INTERACTIVE, interactive.getPriority());
+        // 30 s default run time: weight 2 puts the interactive job 15 s earlier
+        assertTrue(bulk.getFairTag() - interactive.getFairTag() >= 14_000);
+        verify(itineraryRepository, never()).existsByUserId(anyLong());
+    }
+
+    @Test
+    void schedule_FirstItineraryGetsTheLargestBoost() {
+        when(jobWorker.bulkheadJobTypes("ITINERARY_GENERATION")).thenReturn(GENERATION);
+        when(jobWorker.averageRunTime("ITINERARY_GENERATION")).thenReturn(Optional.of(Duration.ofSeconds(40)));
+        when(jobRepository.findMaxFairTag(eq(1L), eq(GENERATION), eq(Job.JobStatus.PENDING))).thenReturn(Optional.empty());
+        when(itineraryRepository.existsByUserId(1L)).thenReturn(false);
+
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        long before = System.currentTimeMillis();
+        fairScheduler.schedule(job, true);
+
+        assertEquals(Job.Priority.FIRST_ITINERARY, job.getPriority());
+        assertTrue(job.getFairTag() - before >= 10_000 && job.getFairTag() - before < 11_000);
+    }
+
+    @Test
+    void sampleQueueDepths_RecordsDistributionWithoutPerUserSeries() {
+        when(jobRepository.countByStatusGroupByUser(Job.JobStatus.PENDING))
+                .thenReturn(List.of(depth(1L, 80), depth(2L, 1), depth(3L, 2)));
+
+        fairScheduler.sampleQueueDepths();
+
+        assertEquals(3, meterRegistry.summary("jobs.queue.user.depth").count());
+        assertEquals(80.0, meterRegistry.summary("jobs.queue.user.depth").max());
+        assertEquals(3.0, meterRegistry.get("jobs.queue.users").gauge().value());
+        assertEquals(80.0, meterRegistry.get("jobs.queue.user.depth.max").gauge().value());
+    }
+
+    private static JobRepository.UserQueueDepth depth(Long userId, long depth) {
+        return new JobRepository.UserQueueDepth() {
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public long getDepth() {
+                return depth;
+            }
+        };
+    }
+}
@@ -0,0 +1,215 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.dto.prompt.ItineraryPrompt;
+import com.travelplanner.exception.GeminiApiException;
+import com.travelplanner.exception.UnusableModelOutputException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FanOutItineraryGeneratorTest {
+
+    @Mock
+    private GeminiService geminiService;
+
+    @Mock
+    private PromptBuilderService promptBuilderService;
+
+    @InjectMocks
+    private FanOutItineraryGenerator generator;
+
+    private RetryPolicy retryPolicy;
+    private SimpleMeterRegistry meterRegistry;
+    private ItineraryPrompt prompt;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retryPolicy = new RetryPolicy();
+        ReflectionTestUtils.setField(retryPolicy, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 3);
+        ReflectionTestUtils.setField(retryPolicy, "baseDelayMs", 0L);
+        ReflectionTestUtils.setField(retryPolicy, "maxDelayMs", 0L);
+        ReflectionTestUtils.setField(retryPolicy, "budgetRatio", 0.2);
+        ReflectionTestUtils.setField(retryPolicy, "maxBurst", 10.0);
+        retryPolicy.init();
+
+        ReflectionTestUtils.setField(generator, "retryPolicy", retryPolicy);
+        ReflectionTestUtils.setField(generator, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(generator, "fanOutExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(generator, "enabled", true);
+        ReflectionTestUtils.setField(generator, "minDays", 8);
+        ReflectionTestUtils.setField(generator, "chunkDays", 4);
+        ReflectionTestUtils.setField(generator, "rangeRetries", 1);
+        generator.registerMetrics();
+
+        prompt = ItineraryPrompt.builder()
+                .destination("Tokyo")
+                .startDate(LocalDate.of(2025, 5, 1))
+                .endDate(LocalDate.of(2025, 5, 10))
+                .build();
+    }
+
+    private static String days(int from, int to) {
+        StringBuilder days = new StringBuilder("{\"itinerary\": [");
+        for (int day = from; day <= to; day++) {
+            days.append(day > from ? "," : "").append("{\"day\": ").append(day).append(", \"theme\": \"Day ").append(day)
+                    .append("\", \"activities\": [{\"description\": \"Walk\"}]}");
+        }
+        return days.append("]}").toString();
+    }
+
+    @Test
+    void shouldFanOut_OnlyForLongTrips() {
+        assertTrue(generator.shouldFanOut(prompt));
+
+        prompt.setEndDate(LocalDate.of(2025, 5, 4));
+        assertFalse(generator.shouldFanOut(prompt));
+    }
+
+    @Test
+    void generate_AssemblesRangesInOrder() throws Exception {
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE))
+                .thenReturn("{\"trip_summary\": \"Ten days in Tokyo\", \"essential_travel_tips\": [\"Get a Suica card\"]}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS)).thenReturn(days(1, 4));
+        when(geminiService.generateJson("range 5-8", ItinerarySchemas.DAYS)).thenReturn(days(5, 8));
+        when(geminiService.generateJson("range 9-10", ItinerarySchemas.DAYS)).thenReturn(days(9, 10));
+
+        JsonNode result = new ObjectMapper().readTree(generator.generate(prompt));
+
+        assertEquals("Ten days in Tokyo", result.path("trip_summary").asText());
+        assertEquals("Get a Suica card", result.path("essential_travel_tips").path(0).asText());
+        assertEquals(10, result.path("itinerary").size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, result.path("itinerary").path(i).path("day").asInt());
+        }
+        assertEquals("2025-05-10", result.path("itinerary").path(9).path("date").asText());
+    }
+
+    @Test
+    void generate_RetriesOnlyTheIncompleteRange() {
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS)).thenReturn(days(1, 4));
+        when(geminiService.generateJson("range 5-8", ItinerarySchemas.DAYS)).thenReturn(days(5, 6), days(5, 8));
+        when(geminiService.generateJson("range 9-10", ItinerarySchemas.DAYS)).thenReturn(days(9, 10));
+
+        generator.generate(prompt);
+
+        verify(geminiService, times(1)).generateJson("range 1-4", ItinerarySchemas.DAYS);
+        verify(geminiService, times(2)).generateJson("range 5-8", ItinerarySchemas.DAYS);
+        verify(geminiService, times(1)).generateJson("range 9-10", ItinerarySchemas.DAYS);
+    }
+
+    @Test
+    void generate_FailsWhenRangeExhaustsRetries() {
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS)).thenReturn(days(1, 2));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> generator.generate(prompt));
+        assertTrue(error.getMessage().contains("days 1-4"));
+        verify(geminiService, times(2)).generateJson("range 1-4", ItinerarySchemas.DAYS);
+    }
+
+    @Test
+    void generate_UnusableOutputIsNotRetried() {
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS)).thenReturn("not json");
+
+        assertThrows(UnusableModelOutputException.class, () -> generator.generate(prompt));
+        verify(geminiService, times(1)).generateJson("range 1-4", ItinerarySchemas.DAYS);
+    }
+
+    @Test
+    void generate_RangeRetriesSpendTheSharedRetryBudget() {
+        ReflectionTestUtils.setField(retryPolicy, "maxBurst", 1.0);
+        retryPolicy.init();
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS))
+                .thenThrow(new GeminiApiException(503, "Service unavailable", null))
+                .thenReturn(days(1, 4));
+        when(geminiService.generateJson("range 5-8", ItinerarySchemas.DAYS))
+                .thenThrow(new GeminiApiException(503, "Service unavailable", null));
+
+        RuntimeException error = assertThrows(RuntimeException.class, () -> generator.generate(prompt));
+
+        // The one token went to the first range; the second range fails without retrying
+        assertTrue(error.getMessage().contains("days 5-8"));
+        verify(geminiService, times(1)).generateJson("range 5-8", ItinerarySchemas.DAYS);
+        assertEquals(1.0, meterRegistry.counter("jobs.retry", "outcome", "budget_exhausted").count());
+    }
+
+    @Test
+    void generate_SubmitFails_CancelsRangesAlreadySubmitted() {
+        List<Runnable> submitted = new ArrayList<>();
+        ReflectionTestUtils.setField(generator, "fanOutExecutor", (Executor) task -> {
+            if (!submitted.isEmpty()) {
+                throw new RejectedExecutionException("fan-out pool full");
+            }
+            submitted.add(task);
+        });
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+
+        assertThrows(RejectedExecutionException.class, () -> generator.generate(prompt));
+
+        assertTrue(((Future<?>) submitted.get(0)).isCancelled());
+    }
+
+    @Test
+    void generate_RetryIsResubmittedRatherThanSleptOnTheRangeThread() {
+        AtomicInteger submissions = new AtomicInteger();
+        ReflectionTestUtils.setField(generator, "fanOutExecutor", (Executor) task -> {
+            submissions.incrementAndGet();
+            task.run();
+        });
+        when(promptBuilderService.buildTripOutlinePrompt(prompt)).thenReturn("outline");
+        when(promptBuilderService.buildDayRangePrompt(eq(prompt), anyString(), anyInt(), anyInt()))
+                .thenAnswer(invocation -> "range " + invocation.getArgument(2) + "-" + invocation.getArgument(3));
+        when(geminiService.generateJson("outline", ItinerarySchemas.OUTLINE)).thenReturn("{\"trip_summary\": \"Tokyo\"}");
+        when(geminiService.generateJson("range 1-4", ItinerarySchemas.DAYS)).thenReturn(days(1, 4));
+        when(geminiService.generateJson("range 5-8", ItinerarySchemas.DAYS))
+                .thenThrow(new GeminiApiException(503, "Service unavailable", null))
+                .thenReturn(days(5, 8));
+        when(geminiService.generateJson("range 9-10", ItinerarySchemas.DAYS)).thenReturn(days(9, 10));
+
+        generator.generate(prompt);
+
+        // Three ranges, plus the retry as a task of its own
+        assertEquals(4, submissions.get());
+    }
+}
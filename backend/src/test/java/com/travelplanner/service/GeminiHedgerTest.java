@@ -0,0 +1,180 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiHedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        if (hedger != null) {
+            hedger.shutdown();
+        }
+    }
+
+    private GeminiHedger hedger(boolean enabled, double budgetRatio) {
+        // Hedge after 50 ms once a single latency sample exists
+        hedger = new GeminiHedger(enabled, 0.95, 50, 10, 1, budgetRatio, 5, false, meterRegistry);
+        return hedger;
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    /**
+     * First invocation blocks until interrupted; later ones answer immediately
+     */
+    private Supplier<String> slowThenFast(CountDownLatch primaryInterrupted) {
+        AtomicInteger invocations = new AtomicInteger();
+        return () -> {
+            if (invocations.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                    return "primary";
+                } catch (InterruptedException e) {
+                    primaryInterrupted.countDown();
+                    throw new RuntimeException("cancelled", e);
+                }
+            }
+            return "hedge";
+        };
+    }
+
+    @Test
+    void disabled_CallsThrough() {
+        GeminiHedger hedger = hedger(false, 1.0);
+
+        assertEquals("ok", hedger.call(() -> "ok"));
+        assertEquals(0, count("gemini.hedge.calls"));
+    }
+
+    @Test
+    void slowCall_IsHedgedAndLoserCancelled() throws Exception {
+        GeminiHedger hedger = hedger(true, 1.0);
+        hedger.call(() -> "warm-up");
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+
+        assertEquals("hedge", hedger.call(slowThenFast(primaryInterrupted)));
+
+        assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, count("gemini.hedge.issued"));
+        assertEquals(1, count("gemini.hedge.wins"));
+    }
+
+    @Test
+    void fastCall_IsNotHedged() {
+        GeminiHedger hedger = hedger(true, 1.0);
+        hedger.call(() -> "warm-up");
+
+        assertEquals("fast", hedger.call(() -> "fast"));
+        assertEquals(0, count("gemini.hedge.issued"));
+    }
+
+    @Test
+    void exhaustedBudget_WaitsForOriginalCall() {
+        GeminiHedger hedger = hedger(true, 0.0);
+        hedger.call(() -> "warm-up");
+
+        String result = hedger.call(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "original";
+        });
+
+        assertEquals("original", result);
+        assertEquals(0, count("gemini.hedge.issued"));
+        assertEquals(1, count("gemini.hedge.budget_exhausted"));
+    }
+
+    @Test
+    void failedAttempt_FallsBackToOtherAttempt() {
+        GeminiHedger hedger = hedger(true, 1.0);
+        hedger.call(() -> "warm-up");
+        AtomicInteger invocations = new AtomicInteger();
+
+        String result = hedger.call(() -> {
+            if (invocations.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                throw new RuntimeException("primary failed");
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+    }
+
+    @Test
+    void streaming_NoFragmentYet_IsHedgedAndOnlyTheOwnerRelays() throws Exception {
+        GeminiHedger hedger = hedger(true, 1.0);
+        hedger.call(() -> "warm-up");
+        CountDownLatch primaryInterrupted = new CountDownLatch(1);
+        AtomicInteger invocations = new AtomicInteger();
+        List<String> relayed = new CopyOnWriteArrayList<>();
+
+        String result = hedger.callStreaming(claim -> {
+            if (invocations.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    primaryInterrupted.countDown();
+                    throw new RuntimeException("cancelled", e);
+                }
+            }
+            if (!claim.getAsBoolean()) {
+                throw new IllegalStateException("lost");
+            }
+            relayed.add("hedge");
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertTrue(primaryInterrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("hedge"), relayed);
+        assertEquals(1, count("gemini.hedge.issued"));
+    }
+
+    @Test
+    void streaming_AlreadyRelaying_IsNotHedged() {
+        GeminiHedger hedger = hedger(true, 1.0);
+        hedger.call(() -> "warm-up");
+
+        String result = hedger.callStreaming(claim -> {
+            assertTrue(claim.getAsBoolean());
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return "streamed";
+        });
+
+        assertEquals("streamed", result);
+        assertEquals(0, count("gemini.hedge.issued"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiImageRequestTest {
+
+    @Test
+    void writeTo_StreamsPromptAndBase64Images(@TempDir Path dir) throws Exception {
+        byte[] first = new byte[200_000];
+        new Random(1).nextBytes(first);
+        byte[] second = "tiny".getBytes();
+        Path firstPath = Files.write(dir.resolve("a.jpg"), first);
+        Path secondPath = Files.write(dir.resolve("b.png"), second);
+
+        GeminiImageRequest request = new GeminiImageRequest("Describe \"these\" photos", List.of(
+                new GeminiImageRequest.ImagePart(firstPath, "image/jpeg"),
+                new GeminiImageRequest.ImagePart(secondPath, "image/png")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        request.writeTo(out);
+
+        JsonNode parts = new ObjectMapper().readTree(out.toByteArray()).path("contents").path(0).path("parts");
+        assertEquals(3, parts.size());
+        assertEquals("Describe \"these\" photos", parts.path(0).path("text").asText());
+        assertEquals("image/jpeg", parts.path(1).path("inlineData").path("mimeType").asText());
+        assertArrayEquals(first, Base64.getDecoder().decode(parts.path(1).path("inlineData").path("data").asText()));
+        assertArrayEquals(second, Base64.getDecoder().decode(parts.path(2).path("inlineData").path("data").asText()));
+    }
+
+    @Test
+    void writeTo_IsRepeatable(@TempDir Path dir) throws Exception {
+        Path photo = Files.write(dir.resolve("a.jpg"), new byte[]{1, 2, 3});
+        GeminiImageRequest request = new GeminiImageRequest("p", List.of(new GeminiImageRequest.ImagePart(photo, "image/jpeg")));
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        request.writeTo(first);
+        request.writeTo(second);
+
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+    }
+
+    @Test
+    void writeTo_MissingImageFails(@TempDir Path dir) {
+        GeminiImageRequest request = new GeminiImageRequest("p",
+                List.of(new GeminiImageRequest.ImagePart(dir.resolve("missing.jpg"), "image/jpeg")));
+
+        assertThrows(IOException.class, () -> request.writeTo(new ByteArrayOutputStream()));
+    }
+}
@@ -0,0 +1,122 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyKeys idempotencyKeys;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyKeys = memoryStore(60);
+    }
+
+    @SuppressWarnings("unchecked")
+    private IdempotencyKeys memoryStore(long inProgressSeconds) {
+        return new IdempotencyKeys("memory", 24, inProgressSeconds, 100, mock(ObjectProvider.class), meterRegistry);
+    }
+
+    private double requests(String outcome) {
+        return meterRegistry.counter("jobs.idempotency.requests", "operation", "generate", "outcome", outcome).count();
+    }
+
+    @Test
+    void reserve_NewKey_IsReservedForCaller() {
+        assertTrue(idempotencyKeys.reserve(1L, "generate", 10L, "key-1").isEmpty());
+        assertEquals(1.0, requests("new"));
+    }
+
+    @Test
+    void reserve_CompletedKey_ReturnsOriginalJob() {
+        idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+        idempotencyKeys.complete(1L, "generate", 10L, "key-1", "job-1");
+
+        Optional<IdempotencyKeys.Recorded> recorded = idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+
+        assertTrue(recorded.isPresent());
+        assertEquals("job-1", recorded.get().jobId());
+        assertEquals(1.0, requests("replayed"));
+    }
+
+    @Test
+    void reserve_WhileFirstRequestRunning_ReportsInProgress() {
+        idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+
+        Optional<IdempotencyKeys.Recorded> recorded = idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+
+        assertTrue(recorded.isPresent());
+        assertTrue(recorded.get().inProgress());
+        assertEquals(1.0, requests("in_progress"));
+    }
+
+    @Test
+    void reserve_ExpiredReservation_CanBeReservedAgain() {
+        IdempotencyKeys keys = memoryStore(0);
+        keys.reserve(1L, "generate", 10L, "key-1");
+
+        assertTrue(keys.reserve(1L, "generate", 10L, "key-1").isEmpty());
+    }
+
+    @Test
+    void release_AllowsRetryWithSameKey() {
+        idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+        idempotencyKeys.release(1L, "generate", 10L, "key-1");
+
+        assertTrue(idempotencyKeys.reserve(1L, "generate", 10L, "key-1").isEmpty());
+    }
+
+    @Test
+    void reserve_KeysAreScopedByUserOperationAndTrip() {
+        idempotencyKeys.reserve(1L, "generate", 10L, "key-1");
+        idempotencyKeys.complete(1L, "generate", 10L, "key-1", "job-1");
+
+        assertTrue(idempotencyKeys.reserve(2L, "generate", 10L, "key-1").isEmpty());
+        assertTrue(idempotencyKeys.reserve(1L, "adapt", 10L, "key-1").isEmpty());
+        assertTrue(idempotencyKeys.reserve(1L, "generate", 11L, "key-1").isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_RedisStore_UsesSetIfAbsentWithExpiry() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        ObjectProvider<StringRedisTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(redis);
+        IdempotencyKeys keys = new IdempotencyKeys("redis", 24, 60, 100, provider, meterRegistry);
+        when(values.setIfAbsent(anyString(), eq(""), eq(Duration.ofSeconds(60)))).thenReturn(false);
+        when(values.get(anyString())).thenReturn("job-1");
+
+        Optional<IdempotencyKeys.Recorded> recorded = keys.reserve(1L, "generate", 10L, "key-1");
+
+        assertEquals("job-1", recorded.get().jobId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reserve_RedisUnavailable_FallsBackToLocalStore() {
+        ObjectProvider<StringRedisTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenThrow(new RedisConnectionFailureException("down"));
+        IdempotencyKeys keys = new IdempotencyKeys("redis", 24, 60, 100, provider, meterRegistry);
+
+        assertTrue(keys.reserve(1L, "generate", 10L, "key-1").isEmpty());
+        keys.complete(1L, "generate", 10L, "key-1", "job-1");
+
+        assertEquals("job-1", keys.reserve(1L, "generate", 10L, "key-1").get().jobId());
+    }
+}
@@ -0,0 +1,83 @@
+package com.travelplanner.service;
+
+import com.travelplanner.dto.prompt.ItineraryPrompt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItineraryPromptCacheTest {
+
+    private ItineraryPromptCache promptCache;
+
+    @BeforeEach
+    void setUp() {
+        promptCache = new ItineraryPromptCache(true, 100, 1, new SimpleMeterRegistry());
+    }
+
+    private ItineraryPrompt.Builder basePrompt() {
+        return ItineraryPrompt.builder()
+                .destination("Paris")
+                .startDate(LocalDate.of(2025, 6, 1))
+                .endDate(LocalDate.of(2025, 6, 5))
+                .numberOfTravelers(2)
+                .travelStyle("Relaxed")
+                .interests("Museums, Food")
+                .budgetTier("STANDARD");
+    }
+
+    @Test
+    void keyFor_EquivalentPrompts_ProduceSameKey() {
+        ItineraryPrompt original = basePrompt().build();
+        ItineraryPrompt equivalent = basePrompt()
+                .destination("  paris ")
+                .startDate(LocalDate.of(2026, 7, 10))
+                .endDate(LocalDate.of(2026, 7, 14))
+                .interests("food,  museums")
+                .build();
+
+        assertEquals(promptCache.keyFor(original), promptCache.keyFor(equivalent));
+    }
+
+    @Test
+    void keyFor_DifferentLengthOrSeason_ProduceDifferentKeys() {
+        String base = promptCache.keyFor(basePrompt().build());
+        String longer = promptCache.keyFor(basePrompt().endDate(LocalDate.of(2025, 6, 8)).build());
+        String winter = promptCache.keyFor(basePrompt()
+                .startDate(LocalDate.of(2025, 1, 1))
+                .endDate(LocalDate.of(2025, 1, 5))
+                .build());
+
+        assertNotEquals(base, longer);
+        assertNotEquals(base, winter);
+    }
+
+    @Test
+    void keyFor_BudgetIgnoredWhenTierPresent() {
+        String withoutBudget = promptCache.keyFor(basePrompt().build());
+        String withBudget = promptCache.keyFor(basePrompt().budget(1234.0).build());
+
+        assertEquals(withoutBudget, withBudget);
+    }
+
+    @Test
+    void getAndPut_RoundTrip() {
+        String key = promptCache.keyFor(basePrompt().build());
+        assertTrue(promptCache.get(key).isEmpty());
+
+        promptCache.put(key, "{\"itinerary\": []}");
+
+        assertEquals("{\"itinerary\": []}", promptCache.get(key).orElseThrow());
+    }
+
+    @Test
+    void disabledCache_NeverReturnsEntries() {
+        ItineraryPromptCache disabled = new ItineraryPromptCache(false, 100, 1, new SimpleMeterRegistry());
+        disabled.put("key", "{}");
+
+        assertTrue(disabled.get("key").isEmpty());
+    }
+}
@@ -1,7 +1,9 @@
 package com.travelplanner.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.travelplanner.dto.prompt.ItineraryPrompt;
 import com.travelplanner.model.Itinerary;
+import com.travelplanner.model.Job;
 import com.travelplanner.model.Trip;
 import com.travelplanner.model.User;
 import com.travelplanner.repository.ItineraryRepository;
@@ -34,9 +36,17 @@ class ItineraryServiceTest {
     @Mock
     private PromptBuilderService promptBuilderService;
 
+    @Mock
+    private ItineraryPromptCache promptCache;
+
+    @Mock
+    private FanOutItineraryGenerator fanOutGenerator;
+
     @InjectMocks
     private ItineraryService itineraryService;
 
+    private static final String ONE_DAY = "{\"itinerary\":[{\"day\":1,\"activities\":[{\"description\":\"Louvre\"}]}]}";
+
     private Trip testTrip;
     private Itinerary testItinerary;
     private User testUser;
@@ -72,21 +82,201 @@ class ItineraryServiceTest {
     void testGenerateItinerary_Success() {
         when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
         when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Test prompt");
-        when(geminiService.callGemini(any())).thenReturn("{\"days\": []}");
-        when(itineraryRepository.save(any(Itinerary.class))).thenReturn(testItinerary);
+        when(geminiService.generateJson(any(), eq(ItinerarySchemas.ITINERARY))).thenReturn("```json\n" + ONE_DAY + "\n```");
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         Itinerary result = itineraryService.generateItinerary(1L, 1L);
 
-        assertNotNull(result);
-        verify(geminiService).callGemini(any());
+        assertEquals(ONE_DAY, result.getContent());
+        verify(geminiService).generateJson(any(), eq(ItinerarySchemas.ITINERARY));
         verify(itineraryRepository).save(any(Itinerary.class));
     }
 
+    @Test
+    void testGenerateItinerary_LongTrip_UsesFanOut() {
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(fanOutGenerator.shouldFanOut(any())).thenReturn(true);
+        when(fanOutGenerator.generate(any(), any())).thenReturn("{\"itinerary\": []}");
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Itinerary result = itineraryService.generateItinerary(1L, 1L);
+
+        assertEquals("{\"itinerary\": []}", result.getContent());
+        verify(geminiService, never()).generateJson(any(), any());
+    }
+
     @Test
     void testGenerateItinerary_TripNotFound() {
         when(tripRepository.findById(1L)).thenReturn(java.util.Optional.empty());
 
         assertThrows(RuntimeException.class, () -> itineraryService.generateItinerary(1L, 1L));
-        verify(geminiService, never()).callGemini(any());
+        verify(geminiService, never()).generateJson(any(), any());
+    }
+
+    @Test
+    void testGenerateItineraryStreaming_RelaysChunksAndPersists() {
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Test prompt");
+        when(geminiService.streamJson(eq("Test prompt"), eq(ItinerarySchemas.ITINERARY), any())).thenAnswer(invocation -> {
+            java.util.function.Consumer<String> onChunk = invocation.getArgument(2);
+            onChunk.accept(ONE_DAY.substring(0, 20));
+            onChunk.accept(ONE_DAY.substring(20));
+            return ONE_DAY;
+        });
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        java.util.List<String> chunks = new java.util.ArrayList<>();
+        Itinerary result = itineraryService.generateItineraryStreaming(1L, 1L, chunks::add);
+
+        assertEquals(2, chunks.size());
+        assertEquals(ONE_DAY, result.getContent());
+        verify(geminiService, never()).generateJson(any(), any());
+    }
+
+    @Test
+    void testGenerateItinerary_WithProgress_ReportsDaysAsTheyStream() {
+        String twoDays = "{\"itinerary\":[{\"day\":1,\"activities\":[{\"description\":\"Louvre\"}]},"
+                + "{\"day\":2,\"activities\":[{\"description\":\"Orsay\"}]}]}";
+        int endOfDayOne = twoDays.indexOf("},{") + 1;
+        java.util.List<Job.Phase> phases = new java.util.ArrayList<>();
+        java.util.List<Integer> daysSeenDuringStream = new java.util.ArrayList<>();
+        java.util.List<JsonNode> days = new java.util.ArrayList<>();
+        GenerationProgress progress = new GenerationProgress() {
+            @Override
+            public void phase(Job.Phase phase) {
+                phases.add(phase);
+            }
+
+            @Override
+            public void dayCompleted(JsonNode day) {
+                days.add(day);
+            }
+        };
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Test prompt");
+        when(geminiService.streamJson(eq("Test prompt"), eq(ItinerarySchemas.ITINERARY), any())).thenAnswer(invocation -> {
+            java.util.function.Consumer<String> onChunk = invocation.getArgument(2);
+            onChunk.accept(twoDays.substring(0, endOfDayOne + 5));
+            daysSeenDuringStream.add(days.size());
+            onChunk.accept(twoDays.substring(endOfDayOne + 5));
+            return twoDays;
+        });
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Itinerary result = itineraryService.generateItinerary(1L, 1L, progress);
+
+        assertEquals(twoDays, result.getContent());
+        assertEquals(java.util.List.of(1), daysSeenDuringStream);
+        assertEquals(2, days.size());
+        assertEquals("Orsay", days.get(1).path("activities").path(0).path("description").asText());
+        assertEquals(Job.Phase.PERSISTING, phases.get(phases.size() - 1));
+        assertTrue(phases.containsAll(java.util.List.of(Job.Phase.PROMPT_BUILT, Job.Phase.MODEL_STREAMING, Job.Phase.PARSING)));
+        verify(geminiService, never()).generateJson(any(), any());
+    }
+
+    @Test
+    void testGenerateItinerary_PromptCacheHit_SkipsGemini() {
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptCache.keyFor(any())).thenReturn("key");
+        when(promptCache.get("key")).thenReturn(java.util.Optional.of("{\"itinerary\": [{\"day\": 1, \"date\": \"2020-01-01\"}]}"));
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Itinerary result = itineraryService.generateItinerary(1L, 1L);
+
+        assertFalse(result.getContent().contains("2020-01-01"));
+        verify(geminiService, never()).generateJson(any(), any());
+        verify(promptCache, never()).put(anyString(), anyString());
+    }
+
+    @Test
+    void testRegenerateItinerary_BypassesPromptCache() {
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptCache.keyFor(any())).thenReturn("key");
+        when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Test prompt");
+        when(geminiService.generateJson(any(), any())).thenReturn(ONE_DAY);
+        when(itineraryRepository.save(any(Itinerary.class))).thenReturn(testItinerary);
+
+        itineraryService.regenerateItinerary(1L, 1L);
+
+        verify(promptCache, never()).get(anyString());
+        verify(geminiService).generateJson(any(), any());
+        verify(promptCache).put("key", ONE_DAY);
+    }
+
+    private String fiveDayItinerary() {
+        StringBuilder days = new StringBuilder();
+        for (int day = 1; day <= 5; day++) {
+            days.append(day > 1 ? "," : "")
+                    .append("{\"day\": ").append(day)
+                    .append(", \"date\": \"2025-05-0").append(day)
+                    .append("\", \"theme\": \"Original ").append(day).append("\"}");
+        }
+        return "{\"trip_summary\": \"Paris trip\", \"itinerary\": [" + days + "]}";
+    }
+
+    @Test
+    void testAdaptItinerary_SingleDay_SendsOnlyThatDayAndMerges() throws Exception {
+        testItinerary.setContent(fiveDayItinerary());
+        testTrip.setItinerary(testItinerary);
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildDayAdaptationPrompt(anyString(), anyString(), eq(java.util.List.of(3)), anyString()))
+                .thenReturn("Day prompt");
+        when(geminiService.generateJson("Day prompt", ItinerarySchemas.DAYS))
+                .thenReturn("{\"itinerary\": [{\"day\": 3, \"date\": \"1999-01-01\", \"theme\": \"Rainy museums\","
+                        + " \"activities\": [{\"description\": \"Musée d'Orsay\"}]}]}");
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Itinerary result = itineraryService.adaptItinerary(1L, 1L, "It will rain on day 3, swap in museums");
+
+        com.fasterxml.jackson.databind.JsonNode days = new com.fasterxml.jackson.databind.ObjectMapper()
+                .readTree(result.getContent()).path("itinerary");
+        assertEquals(5, days.size());
+        assertEquals("Rainy museums", days.get(2).path("theme").asText());
+        assertEquals("2025-05-03", days.get(2).path("date").asText());
+        assertEquals("Original 2", days.get(1).path("theme").asText());
+        verify(promptBuilderService, never()).buildAdaptationPrompt(anyString(), anyString());
+    }
+
+    @Test
+    void testAdaptItinerary_TripWideChange_AdaptsFullItinerary() {
+        testItinerary.setContent(fiveDayItinerary());
+        testTrip.setItinerary(testItinerary);
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildAdaptationPrompt(anyString(), anyString())).thenReturn("Full prompt");
+        when(geminiService.generateJson("Full prompt", ItinerarySchemas.ITINERARY)).thenReturn(ONE_DAY);
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        itineraryService.adaptItinerary(1L, 1L, "Make the whole trip more relaxed");
+
+        verify(promptBuilderService, never()).buildDayAdaptationPrompt(anyString(), anyString(), any(), anyString());
+        verify(geminiService).generateJson("Full prompt", ItinerarySchemas.ITINERARY);
+    }
+
+    @Test
+    void testAdaptItinerary_MissingDayInResponse_FallsBackToFullAdaptation() {
+        testItinerary.setContent(fiveDayItinerary());
+        testTrip.setItinerary(testItinerary);
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildDayAdaptationPrompt(anyString(), anyString(), any(), anyString())).thenReturn("Day prompt");
+        when(geminiService.generateJson("Day prompt", ItinerarySchemas.DAYS))
+                .thenReturn("{\"itinerary\": [{\"day\": 2, \"activities\": [{\"description\": \"Walk\"}]}]}");
+        when(promptBuilderService.buildAdaptationPrompt(anyString(), anyString())).thenReturn("Full prompt");
+        when(geminiService.generateJson("Full prompt", ItinerarySchemas.ITINERARY)).thenReturn(ONE_DAY);
+        when(itineraryRepository.save(any(Itinerary.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Itinerary result = itineraryService.adaptItinerary(1L, 1L, "Change day 2 and day 4");
+
+        assertEquals(ONE_DAY, result.getContent());
+    }
+
+    @Test
+    void testGenerateItinerary_UnusableOutput_Throws() {
+        when(tripRepository.findById(1L)).thenReturn(java.util.Optional.of(testTrip));
+        when(promptBuilderService.buildItineraryPrompt(any())).thenReturn("Test prompt");
+        when(geminiService.generateJson(any(), any())).thenReturn("{\"itinerary\": []}");
+
+        assertThrows(com.travelplanner.exception.UnusableModelOutputException.class,
+                () -> itineraryService.generateItinerary(1L, 1L));
+        verify(itineraryRepository, never()).save(any(Itinerary.class));
     }
 }
@@ -0,0 +1,149 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.JobRejectedException;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobAdmissionTest {
+
+    private static final List<String> GENERATION = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private JobWorker jobWorker;
+
+    @InjectMocks
+    private JobAdmission jobAdmission;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(jobAdmission, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(jobAdmission, "enabled", true);
+        ReflectionTestUtils.setField(jobAdmission, "maxInFlightPerUser", 3);
+        ReflectionTestUtils.setField(jobAdmission, "maxQueuedGeneration", 10);
+        ReflectionTestUtils.setField(jobAdmission, "maxQueuedAdaptation", 5);
+        ReflectionTestUtils.setField(jobAdmission, "defaultRunSeconds", 30L);
+        ReflectionTestUtils.setField(jobAdmission, "maxRetryAfterSeconds", 120L);
+    }
+
+    @Test
+    void admit_UnderLimits_Accepts() {
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(1L);
+        when(jobWorker.bulkheadJobTypes("ITINERARY_GENERATION")).thenReturn(GENERATION);
+        when(jobRepository.countByJobTypeInAndStatus(GENERATION, Job.JobStatus.PENDING)).thenReturn(9L);
+
+        assertDoesNotThrow(() -> jobAdmission.admit(1L, "ITINERARY_GENERATION"));
+    }
+
+    @Test
+    void admit_UserAtInFlightLimit_RejectsWithOneRunTime() {
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(3L);
+        when(jobWorker.averageRunTime("ITINERARY_GENERATION")).thenReturn(Optional.of(Duration.ofSeconds(45)));
+
+        JobRejectedException e = assertThrows(JobRejectedException.class,
+                () -> jobAdmission.admit(1L, "ITINERARY_GENERATION"));
+
+        assertEquals(Duration.ofSeconds(45), e.getRetryAfter());
+        assertEquals(1.0, meterRegistry.counter("jobs.admission.rejected", "reason", "user_limit").count());
+        verify(jobRepository, never()).countByJobTypeInAndStatus(anyCollection(), any());
+    }
+
+    @Test
+    void admit_BacklogFull_RetryAfterScalesWithExcessAndSlots() {
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(0L);
+        when(jobWorker.bulkheadJobTypes("ITINERARY_REGENERATION")).thenReturn(GENERATION);
+        when(jobRepository.countByJobTypeInAndStatus(GENERATION, Job.JobStatus.PENDING)).thenReturn(13L);
+        when(jobWorker.averageRunTime("ITINERARY_REGENERATION")).thenReturn(Optional.empty());
+        when(jobWorker.slots("ITINERARY_REGENERATION")).thenReturn(4);
+
+        JobRejectedException e = assertThrows(JobRejectedException.class,
+                () -> jobAdmission.admit(1L, "ITINERARY_REGENERATION"));
+
+        // 4 jobs over the bound × 30 s default run time ÷ 4 slots
+        assertEquals(Duration.ofSeconds(30), e.getRetryAfter());
+        assertEquals(1.0, meterRegistry.counter("jobs.admission.rejected", "reason", "backlog").count());
+    }
+
+    @Test
+    void admit_AdaptationUsesItsOwnBacklogBound() {
+        List<String> adaptation = List.of("ITINERARY_ADAPTATION");
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(0L);
+        when(jobWorker.bulkheadJobTypes("ITINERARY_ADAPTATION")).thenReturn(adaptation);
+        when(jobRepository.countByJobTypeInAndStatus(adaptation, Job.JobStatus.PENDING)).thenReturn(5L);
+        when(jobWorker.averageRunTime("ITINERARY_ADAPTATION")).thenReturn(Optional.of(Duration.ofSeconds(8)));
+        when(jobWorker.slots("ITINERARY_ADAPTATION")).thenReturn(2);
+
+        JobRejectedException e = assertThrows(JobRejectedException.class,
+                () -> jobAdmission.admit(1L, "ITINERARY_ADAPTATION"));
+
+        assertEquals(Duration.ofSeconds(4), e.getRetryAfter());
+    }
+
+    @Test
+    void estimatedWait_IsCapped() {
+        when(jobWorker.averageRunTime("ITINERARY_GENERATION")).thenReturn(Optional.of(Duration.ofSeconds(60)));
+        when(jobWorker.slots("ITINERARY_GENERATION")).thenReturn(1);
+
+        assertEquals(Duration.ofSeconds(120), jobAdmission.estimatedWait("ITINERARY_GENERATION", 50));
+    }
+
+    @Test
+    void admit_Disabled_SkipsChecks() {
+        ReflectionTestUtils.setField(jobAdmission, "enabled", false);
+
+        jobAdmission.admit(1L, "ITINERARY_GENERATION");
+
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void admitStream_CountsRunningStreamsTowardTheUserLimit() {
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(1L);
+        when(jobWorker.bulkheadJobTypes("ITINERARY_GENERATION")).thenReturn(GENERATION);
+
+        Runnable first = jobAdmission.admitStream(1L);
+        jobAdmission.admitStream(1L);
+
+        assertThrows(JobRejectedException.class, () -> jobAdmission.admitStream(1L));
+        assertThrows(JobRejectedException.class, () -> jobAdmission.admit(1L, "ITINERARY_GENERATION"));
+
+        first.run();
+        assertDoesNotThrow(() -> jobAdmission.admitStream(1L));
+    }
+
+    @Test
+    void admitStream_JobsWaiting_RejectsSoTheQueueGoesFirst() {
+        when(jobRepository.countByUserIdAndStatusIn(eq(1L), anyCollection())).thenReturn(0L);
+        when(jobWorker.bulkheadJobTypes("ITINERARY_GENERATION")).thenReturn(GENERATION);
+        when(jobRepository.countByJobTypeInAndStatus(GENERATION, Job.JobStatus.PENDING)).thenReturn(2L);
+        when(jobWorker.averageRunTime("ITINERARY_GENERATION")).thenReturn(Optional.empty());
+        when(jobWorker.slots("ITINERARY_GENERATION")).thenReturn(4);
+
+        JobRejectedException e = assertThrows(JobRejectedException.class, () -> jobAdmission.admitStream(1L));
+
+        assertEquals(Duration.ofSeconds(15), e.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("jobs.admission.rejected").tag("reason", "backlog").counter().count());
+    }
+}
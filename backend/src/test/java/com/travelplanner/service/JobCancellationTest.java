@@ -0,0 +1,86 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobCancellationTest {
+
+    private static final List<String> GENERATION = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+
+    @Mock
+    private JobQueue jobQueue;
+
+    @Mock
+    private JobWorker jobWorker;
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @Mock
+    private JobStatusNotifier jobStatusNotifier;
+
+    @InjectMocks
+    private JobCancellation jobCancellation;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(jobCancellation, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    void cancel_AbortsLocalAttemptAndNotifies() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        when(jobQueue.cancel(job, "Cancelled by user")).thenReturn(true);
+
+        assertTrue(jobCancellation.cancel(job));
+
+        verify(jobWorker).abort("job-1");
+        verify(jobStatusNotifier).publish(job);
+        assertEquals(1.0, meterRegistry.counter("jobs.cancelled", "reason", "user").count());
+    }
+
+    @Test
+    void cancel_AlreadyFinished_LeavesWorkerAlone() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        when(jobQueue.cancel(eq(job), anyString())).thenReturn(false);
+
+        assertFalse(jobCancellation.cancel(job));
+
+        verify(jobWorker, never()).abort(anyString());
+        verify(jobStatusNotifier, never()).publish(any(Job.class));
+    }
+
+    @Test
+    void cancelSuperseded_CancelsEveryUnfinishedJobForTheTrip() {
+        Job queued = new Job("job-1", "ITINERARY_GENERATION", 7L, 1L);
+        Job running = new Job("job-2", "ITINERARY_REGENERATION", 7L, 1L);
+        when(jobRepository.findByTripIdAndUserIdAndJobTypeInAndStatusIn(eq(7L), eq(1L), eq(GENERATION), anyCollection()))
+                .thenReturn(List.of(queued, running));
+        when(jobQueue.cancel(eq(queued), anyString())).thenReturn(true);
+        when(jobQueue.cancel(eq(running), anyString())).thenReturn(false);
+
+        assertEquals(1, jobCancellation.cancelSuperseded(7L, 1L, GENERATION));
+
+        verify(jobWorker).abort("job-1");
+        verify(jobWorker, never()).abort("job-2");
+        assertEquals(1.0, meterRegistry.counter("jobs.cancelled", "reason", "superseded").count());
+    }
+}
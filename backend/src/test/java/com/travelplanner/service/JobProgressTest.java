@@ -0,0 +1,71 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobProgressTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private JobQueue jobQueue;
+
+    @Mock
+    private JobStatusNotifier jobStatusNotifier;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Job job;
+    private JobProgress progress;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(Job.JobStatus.PROCESSING);
+        job.setLeaseOwner("worker-1");
+        progress = new JobProgress(job, jobQueue, jobStatusNotifier, meterRegistry);
+    }
+
+    @Test
+    void phase_RecordsEachChangeOnce() {
+        when(jobQueue.progress(eq(job), any(), anyInt(), any(), any())).thenReturn(true);
+
+        progress.phase(Job.Phase.MODEL_STREAMING);
+        progress.phase(Job.Phase.MODEL_STREAMING);
+
+        verify(jobQueue, times(1)).progress(job, Job.Phase.MODEL_STREAMING, 0, null, null);
+        verify(jobStatusNotifier, times(1)).publish(job);
+    }
+
+    @Test
+    void dayCompleted_RecordsFinishedDaysInDayOrder() throws Exception {
+        when(jobQueue.progress(eq(job), any(), anyInt(), any(), any())).thenReturn(true);
+        progress.totalDays(8);
+        progress.phase(Job.Phase.MODEL_STREAMING);
+
+        progress.dayCompleted(objectMapper.readTree("{\"day\":5}"));
+        progress.dayCompleted(objectMapper.readTree("{\"day\":1}"));
+
+        verify(jobQueue).progress(job, Job.Phase.MODEL_STREAMING, 2, 8, "[{\"day\":1},{\"day\":5}]");
+        assertEquals(1, meterRegistry.get("jobs.progress.first_day").timer().count());
+    }
+
+    @Test
+    void progressWriteFails_DoesNotFailTheJob() throws Exception {
+        when(jobQueue.progress(eq(job), any(), anyInt(), any(), any())).thenThrow(new RuntimeException("DB down"));
+
+        assertDoesNotThrow(() -> progress.dayCompleted(objectMapper.readTree("{\"day\":1}")));
+        verify(jobStatusNotifier, never()).publish(any(Job.class));
+    }
+}
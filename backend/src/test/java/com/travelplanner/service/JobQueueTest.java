@@ -0,0 +1,196 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Itinerary;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobQueueTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @InjectMocks
+    private JobQueue jobQueue;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jobQueue, "leaseSeconds", 60L);
+        ReflectionTestUtils.setField(jobQueue, "maxDeliveries", 3);
+    }
+
+    @Test
+    void claim_LeasesClaimedJobsToWorker() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        when(jobRepository.findClaimable(eq(Job.JobStatus.PENDING), eq(List.of("ITINERARY_GENERATION")),
+                any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(job));
+
+        List<Job> claimed = jobQueue.claim("worker-1", List.of("ITINERARY_GENERATION"), 2);
+
+        assertEquals(1, claimed.size());
+        assertEquals(Job.JobStatus.PROCESSING, job.getStatus());
+        assertEquals("worker-1", job.getLeaseOwner());
+        assertTrue(job.getLeaseExpiresAt().isAfter(LocalDateTime.now().plusSeconds(50)));
+        assertEquals(1, job.getDeliveryCount());
+        assertNotNull(job.getStartedAt());
+        verify(jobRepository).findClaimable(eq(Job.JobStatus.PENDING), anyCollection(), any(LocalDateTime.class),
+                argThat(page -> page.getPageSize() == 2));
+        verify(jobRepository).saveAll(List.of(job));
+    }
+
+    @Test
+    void claim_NothingQueued_SavesNothing() {
+        when(jobRepository.findClaimable(any(), anyCollection(), any(), any())).thenReturn(List.of());
+
+        assertTrue(jobQueue.claim("worker-1", List.of("ITINERARY_ADAPTATION"), 5).isEmpty());
+        verify(jobRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void renew_LeaseLost_ReturnsFalse() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setLeaseOwner("worker-1");
+        when(jobRepository.renewLease(eq("job-1"), eq("worker-1"), eq(Job.JobStatus.PROCESSING), any())).thenReturn(0);
+
+        assertFalse(jobQueue.renew(job));
+        assertNull(job.getLeaseExpiresAt());
+    }
+
+    @Test
+    void complete_OnlyWhileOwningTheLease() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setLeaseOwner("worker-1");
+        Itinerary itinerary = new Itinerary();
+        itinerary.setId(7L);
+        itinerary.setVersion(2L);
+        when(jobRepository.finish(eq("job-1"), eq("worker-1"), eq(Job.JobStatus.COMPLETED), eq(7L), eq(2L),
+                isNull(), any(), any())).thenReturn(1);
+
+        assertTrue(jobQueue.complete(job, itinerary));
+        assertEquals(7L, job.getItineraryId());
+        assertEquals(2L, job.getItineraryVersion());
+    }
+
+    @Test
+    void claim_ResetsProgressOfEarlierAttempt() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setPhase(Job.Phase.MODEL_STREAMING);
+        job.setDaysCompleted(2);
+        job.setPartialResult("[{\"day\":1},{\"day\":2}]");
+        when(jobRepository.findClaimable(any(), anyCollection(), any(), any())).thenReturn(List.of(job));
+
+        jobQueue.claim("worker-1", List.of("ITINERARY_GENERATION"), 1);
+
+        assertNull(job.getPhase());
+        assertNull(job.getDaysCompleted());
+        assertNull(job.getPartialResult());
+    }
+
+    @Test
+    void progress_OnlyWhileOwningTheLease() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setLeaseOwner("worker-1");
+        when(jobRepository.updateProgress("job-1", "worker-1", Job.JobStatus.PROCESSING,
+                Job.Phase.MODEL_STREAMING, 1, 3, "[{\"day\":1}]")).thenReturn(1, 0);
+
+        assertTrue(jobQueue.progress(job, Job.Phase.MODEL_STREAMING, 1, 3, "[{\"day\":1}]"));
+        assertEquals(1, job.getDaysCompleted());
+        assertEquals("[{\"day\":1}]", job.getPartialResult());
+        assertFalse(jobQueue.progress(job, Job.Phase.MODEL_STREAMING, 1, 3, "[{\"day\":1}]"));
+    }
+
+    @Test
+    void retry_RequeuesWithDelayAndCountsTheRetry() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(Job.JobStatus.PROCESSING);
+        job.setLeaseOwner("worker-1");
+        job.setRetryCount(1);
+        when(jobRepository.scheduleRetry(eq("job-1"), eq("worker-1"), any(LocalDateTime.class), eq(2),
+                eq(Job.JobStatus.PROCESSING), eq(Job.JobStatus.PENDING))).thenReturn(1);
+
+        assertTrue(jobQueue.retry(job, Duration.ofSeconds(30)));
+
+        assertEquals(Job.JobStatus.PENDING, job.getStatus());
+        assertEquals(2, job.getRetryCount());
+        assertNull(job.getLeaseOwner());
+        assertTrue(job.getAvailableAt().isAfter(LocalDateTime.now().plusSeconds(25)));
+    }
+
+    @Test
+    void cancel_ClearsLeaseSoTheRunningAttemptCannotFinish() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(Job.JobStatus.PROCESSING);
+        job.setLeaseOwner("worker-1");
+        when(jobRepository.cancel(eq("job-1"), eq("Cancelled by user"), any(LocalDateTime.class),
+                argThat(statuses -> statuses.contains(Job.JobStatus.PENDING) && statuses.contains(Job.JobStatus.PROCESSING)),
+                eq(Job.JobStatus.CANCELLED))).thenReturn(1);
+
+        assertTrue(jobQueue.cancel(job, "Cancelled by user"));
+
+        assertEquals(Job.JobStatus.CANCELLED, job.getStatus());
+        assertNull(job.getLeaseOwner());
+        assertNotNull(job.getCompletedAt());
+    }
+
+    @Test
+    void cancel_AlreadyFinished_ReturnsFalse() {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(Job.JobStatus.COMPLETED);
+        when(jobRepository.cancel(eq("job-1"), anyString(), any(), anyCollection(), any())).thenReturn(0);
+
+        assertFalse(jobQueue.cancel(job, "Cancelled by user"));
+        assertEquals(Job.JobStatus.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void requeueExpired_FailsJobsOutOfDeliveriesBeforeRequeuing() {
+        when(jobRepository.failExpired(any(), eq(3), anyString(), eq(Job.JobStatus.PROCESSING), eq(Job.JobStatus.FAILED)))
+                .thenReturn(1);
+        when(jobRepository.requeueExpired(any(), eq(3), eq(Job.JobStatus.PROCESSING), eq(Job.JobStatus.PENDING)))
+                .thenReturn(2);
+
+        assertEquals(2, jobQueue.requeueExpired());
+
+        var order = inOrder(jobRepository);
+        order.verify(jobRepository).failExpired(any(), anyInt(), anyString(), any(), any());
+        order.verify(jobRepository).requeueExpired(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void purgeFinished_DeletesOneBatchOfFinishedJobs() {
+        Job first = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        first.setId(11L);
+        Job second = new Job("job-2", "ITINERARY_ADAPTATION", 1L, 1L);
+        second.setId(12L);
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(7);
+        when(jobRepository.findPurgeable(anyCollection(), eq(cutoff), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(jobRepository.deleteByIdIn(List.of(11L, 12L))).thenReturn(2);
+
+        assertEquals(2, jobQueue.purgeFinished(cutoff, 100));
+    }
+
+    @Test
+    void purgeFinished_NothingOldEnough_DeletesNothing() {
+        when(jobRepository.findPurgeable(anyCollection(), any(), any(Pageable.class))).thenReturn(List.of());
+
+        assertEquals(0, jobQueue.purgeFinished(LocalDateTime.now(), 100));
+        verify(jobRepository, never()).deleteByIdIn(anyCollection());
+    }
+}
@@ -0,0 +1,86 @@
+package com.travelplanner.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobRetentionTest {
+
+    @Mock
+    private JobQueue jobQueue;
+
+    @InjectMocks
+    private JobRetention jobRetention;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(jobRetention, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(jobRetention, "enabled", true);
+        ReflectionTestUtils.setField(jobRetention, "maxAgeHours", 168L);
+        ReflectionTestUtils.setField(jobRetention, "batchSize", 100);
+        ReflectionTestUtils.setField(jobRetention, "maxBatches", 5);
+        jobRetention.init();
+    }
+
+    @Test
+    void purge_DeletesBatchesUntilOneComesBackShort() {
+        when(jobQueue.purgeFinished(any(LocalDateTime.class), eq(100))).thenReturn(100, 100, 40);
+
+        assertEquals(240, jobRetention.purge());
+
+        verify(jobQueue, times(3)).purgeFinished(any(LocalDateTime.class), eq(100));
+        assertEquals(240, meterRegistry.get("jobs.retention.rows_reclaimed").counter().count());
+    }
+
+    @Test
+    void purge_StopsAfterMaxBatches() {
+        when(jobQueue.purgeFinished(any(LocalDateTime.class), eq(100))).thenReturn(100);
+
+        assertEquals(500, jobRetention.purge());
+
+        verify(jobQueue, times(5)).purgeFinished(any(LocalDateTime.class), eq(100));
+    }
+
+    @Test
+    void purge_OnlyJobsOlderThanMaxAge() {
+        LocalDateTime before = LocalDateTime.now().minusHours(168);
+
+        jobRetention.purge();
+
+        verify(jobQueue).purgeFinished(argThat(cutoff -> !cutoff.isBefore(before)
+                && cutoff.isBefore(LocalDateTime.now().minusHours(167))), eq(100));
+    }
+
+    @Test
+    void purge_BatchFails_CountsWhatWasDeleted() {
+        when(jobQueue.purgeFinished(any(LocalDateTime.class), eq(100)))
+                .thenReturn(100)
+                .thenThrow(new RuntimeException("DB down"));
+
+        assertEquals(100, jobRetention.purge());
+        assertEquals(100, meterRegistry.get("jobs.retention.rows_reclaimed").counter().count());
+    }
+
+    @Test
+    void purge_Disabled_DoesNothing() {
+        ReflectionTestUtils.setField(jobRetention, "enabled", false);
+
+        assertEquals(0, jobRetention.purge());
+        verifyNoInteractions(jobQueue);
+    }
+}
@@ -0,0 +1,152 @@
+package com.travelplanner.service;
+
+import com.travelplanner.dto.response.JobResponse;
+import com.travelplanner.model.Job;
+import com.travelplanner.repository.JobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobStatusNotifierTest {
+
+    @Mock
+    private JobRepository jobRepository;
+
+    @InjectMocks
+    private JobStatusNotifier notifier;
+
+    private final List<JobResponse> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notifier, "meterRegistry", new SimpleMeterRegistry());
+        notifier.registerMetrics();
+    }
+
+    private static Job job(Job.JobStatus status) {
+        Job job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(status);
+        return job;
+    }
+
+    private static JobRepository.JobStatusView view(Job.JobStatus status) {
+        return new JobRepository.JobStatusView() {
+            @Override
+            public String getJobId() {
+                return "job-1";
+            }
+
+            @Override
+            public Job.JobStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Job.Phase getPhase() {
+                return null;
+            }
+
+            @Override
+            public Integer getDaysCompleted() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    void publish_DeliversTransitionsOnce() {
+        notifier.subscribe("job-1", Job.JobStatus.PENDING, events::add);
+
+        notifier.publish(job(Job.JobStatus.PENDING));
+        notifier.publish(job(Job.JobStatus.PROCESSING));
+        notifier.publish(job(Job.JobStatus.PROCESSING));
+
+        assertEquals(1, events.size());
+        assertEquals("PROCESSING", events.get(0).getStatus());
+    }
+
+    @Test
+    void publish_DeliversProgressOfProcessingJob() {
+        notifier.subscribe("job-1", Job.JobStatus.PROCESSING, events::add);
+        Job job = job(Job.JobStatus.PROCESSING);
+        job.setPhase(Job.Phase.MODEL_STREAMING);
+        job.setDaysCompleted(1);
+        job.setPartialResult("[{\"day\":1}]");
+
+        notifier.publish(job);
+        notifier.publish(job);
+
+        assertEquals(1, events.size());
+        assertEquals("MODEL_STREAMING", events.get(0).getPhase());
+        assertEquals("[{\"day\":1}]", events.get(0).getPartialResult());
+    }
+
+    @Test
+    void unsubscribe_StopsDelivery() {
+        Runnable unsubscribe = notifier.subscribe("job-1", Job.JobStatus.PENDING, events::add);
+        unsubscribe.run();
+
+        notifier.publish(job(Job.JobStatus.PROCESSING));
+        notifier.watch();
+
+        assertTrue(events.isEmpty());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void watch_PicksUpTransitionMadeOnAnotherNode() {
+        notifier.subscribe("job-1", Job.JobStatus.PENDING, events::add);
+        Job completed = job(Job.JobStatus.COMPLETED);
+        completed.setItineraryId(7L);
+        when(jobRepository.findStatusesByJobIdIn(anyCollection())).thenReturn(List.of(view(Job.JobStatus.COMPLETED)));
+        when(jobRepository.findByJobId("job-1")).thenReturn(Optional.of(completed));
+
+        notifier.watch();
+        notifier.watch();
+
+        assertEquals(1, events.size());
+        assertEquals("COMPLETED", events.get(0).getStatus());
+        assertEquals(7L, events.get(0).getItineraryId());
+    }
+
+    @Test
+    void watch_UnchangedStatus_ReadsNoResult() {
+        notifier.subscribe("job-1", Job.JobStatus.PROCESSING, events::add);
+        when(jobRepository.findStatusesByJobIdIn(anyCollection())).thenReturn(List.of(view(Job.JobStatus.PROCESSING)));
+
+        notifier.watch();
+
+        assertTrue(events.isEmpty());
+        verify(jobRepository, never()).findByJobId(anyString());
+    }
+
+    @Test
+    void watch_LateSubscriberWithOlderState_StillGetsTheTransition() {
+        List<JobResponse> lateEvents = new ArrayList<>();
+        notifier.subscribe("job-1", Job.JobStatus.PENDING, events::add);
+        notifier.publish(job(Job.JobStatus.PROCESSING));
+        // Read PENDING before the transition was published, subscribed after it
+        notifier.subscribe("job-1", Job.JobStatus.PENDING, lateEvents::add);
+        when(jobRepository.findStatusesByJobIdIn(anyCollection())).thenReturn(List.of(view(Job.JobStatus.PROCESSING)));
+
+        notifier.watch();
+
+        assertEquals(1, events.size());
+        assertEquals(1, lateEvents.size());
+        assertEquals("PROCESSING", lateEvents.get(0).getStatus());
+    }
+}
@@ -0,0 +1,199 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JobWorkerTest {
+
+    @Mock
+    private JobQueue jobQueue;
+
+    @Mock
+    private AsyncItineraryService asyncItineraryService;
+
+    @Mock
+    private JobStatusNotifier jobStatusNotifier;
+
+    @InjectMocks
+    private JobWorker jobWorker;
+
+    private static final List<String> GENERATION = List.of("ITINERARY_GENERATION", "ITINERARY_REGENERATION");
+    private static final List<String> ADAPTATION = List.of("ITINERARY_ADAPTATION");
+
+    private BulkheadExecutor generationExecutor;
+    private BulkheadExecutor adaptationExecutor;
+
+    @BeforeEach
+    void setUp() {
+        generationExecutor = executor("generation", 2);
+        adaptationExecutor = executor("adaptation", 1);
+        ReflectionTestUtils.setField(jobWorker, "generationExecutor", generationExecutor);
+        ReflectionTestUtils.setField(jobWorker, "adaptationExecutor", adaptationExecutor);
+        ReflectionTestUtils.setField(jobWorker, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jobWorker, "enabled", true);
+        ReflectionTestUtils.setField(jobWorker, "shutdownGraceSeconds", 1L);
+        jobWorker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationExecutor.shutdown();
+        adaptationExecutor.shutdown();
+    }
+
+    private static BulkheadExecutor executor(String name, int poolSize) {
+        return BulkheadExecutor.platform(name, poolSize, 0, BulkheadExecutor.Overflow.REJECT, new SimpleMeterRegistry());
+    }
+
+    private static Job claimedJob(String jobId, String owner) {
+        Job job = new Job(jobId, "ITINERARY_GENERATION", 1L, 1L);
+        job.setStatus(Job.JobStatus.PROCESSING);
+        job.setLeaseOwner(owner);
+        return job;
+    }
+
+    @Test
+    void poll_ClaimsOnlyFreeSlotsAndRunsJobs() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(asyncItineraryService).process(any(Job.class));
+        String owner = jobWorker.getWorkerId();
+        when(jobQueue.claim(owner, GENERATION, 2)).thenReturn(List.of(claimedJob("job-1", owner), claimedJob("job-2", owner)));
+
+        jobWorker.poll();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        jobWorker.poll();
+
+        // Both generation slots busy: the second poll must not claim generation jobs,
+        // while the idle adaptation bulkhead keeps claiming
+        verify(jobQueue, times(1)).claim(anyString(), eq(GENERATION), anyInt());
+        verify(jobQueue, times(2)).claim(owner, ADAPTATION, 1);
+        verify(jobStatusNotifier, times(2)).publish(any(Job.class));
+        assertEquals(2, jobWorker.runningCount());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (jobWorker.runningCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, jobWorker.runningCount());
+    }
+
+    @Test
+    void heartbeat_LostLease_InterruptsJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }).when(asyncItineraryService).process(any(Job.class));
+        String owner = jobWorker.getWorkerId();
+        Job job = claimedJob("job-1", owner);
+        when(jobQueue.claim(owner, GENERATION, 2)).thenReturn(List.of(job));
+        when(jobQueue.renew(job)).thenReturn(false);
+
+        jobWorker.poll();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        jobWorker.heartbeat();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, jobWorker.runningCount());
+    }
+
+    @Test
+    void checkCancelled_CancelledElsewhere_InterruptsJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }).when(asyncItineraryService).process(any(Job.class));
+        String owner = jobWorker.getWorkerId();
+        Job job = claimedJob("job-1", owner);
+        when(jobQueue.claim(owner, GENERATION, 2)).thenReturn(List.of(job));
+        when(jobQueue.cancelledAmong(List.of("job-1"))).thenReturn(List.of("job-1"));
+
+        jobWorker.poll();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        jobWorker.checkCancelled();
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, jobWorker.runningCount());
+        assertFalse(jobWorker.abort("job-1"));
+    }
+
+    @Test
+    void shutdown_ReleasesUnfinishedJobs() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).when(asyncItineraryService).process(any(Job.class));
+        String owner = jobWorker.getWorkerId();
+        when(jobQueue.claim(owner, GENERATION, 2)).thenReturn(List.of(claimedJob("job-1", owner)));
+
+        jobWorker.poll();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        jobWorker.shutdown();
+
+        verify(jobQueue).releaseAll(owner);
+        jobWorker.poll();
+        verify(jobQueue, times(2)).claim(anyString(), anyCollection(), anyInt());
+    }
+
+    @Test
+    void poll_AdaptationRunsOnItsOwnBulkhead() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        String[] threadName = new String[1];
+        doAnswer(invocation -> {
+            threadName[0] = Thread.currentThread().getName();
+            started.countDown();
+            return null;
+        }).when(asyncItineraryService).process(any(Job.class));
+        String owner = jobWorker.getWorkerId();
+        Job job = claimedJob("job-1", owner);
+        job.setJobType("ITINERARY_ADAPTATION");
+        when(jobQueue.claim(owner, ADAPTATION, 1)).thenReturn(List.of(job));
+
+        jobWorker.poll();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(threadName[0].startsWith("adaptation-"));
+    }
+}
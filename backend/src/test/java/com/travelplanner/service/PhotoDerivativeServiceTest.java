@@ -0,0 +1,163 @@
+package com.travelplanner.service;
+
+import com.travelplanner.model.Photo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhotoDerivativeServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private PhotoDerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PhotoDerivativeService();
+        ReflectionTestUtils.setField(service, "imageExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "maxDimension", 512);
+        ReflectionTestUtils.setField(service, "jpegQuality", 0.8f);
+    }
+
+    private Photo photo(Path path, String mimeType) {
+        Photo photo = new Photo();
+        photo.setOriginalName(path.getFileName().toString());
+        photo.setFilePath(path.toString());
+        photo.setMimeType(mimeType);
+        return photo;
+    }
+
+    private Path image(String name, String format, int width, int height) throws Exception {
+        Path path = dir.resolve(name);
+        int type = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        ImageIO.write(new BufferedImage(width, height, type), format, path.toFile());
+        return path;
+    }
+
+    @Test
+    void prepare_DownscalesLargePhotoToJpegDerivative() throws Exception {
+        Path original = image("large.png", "png", 2000, 1000);
+
+        List<GeminiImageRequest.ImagePart> images = service.prepare(List.of(photo(original, "image/png")));
+
+        assertEquals(1, images.size());
+        assertEquals("image/jpeg", images.get(0).mimeType());
+        assertEquals(service.derivativePath(original), images.get(0).path());
+        BufferedImage derivative = ImageIO.read(images.get(0).path().toFile());
+        assertEquals(512, derivative.getWidth());
+        assertEquals(256, derivative.getHeight());
+    }
+
+    /**
+     * A JPEG stored sideways, as a phone held upright saves it: left half red,
+     * with an EXIF APP1 segment carrying the given Orientation tag
+     */
+    private Path sidewaysJpeg(String name, int width, int height, int orientation) throws Exception {
+        BufferedImage stored = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = stored.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(stored, "jpg", jpeg);
+        byte[] encoded = jpeg.toByteArray();
+
+        // Big-endian TIFF header, IFD0 with one SHORT entry: Orientation
+        byte[] exif = {
+                'E', 'x', 'i', 'f', 0, 0,
+                'M', 'M', 0, 0x2A, 0, 0, 0, 8,
+                0, 1,
+                0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+                0, 0, 0, 0
+        };
+        ByteArrayOutputStream withExif = new ByteArrayOutputStream();
+        withExif.write(encoded, 0, 2);
+        withExif.write(new byte[]{(byte) 0xFF, (byte) 0xE1, 0, (byte) (exif.length + 2)});
+        withExif.write(exif);
+        withExif.write(encoded, 2, encoded.length - 2);
+        return Files.write(dir.resolve(name), withExif.toByteArray());
+    }
+
+    @Test
+    void prepare_TurnsSidewaysPhotoUprightBeforeScaling() throws Exception {
+        Path original = sidewaysJpeg("portrait.jpg", 2000, 1000, 6);
+        assertEquals(6, PhotoDerivativeService.readOrientation(original));
+
+        List<GeminiImageRequest.ImagePart> images = service.prepare(List.of(photo(original, "image/jpeg")));
+
+        BufferedImage derivative = ImageIO.read(images.get(0).path().toFile());
+        assertEquals(256, derivative.getWidth());
+        assertEquals(512, derivative.getHeight());
+        // Rotated 90 clockwise: the stored left half is now the top half
+        assertTrue(new Color(derivative.getRGB(128, 100)).getRed() > 200);
+        assertTrue(new Color(derivative.getRGB(128, 400)).getRed() < 60);
+    }
+
+    @Test
+    void readOrientation_NoExif_IsUpright() throws Exception {
+        assertEquals(1, PhotoDerivativeService.readOrientation(image("plain.jpg", "jpg", 100, 100)));
+    }
+
+    @Test
+    void prepare_ReusesCachedDerivative() throws Exception {
+        Path original = image("large.jpg", "jpg", 1200, 1200);
+        service.prepare(List.of(photo(original, "image/jpeg")));
+        Path derivative = service.derivativePath(original);
+        FileTime firstWrite = Files.getLastModifiedTime(derivative);
+
+        List<GeminiImageRequest.ImagePart> images = service.prepare(List.of(photo(original, "image/jpeg")));
+
+        assertEquals(derivative, images.get(0).path());
+        assertEquals(firstWrite, Files.getLastModifiedTime(derivative));
+    }
+
+    @Test
+    void prepare_SendsSmallJpegAndUndecodableFilesAsIs() throws Exception {
+        Path small = image("small.jpg", "jpg", 300, 200);
+        Path heic = Files.write(dir.resolve("photo.heic"), new byte[]{0, 1, 2, 3});
+
+        List<GeminiImageRequest.ImagePart> images = service.prepare(List.of(
+                photo(small, "image/jpeg"), photo(heic, "image/heic")));
+
+        assertEquals(small, images.get(0).path());
+        assertEquals(heic, images.get(1).path());
+        assertEquals("image/heic", images.get(1).mimeType());
+    }
+
+    @Test
+    void prepare_SkipsMissingPhotos() {
+        List<GeminiImageRequest.ImagePart> images = service.prepare(List.of(photo(dir.resolve("gone.jpg"), "image/jpeg")));
+
+        assertTrue(images.isEmpty());
+    }
+
+    @Test
+    void deleteDerivatives_RemovesCachedCopies() throws Exception {
+        Path original = image("large.png", "png", 1000, 1000);
+        Photo photo = photo(original, "image/png");
+        service.prepare(List.of(photo));
+
+        service.deleteDerivatives(photo);
+
+        assertFalse(Files.exists(service.derivativePath(original)));
+        assertTrue(Files.exists(original));
+    }
+}
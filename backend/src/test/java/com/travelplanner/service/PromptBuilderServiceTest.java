@@ -138,6 +138,20 @@ class PromptBuilderServiceTest {
         assertTrue(result.contains("adapt"));
     }
 
+    @Test
+    void buildDayAdaptationPrompt_ContainsOnlyRequestedDays() {
+        String outline = "{\"trip_summary\": \"Paris\", \"days\": []}";
+        String affectedDays = "[{\"day\": 3}]";
+        String context = "Rain on day 3";
+
+        String result = promptBuilderService.buildDayAdaptationPrompt(outline, affectedDays, java.util.List.of(3), context);
+
+        assertTrue(result.contains(outline));
+        assertTrue(result.contains(affectedDays));
+        assertTrue(result.contains("ONLY days 3"));
+        assertTrue(result.contains(context));
+    }
+
     @Test
     void buildConversationalPrompt_WithHistory() {
         ItineraryPrompt prompt = ItineraryPrompt.builder()
@@ -0,0 +1,78 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepairingJsonParserTest {
+
+    @Test
+    void parse_SkipsFenceAndTrailingProse() {
+        RepairingJsonParser parser = RepairingJsonParser.parse("Here you go:\n```json\n{\"a\": 1}\n```\nEnjoy {your} trip!");
+
+        assertEquals("{\"a\":1}", parser.current().toString());
+        assertFalse(parser.isDamaged());
+    }
+
+    @Test
+    void parse_AcceptsTrailingCommas() {
+        RepairingJsonParser parser = RepairingJsonParser.parse("{\"a\": [1, 2,], \"b\": \"x\",}");
+
+        assertEquals("{\"a\":[1,2],\"b\":\"x\"}", parser.current().toString());
+        assertFalse(parser.isDamaged());
+    }
+
+    @Test
+    void feed_AssemblesChunksSplitAnywhere() {
+        RepairingJsonParser parser = new RepairingJsonParser();
+        String text = "{\"trip_summary\": \"Cafés of Paris\", \"itinerary\": [{\"day\": 12}]}";
+        for (int i = 0; i < text.length(); i += 3) {
+            parser.feed(text.substring(i, Math.min(text.length(), i + 3)));
+        }
+
+        JsonNode root = parser.finish();
+
+        assertEquals("Cafés of Paris", root.path("trip_summary").asText());
+        assertEquals(12, root.path("itinerary").path(0).path("day").asInt());
+        assertFalse(parser.isDamaged());
+    }
+
+    @Test
+    void finish_ClosesTruncatedOutputAndDropsThePartialValue() {
+        RepairingJsonParser parser = RepairingJsonParser.parse(
+                "{\"itinerary\": [{\"day\": 1, \"theme\": \"Old town\"}, {\"day\": 2, \"theme\": \"Riverside wa");
+
+        JsonNode root = parser.current();
+
+        assertTrue(parser.isDamaged());
+        assertEquals(2, root.path("itinerary").size());
+        assertEquals("Old town", root.path("itinerary").path(0).path("theme").asText());
+        assertFalse(root.path("itinerary").path(1).has("theme"));
+    }
+
+    @Test
+    void isClosed_TellsFinishedDaysFromTheOneStillStreaming() {
+        RepairingJsonParser parser = new RepairingJsonParser();
+        parser.feed("{\"itinerary\": [{\"day\": 1, \"theme\": \"Old town\"}, {\"day\": 2, \"theme\": \"Riv");
+
+        JsonNode days = parser.current().path("itinerary");
+
+        assertTrue(parser.isClosed(days.get(0)));
+        assertFalse(parser.isClosed(days.get(1)));
+        assertFalse(parser.isClosed(days));
+
+        parser.feed("erside\"}]}");
+
+        assertTrue(parser.isClosed(days.get(1)));
+        assertTrue(parser.isClosed(days));
+    }
+
+    @Test
+    void finish_WithoutAnyObject_ReturnsNull() {
+        RepairingJsonParser parser = RepairingJsonParser.parse("Sorry, I can't help with that.");
+
+        assertNull(parser.current());
+        assertTrue(parser.isDamaged());
+    }
+}
@@ -0,0 +1,64 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.travelplanner.exception.UnusableModelOutputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseSchemaTest {
+
+    @Test
+    void toGeminiSchema_DescribesEveryPropertyInOrder() {
+        Map<String, Object> schema = ItinerarySchemas.DAYS.toGeminiSchema();
+
+        assertEquals("OBJECT", schema.get("type"));
+        assertEquals(List.of("itinerary"), schema.get("required"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> itinerary = (Map<String, Object>) ((Map<String, Object>) schema.get("properties")).get("itinerary");
+        assertEquals("ARRAY", itinerary.get("type"));
+        assertEquals(1, itinerary.get("minItems"));
+    }
+
+    @Test
+    void parse_TruncatedItinerary_KeepsCompleteDaysAndActivities() {
+        JsonNode result = ItinerarySchemas.ITINERARY.parse("{\"trip_summary\": \"Lisbon\", \"itinerary\": ["
+                + "{\"day\": 1, \"activities\": [{\"description\": \"Tram 28\"}, {\"description\": \"Bel\"}]},"
+                + "{\"day\": 2, \"activities\": [{\"description\": \"Sintra\"}, {\"time_of_day\": \"Aft");
+
+        assertEquals(2, result.path("itinerary").size());
+        assertEquals(2, result.path("itinerary").path(0).path("activities").size());
+        JsonNode lastDay = result.path("itinerary").path(1);
+        assertEquals(1, lastDay.path("activities").size());
+        assertEquals("Sintra", lastDay.path("activities").path(0).path("description").asText());
+    }
+
+    @Test
+    void parse_DropsDaysWithoutActivitiesAndCoercesTypes() {
+        JsonNode result = ItinerarySchemas.DAYS.parse("{\"itinerary\": ["
+                + "{\"day\": \"1\", \"activities\": [{\"description\": \"Walk\", \"estimated_cost\": 15}]},"
+                + "{\"day\": 2, \"activities\": []}]}");
+
+        assertEquals(1, result.path("itinerary").size());
+        assertTrue(result.path("itinerary").path(0).path("day").isIntegralNumber());
+        assertEquals("15", result.path("itinerary").path(0).path("activities").path(0).path("estimated_cost").asText());
+    }
+
+    @Test
+    void parse_KeepsUnknownFields() {
+        JsonNode result = ItinerarySchemas.DAYS.parse(
+                "{\"itinerary\": [{\"day\": 1, \"weather\": \"sunny\", \"activities\": [{\"description\": \"Beach\"}]}]}");
+
+        assertEquals("sunny", result.path("itinerary").path(0).path("weather").asText());
+    }
+
+    @Test
+    void parse_UnusableOutput_Throws() {
+        assertThrows(UnusableModelOutputException.class, () -> ItinerarySchemas.ITINERARY.parse("I cannot plan this trip."));
+        assertThrows(UnusableModelOutputException.class,
+                () -> ItinerarySchemas.ITINERARY.parse("{\"trip_summary\": \"Rome\", \"itinerary\": [{\"day\": 1, \"activ"));
+    }
+}
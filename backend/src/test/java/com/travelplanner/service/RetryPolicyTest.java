@@ -0,0 +1,119 @@
+package com.travelplanner.service;
+
+import com.travelplanner.exception.GeminiApiException;
+import com.travelplanner.exception.GeminiUnavailableException;
+import com.travelplanner.exception.UnusableModelOutputException;
+import com.travelplanner.model.Job;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+    private RetryPolicy retryPolicy;
+    private SimpleMeterRegistry meterRegistry;
+    private Job job;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        retryPolicy = new RetryPolicy();
+        ReflectionTestUtils.setField(retryPolicy, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 3);
+        ReflectionTestUtils.setField(retryPolicy, "baseDelayMs", 2000L);
+        ReflectionTestUtils.setField(retryPolicy, "maxDelayMs", 10000L);
+        ReflectionTestUtils.setField(retryPolicy, "budgetRatio", 0.5);
+        ReflectionTestUtils.setField(retryPolicy, "maxBurst", 2.0);
+        retryPolicy.init();
+
+        job = new Job("job-1", "ITINERARY_GENERATION", 1L, 1L);
+    }
+
+    @Test
+    void retryDelay_TransientFailure_FullJitterWithinCeiling() {
+        job.setRetryCount(1);
+
+        Optional<Duration> delay = retryPolicy.retryDelay(job, new RuntimeException("Connection reset"));
+
+        assertTrue(delay.isPresent());
+        assertTrue(delay.get().toMillis() >= 0 && delay.get().toMillis() <= 4000);
+        assertEquals(1.0, meterRegistry.counter("jobs.retry", "outcome", "scheduled").count());
+    }
+
+    @Test
+    void backoffCeiling_DoublesUpToMaxDelay() {
+        assertEquals(Duration.ofMillis(2000), retryPolicy.backoffCeiling(0));
+        assertEquals(Duration.ofMillis(8000), retryPolicy.backoffCeiling(2));
+        assertEquals(Duration.ofMillis(10000), retryPolicy.backoffCeiling(3));
+        assertEquals(Duration.ofMillis(10000), retryPolicy.backoffCeiling(40));
+    }
+
+    @Test
+    void retryDelay_FlooredAtRetryAfter() {
+        Optional<Duration> delay = retryPolicy.retryDelay(job,
+                new GeminiApiException(429, "Too many requests", Duration.ofSeconds(30)));
+
+        assertEquals(Optional.of(Duration.ofSeconds(30)), delay);
+    }
+
+    @Test
+    void retryDelay_CircuitOpen_WaitsForTheBreaker() {
+        Optional<Duration> delay = retryPolicy.retryDelay(job,
+                new GeminiUnavailableException("circuit open", Duration.ofSeconds(20)));
+
+        assertEquals(Optional.of(Duration.ofSeconds(20)), delay);
+    }
+
+    @Test
+    void retryDelay_ClientErrorsAndValidationFailures_NotRetried() {
+        assertTrue(retryPolicy.retryDelay(job, new GeminiApiException(400, "Bad request", null)).isEmpty());
+        assertTrue(retryPolicy.retryDelay(job, new UnusableModelOutputException("no JSON object found")).isEmpty());
+        assertTrue(retryPolicy.retryDelay(job,
+                new RuntimeException("Error: Trip not found or user not authorized.")).isEmpty());
+        assertEquals(3.0, meterRegistry.counter("jobs.retry", "outcome", "not_retryable").count());
+    }
+
+    @Test
+    void retryDelay_LastAttempt_NotRetried() {
+        job.setRetryCount(2);
+
+        assertTrue(retryPolicy.retryDelay(job, new RuntimeException("Connection reset")).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("jobs.retry", "outcome", "exhausted").count());
+    }
+
+    @Test
+    void retryDelay_BudgetSpent_StopsRetriesUntilNewJobsEarnMore() {
+        RuntimeException failure = new RuntimeException("503 from upstream");
+
+        // Starts with max-burst (2) tokens
+        assertTrue(retryPolicy.retryDelay(job, failure).isPresent());
+        assertTrue(retryPolicy.retryDelay(job, failure).isPresent());
+        assertTrue(retryPolicy.retryDelay(job, failure).isEmpty());
+        assertEquals(1.0, meterRegistry.counter("jobs.retry", "outcome", "budget_exhausted").count());
+
+        // Two first attempts at 0.5 tokens each buy one retry
+        retryPolicy.recordAttempt(job);
+        retryPolicy.recordAttempt(job);
+        assertTrue(retryPolicy.retryDelay(job, failure).isPresent());
+    }
+
+    @Test
+    void recordAttempt_RetriesEarnNothing() {
+        RuntimeException failure = new RuntimeException("503 from upstream");
+        retryPolicy.retryDelay(job, failure);
+        retryPolicy.retryDelay(job, failure);
+
+        Job retried = new Job("job-2", "ITINERARY_GENERATION", 1L, 1L);
+        retried.setRetryCount(1);
+        retryPolicy.recordAttempt(retried);
+        retryPolicy.recordAttempt(retried);
+
+        assertTrue(retryPolicy.retryDelay(job, failure).isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package com.travelplanner.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightStreamTest {
+
+    @Test
+    void execute_JoinerGetsTheTextSoFarThenTheRest() throws Exception {
+        SingleFlightStream<String> singleFlight = new SingleFlightStream<>();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch firstSent = new CountDownLatch(1);
+        CountDownLatch joinerCaughtUp = new CountDownLatch(1);
+        List<String> leaderChunks = new CopyOnWriteArrayList<>();
+        List<String> joinerChunks = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() ->
+                    singleFlight.execute("key", leaderChunks::add, relay -> {
+                        invocations.incrementAndGet();
+                        relay.accept("ab");
+                        firstSent.countDown();
+                        await(joinerCaughtUp);
+                        relay.accept("cd");
+                        return "abcd";
+                    }));
+            assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+
+            Future<SingleFlight.Result<String>> joiner = executor.submit(() ->
+                    singleFlight.execute("key", chunk -> {
+                        joinerChunks.add(chunk);
+                        joinerCaughtUp.countDown();
+                    }, relay -> {
+                        invocations.incrementAndGet();
+                        return "other";
+                    }));
+
+            assertEquals("abcd", leader.get(5, TimeUnit.SECONDS).value());
+            SingleFlight.Result<String> joinerResult = joiner.get(5, TimeUnit.SECONDS);
+            assertEquals("abcd", joinerResult.value());
+            assertTrue(joinerResult.shared());
+            assertEquals(List.of("ab", "cd"), leaderChunks);
+            assertEquals(List.of("ab", "cd"), joinerChunks);
+            assertEquals(1, invocations.get());
+            assertEquals(0, singleFlight.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_FailurePropagatesAndReleasesKey() {
+        SingleFlightStream<String> singleFlight = new SingleFlightStream<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", chunk -> {
+        }, relay -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void execute_LeaderCancelled_JoinerStartsOverWithoutRepeats() throws Exception {
+        SingleFlightStream<String> singleFlight = new SingleFlightStream<>();
+        CountDownLatch firstSent = new CountDownLatch(1);
+        CountDownLatch joinerCaughtUp = new CountDownLatch(1);
+        List<String> joinerChunks = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() ->
+                    singleFlight.execute("key", chunk -> {
+                    }, relay -> {
+                        relay.accept("ab");
+                        firstSent.countDown();
+                        try {
+                            Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+                            return "leader";
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RuntimeException("Interrupted while waiting for Gemini", e);
+                        }
+                    }));
+            assertTrue(firstSent.await(5, TimeUnit.SECONDS));
+
+            Future<SingleFlight.Result<String>> joiner = executor.submit(() ->
+                    singleFlight.execute("key", chunk -> {
+                        joinerChunks.add(chunk);
+                        joinerCaughtUp.countDown();
+                    }, relay -> {
+                        relay.accept("a");
+                        relay.accept("bcd");
+                        return "abcd";
+                    }));
+            assertTrue(joinerCaughtUp.await(5, TimeUnit.SECONDS));
+            leader.cancel(true);
+
+            SingleFlight.Result<String> result = joiner.get(5, TimeUnit.SECONDS);
+            assertEquals("abcd", result.value());
+            assertFalse(result.shared());
+            assertEquals(List.of("ab", "cd"), joinerChunks);
+            assertEquals(0, singleFlight.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.travelplanner.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_ConcurrentCallsWithSameKey_ShareOneCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                invocations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<SingleFlight.Result<String>> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                invocations.incrementAndGet();
+                return "other";
+            }));
+            // Give the follower time to join the in-flight call before releasing it
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS).value());
+            SingleFlight.Result<String> followerResult = follower.get(5, TimeUnit.SECONDS);
+            assertEquals("result", followerResult.value());
+            assertTrue(followerResult.shared());
+            assertEquals(1, invocations.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_KeyReleasedAfterCompletion() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertEquals("first", singleFlight.execute("key", () -> "first").value());
+        assertEquals("second", singleFlight.execute("key", () -> "second").value());
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void execute_FailurePropagatesAndReleasesKey() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void execute_JoinerCancelled_StopsWaitingWhileTheCallCarriesOn() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            AtomicBoolean interruptKept = new AtomicBoolean();
+            Future<Throwable> joiner = executor.submit(() -> {
+                try {
+                    singleFlight.execute("key", () -> "other");
+                    return null;
+                } catch (RuntimeException e) {
+                    interruptKept.set(Thread.currentThread().isInterrupted());
+                    return e;
+                }
+            });
+            Thread.sleep(100);
+            joiner.cancel(true);
+
+            // Cancelling a Future does not wait for its task; the pool thread frees up once the joiner has left
+            Future<String> next = executor.submit(() -> "free");
+            assertEquals("free", next.get(5, TimeUnit.SECONDS));
+            assertTrue(interruptKept.get());
+
+            release.countDown();
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS).value());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_LeaderCancelled_JoinerRunsTheCallItself() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<String>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+                    return "leader";
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for Gemini", e);
+                }
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<SingleFlight.Result<String>> joiner = executor.submit(() -> singleFlight.execute("key", () -> "joiner"));
+            Thread.sleep(100);
+            leader.cancel(true);
+
+            SingleFlight.Result<String> result = joiner.get(5, TimeUnit.SECONDS);
+            assertEquals("joiner", result.value());
+            assertFalse(result.shared());
+            assertEquals(0, singleFlight.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
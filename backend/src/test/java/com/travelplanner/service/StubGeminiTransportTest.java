@@ -0,0 +1,76 @@
+package com.travelplanner.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.travelplanner.exception.GeminiApiException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StubGeminiTransportTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String textRequest(String prompt) throws Exception {
+        return objectMapper.writeValueAsString(
+                Map.of("contents", List.of(Map.of("parts", List.of(Map.of("text", prompt))))));
+    }
+
+    @Test
+    void generate_SynthesizesItineraryMatchingTripLength() throws Exception {
+        StubGeminiTransport transport = new StubGeminiTransport("", 0, 0.0, 0.0, 0.0, 1);
+        String prompt = "You are a world-class travel expert and local guide with deep knowledge of Lisbon. " +
+                "Create an exceptional, highly detailed day-by-day travel itinerary from 2025-05-01 to 2025-05-04 for 2 traveler(s). ";
+
+        String response = transport.generate("generate", textRequest(prompt));
+
+        String text = objectMapper.readTree(response).path("candidates").path(0).path("content").path("parts").path(0).path("text").asText();
+        JsonNode itinerary = objectMapper.readTree(text);
+        assertEquals(4, itinerary.path("itinerary").size());
+        assertEquals("2025-05-04", itinerary.path("itinerary").path(3).path("date").asText());
+        assertTrue(itinerary.has("trip_summary"));
+        assertTrue(itinerary.has("essential_travel_tips"));
+    }
+
+    @Test
+    void generate_ReplaysRecordingWhenPresent(@TempDir Path replayDir) throws Exception {
+        String request = textRequest("recorded prompt");
+        Files.writeString(replayDir.resolve(GeminiTransport.requestKey(request) + ".json"), "{\"recorded\":true}");
+        StubGeminiTransport transport = new StubGeminiTransport(replayDir.toString(), 0, 0.0, 0.0, 0.0, 1);
+
+        assertEquals("{\"recorded\":true}", transport.generate("generate", request));
+    }
+
+    @Test
+    void generate_InjectsErrorsAtConfiguredRate() throws Exception {
+        StubGeminiTransport transport = new StubGeminiTransport("", 0, 0.0, 1.0, 0.0, 7);
+
+        GeminiApiException error = assertThrows(GeminiApiException.class,
+                () -> transport.generate("generate", textRequest("any")));
+        assertEquals(429, error.getStatusCode());
+        assertEquals(7, error.getRetryAfter().getSeconds());
+    }
+
+    @Test
+    void stream_DeliversChunksThatReassembleToFullText() throws Exception {
+        StubGeminiTransport transport = new StubGeminiTransport("", 0, 0.0, 0.0, 0.0, 1);
+        String prompt = "deep knowledge of Rome. from 2025-05-01 to 2025-05-07 for 1 traveler(s).";
+
+        List<String> events = new ArrayList<>();
+        transport.stream(textRequest(prompt), events::add);
+
+        StringBuilder text = new StringBuilder();
+        for (String event : events) {
+            text.append(objectMapper.readTree(event).path("candidates").path(0).path("content").path("parts").path(0).path("text").asText());
+        }
+        assertTrue(events.size() > 1);
+        assertEquals(7, objectMapper.readTree(text.toString()).path("itinerary").size());
+    }
+}
@@ -2,7 +2,7 @@ import React, { useState, useRef, useCallback } from 'react';
 import { useNavigate } from 'react-router-dom';
 import ItineraryGenerator from '../components/itinerary/ItineraryGenerator';
 import ItineraryView from '../components/itinerary/ItineraryView';
-import { createTrip, generateItinerary, getTripById, getJobStatus } from '../services/api';
+import { createTrip, generateItinerary, getTripById, getJobStatus, waitForJob, cancelJob } from '../services/api';
 import LoadingSpinner from '../components/common/LoadingSpinner';
 import ItineraryGenerationProgress from '../components/loading/ItineraryGenerationProgress';
 
@@ -12,8 +12,11 @@ const Planner = () => {
   const [isGenerating, setIsGenerating] = useState(false);
   const [error, setError] = useState('');
   const [currentDestination, setCurrentDestination] = useState('');
+  const [partialDays, setPartialDays] = useState(null);
   const navigate = useNavigate();
   const pollingRef = useRef(null);
+  const streamRef = useRef(null);
+  const jobIdRef = useRef(null);
   const isMountedRef = useRef(true);
 
   const parseItineraryContent = (rawContent) => {
@@ -44,30 +47,52 @@ const Planner = () => {
     }
   };
 
-  // Poll job status until completed, then fetch trip for itinerary content
+  // Show the days finished so far while the job is still processing
+  const showProgress = useCallback((job) => {
+    if (!isMountedRef.current || !job.partialResult) {
+      return;
+    }
+    try {
+      setPartialDays(JSON.parse(job.partialResult));
+    } catch (e) {
+      // A preview only: the finished itinerary is fetched with the trip
+    }
+  }, []);
+
+  // Long-poll job status until completed, then fetch trip for itinerary content
   const pollJobAndFetchTrip = useCallback(async (jobId, tripId) => {
-    const pollInterval = 2000; // poll every 2 seconds
-    const maxAttempts = 60; // max 2 minutes of polling
-    let attempts = 0;
+    const waitSeconds = 25; // each request waits server-side for a status change
+    const deadline = Date.now() + 120000; // max 2 minutes of polling
+    let etag;
 
     return new Promise((resolve, reject) => {
       const poll = async () => {
-        attempts++;
         try {
-          const jobResponse = await getJobStatus(jobId);
+          const jobResponse = await getJobStatus(jobId, { waitSeconds, etag });
+          if (jobResponse.status === 304) {
+            // Unchanged after waiting — ask again
+            if (Date.now() >= deadline) {
+              reject(new Error('Itinerary generation timed out. Please try again.'));
+            } else {
+              pollingRef.current = setTimeout(poll, 0);
+            }
+            return;
+          }
+          etag = jobResponse.headers.etag;
           const jobStatus = jobResponse.data.status;
+          showProgress(jobResponse.data);
 
           if (jobStatus === 'COMPLETED') {
             // Job completed — fetch the trip to get the generated itinerary
             const tripResponse = await getTripById(tripId);
             resolve(tripResponse);
-          } else if (jobStatus === 'FAILED') {
+          } else if (jobStatus === 'FAILED' || jobStatus === 'CANCELLED') {
             reject(new Error(jobResponse.data.errorMessage || 'Itinerary generation failed.'));
-          } else if (attempts >= maxAttempts) {
+          } else if (Date.now() >= deadline) {
             reject(new Error('Itinerary generation timed out. Please try again.'));
           } else {
             // Still processing — poll again
-            pollingRef.current = setTimeout(poll, pollInterval);
+            pollingRef.current = setTimeout(poll, 0);
           }
         } catch (err) {
           reject(new Error('Failed to check generation status: ' + (err.message || 'Unknown error')));
@@ -75,7 +100,25 @@ const Planner = () => {
       };
       poll();
     });
-  }, []);
+  }, [showProgress]);
+
+  // Wait for the job over its status stream, falling back to polling, then fetch trip for itinerary content
+  const waitForJobAndFetchTrip = useCallback(async (jobId, tripId) => {
+    streamRef.current = new AbortController();
+    let job;
+    try {
+      job = await waitForJob(jobId, { signal: streamRef.current.signal, onStatus: showProgress });
+    } catch (streamError) {
+      if (!isMountedRef.current) {
+        throw streamError;
+      }
+      return pollJobAndFetchTrip(jobId, tripId);
+    }
+    if (job.status === 'FAILED' || job.status === 'CANCELLED') {
+      throw new Error(job.errorMessage || 'Itinerary generation failed.');
+    }
+    return getTripById(tripId);
+  }, [pollJobAndFetchTrip, showProgress]);
 
   // Prevent state updates after unmount
   const safeSetState = useCallback((setter, value) => {
@@ -88,6 +131,7 @@ const Planner = () => {
     setIsGenerating(true);
     setError('');
     setItinerary(null);
+    setPartialDays(null);
     setCurrentDestination(planDetails.destination);
     try {
       // Step 1: Create the trip
@@ -115,8 +159,10 @@ const Planner = () => {
         throw new Error('No job ID returned from itinerary generation.');
       }
 
-      // Step 3: Poll job status until completed, then fetch trip
-      const tripDataResponse = await pollJobAndFetchTrip(jobId, generatedTripId);
+      // Step 3: Wait for the job to complete, then fetch trip
+      jobIdRef.current = jobId;
+      const tripDataResponse = await waitForJobAndFetchTrip(jobId, generatedTripId);
+      jobIdRef.current = null;
 
       // Step 4: Parse and display the itinerary from the trip data
       const tripData = tripDataResponse.data;
@@ -144,6 +190,9 @@ const Planner = () => {
         setError('Your session has expired. Please sign in again.');
       } else if (status === 429) {
         setError('Too many requests. Please wait a moment and try again.');
+      } else if (status === 503) {
+        const wait = err.retryAfterSeconds ? ` in about ${err.retryAfterSeconds} seconds` : ' in a moment';
+        setError(`${backendMessage || 'The planner is busy right now.'} Please try again${wait}.`);
       } else if (status === 500 && backendMessage) {
         setError(backendMessage);
       } else if (status >= 500) {
@@ -152,6 +201,7 @@ const Planner = () => {
         setError(err.message || 'Sorry, something went wrong while planning your trip. Please try again.');
       }
     } finally {
+      jobIdRef.current = null;
       if (isMountedRef.current) {
         setIsGenerating(false);
       }
@@ -166,6 +216,14 @@ const Planner = () => {
       if (pollingRef.current) {
         clearTimeout(pollingRef.current);
       }
+      if (streamRef.current) {
+        streamRef.current.abort();
+      }
+      // Nobody will read the result: free the worker and the Gemini call
+      if (jobIdRef.current) {
+        cancelJob(jobIdRef.current).catch(() => {});
+        jobIdRef.current = null;
+      }
     };
   }, []);
   
@@ -195,6 +253,11 @@ const Planner = () => {
         {isGenerating && (
           <div className="mt-12">
             <ItineraryGenerationProgress destination={currentDestination} />
+            {partialDays && partialDays.length > 0 && (
+              <div className="mt-8 opacity-80">
+                <ItineraryView itinerary={partialDays} />
+              </div>
+            )}
           </div>
         )}
 
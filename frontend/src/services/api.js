@@ -107,6 +107,15 @@ api.interceptors.response.use(
       console.warn('Rate limited. Please slow down your requests.');
       // Could add custom notification logic here
     }
+
+    // Handle 503 - Server busy; Retry-After says when to try again
+    if (error.response?.status === 503) {
+      const retryAfter = Number(error.response.headers?.['retry-after']);
+      if (retryAfter > 0) {
+        error.retryAfterSeconds = retryAfter;
+      }
+      console.warn(`Server busy. Retry after ${retryAfter || 'a few'} seconds.`);
+    }
     
     // Only log in development
     if (process.env.NODE_ENV === 'development') {
@@ -155,16 +164,26 @@ export const deleteTrip = (tripId) => {
   return api.delete(`/v1/trips/${tripId}`);
 };
 
+// One key per user action; a resend of the same request (e.g. after a token
+// refresh) carries it again, so the server returns the original job
+const idempotencyHeaders = () => ({
+  headers: {
+    'Idempotency-Key': crypto.randomUUID
+      ? crypto.randomUUID()
+      : `${Date.now()}-${Math.random().toString(36).slice(2)}`,
+  },
+});
+
 export const generateItinerary = (tripId) => {
-  return api.post(`/v1/itineraries/generate/${tripId}`);
+  return api.post(`/v1/itineraries/generate/${tripId}`, null, idempotencyHeaders());
 };
 
 export const regenerateItinerary = (tripId) => {
-  return api.put(`/v1/itineraries/regenerate/${tripId}`);
+  return api.put(`/v1/itineraries/regenerate/${tripId}`, null, idempotencyHeaders());
 };
 
 export const adaptItinerary = (tripId, adaptationData) => {
-  return api.post(`/v1/itineraries/adapt/${tripId}`, adaptationData);
+  return api.post(`/v1/itineraries/adapt/${tripId}`, adaptationData, idempotencyHeaders());
 };
 
 export const getJournal = (tripId) => {
@@ -245,8 +264,72 @@ export const refreshAuthToken = (refreshTokenValue) => {
 };
 
 // Job API (for polling async operations)
-export const getJobStatus = (jobId) => {
-  return api.get(`/v1/jobs/${jobId}`);
+// With waitSeconds the request long-polls until the status changes; with etag
+// an unchanged status comes back as a body-less 304.
+export const getJobStatus = (jobId, { waitSeconds, etag } = {}) => {
+  return api.get(`/v1/jobs/${jobId}`, {
+    params: waitSeconds ? { waitSeconds } : undefined,
+    headers: etag ? { 'If-None-Match': etag } : undefined,
+    validateStatus: (status) => (status >= 200 && status < 300) || status === 304,
+  });
+};
+
+// Stop a queued or running job (e.g. nobody is waiting for it any more).
+// Answers 409 with the job if it already finished.
+export const cancelJob = (jobId) => {
+  return api.delete(`/v1/jobs/${jobId}/run`);
+};
+
+export const isJobFinished = (status) =>
+  status === 'COMPLETED' || status === 'FAILED' || status === 'CANCELLED';
+
+// Wait for a job over its status event stream instead of polling.
+// Resolves with the final job (COMPLETED, FAILED or CANCELLED); rejects if the stream
+// cannot be opened or drops early, so callers can fall back to getJobStatus.
+export const waitForJob = async (jobId, { onStatus, signal } = {}) => {
+  const response = await fetch(`${API_URL}/v1/jobs/${jobId}/events`, {
+    headers: {
+      Authorization: `Bearer ${getToken()}`,
+      Accept: 'text/event-stream',
+    },
+    signal,
+  });
+  if (!response.ok || !response.body) {
+    throw new Error(`Job status stream unavailable (${response.status})`);
+  }
+
+  const reader = response.body.getReader();
+  const decoder = new TextDecoder();
+  let buffer = '';
+  while (true) {
+    const { done, value } = await reader.read();
+    if (done) {
+      break;
+    }
+    buffer += decoder.decode(value, { stream: true }).replace(/\r\n/g, '\n');
+    let boundary;
+    while ((boundary = buffer.indexOf('\n\n')) !== -1) {
+      const rawEvent = buffer.slice(0, boundary);
+      buffer = buffer.slice(boundary + 2);
+      const data = rawEvent
+        .split('\n')
+        .filter((line) => line.startsWith('data:'))
+        .map((line) => line.slice(5))
+        .join('\n');
+      if (!data) {
+        continue; // keep-alive comment
+      }
+      const job = JSON.parse(data);
+      if (onStatus) {
+        onStatus(job);
+      }
+      if (isJobFinished(job.status)) {
+        reader.cancel();
+        return job;
+      }
+    }
+  }
+  throw new Error('Job status stream ended before the job finished');
 };
 
 // Conversation API